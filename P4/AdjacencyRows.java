@@ -0,0 +1,44 @@
+/**
+ * Filename: AdjacencyRows.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Read-only view of the ids, names and outgoing edges of a graph, which is all Graph.addAll needs
+ * to copy it. A graph that is only built and then merged, like a ManifestShard, provides this
+ * without keeping the reverse index an IndexedGraph has.
+ *
+ * Ids are in the range [0, idBound()). An id in that range whose name is null is not in use.
+ */
+interface AdjacencyRows {
+
+  /**
+   * Returns the name of the vertex with the given id.
+   *
+   * @param id an id in [0, idBound())
+   * @return the name of the vertex, or null if the id is not in use
+   */
+  public String nameOf(int id);
+
+  /**
+   * Returns an exclusive upper bound on the ids of the vertices in the graph.
+   *
+   * @return the id bound
+   */
+  public int idBound();
+
+  /**
+   * Returns the number of edges going out of a vertex.
+   *
+   * @param id the id of the vertex
+   * @return the out degree of the vertex
+   */
+  public int outDegree(int id);
+
+  /**
+   * Returns the id of the k-th vertex that a vertex has an edge to. The order is the same as the
+   * order of getAdjacentVerticesOf.
+   *
+   * @param id the id of the vertex
+   * @param k  index of the edge, 0 <= k < outDegree(id)
+   * @return the id of the adjacent vertex
+   */
+  public int adjacentAt(int id, int k);
+}
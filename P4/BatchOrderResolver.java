@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * Filename: BatchOrderResolver.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Finds the installation orders of many packages at once, visiting every package they depend on
+ * once however many of them share it.
+ *
+ * One DependencyResolver resolves the targets one after the other. Packages finished for an
+ * earlier target are left out of the later ones, so the pieces add up to the merged order: every
+ * package any target needs, each after all of its dependencies, and every vertex and edge is
+ * searched once.
+ *
+ * The order of a single target is the part of the merged order it depends on, which is still a
+ * valid installation order. To find which targets depend on which package, every package gets a
+ * bit set over the targets, starting with the bit of the target itself. The merged order is walked
+ * backwards, dependents before dependencies, and every package passes its bits on to its
+ * dependencies, so each edge costs a few word operations. The bit sets cover BLOCK targets at a
+ * time to bound the memory, and the walk is repeated for every block.
+ */
+class BatchOrderResolver {
+
+  // targets covered by one walk, a multiple of 64
+  private static final int BLOCK = 512;
+
+  // the graph being searched
+  private final IndexedGraph graph;
+  // the resolver shared by every target
+  private final DependencyResolver resolver;
+
+  /**
+   * Creates a resolver for a graph. The graph must not change while the resolver is used.
+   *
+   * @param graph the graph to search
+   */
+  BatchOrderResolver(IndexedGraph graph) {
+    this.graph = graph;
+    this.resolver = new DependencyResolver(graph);
+  }
+
+  /**
+   * Returns the merged installation order of some vertices: each of them and everything they
+   * depend on, once, where each vertex comes after all of its dependencies. The targets come in
+   * the order given unless one depends on another. The resolver must not be used again.
+   *
+   * @param targets the ids of the vertices to install
+   * @return the ids in installation order
+   * @throws CycleException if a cycle is reachable from any target
+   */
+  int[] resolve(int[] targets) throws CycleException {
+    int[] order = new int[64];
+    int size = 0;
+    for (int target : targets) {
+      int[] piece = resolver.resolve(target);
+      if (size + piece.length > order.length) {
+        order = Arrays.copyOf(order, Math.max(order.length * 2, size + piece.length));
+      }
+      System.arraycopy(piece, 0, order, size, piece.length);
+      size += piece.length;
+    }
+    return Arrays.copyOf(order, size);
+  }
+
+  /**
+   * Returns the installation order of every one of some vertices, from a single search. The
+   * resolver must not be used again.
+   *
+   * @param targets the ids of the vertices to install
+   * @return orders[t] holds the ids needed by targets[t] in installation order, ending with it
+   * @throws CycleException if a cycle is reachable from any target
+   */
+  int[][] ordersOf(int[] targets) throws CycleException {
+    int[] order = resolve(targets);
+    // position of every vertex of the merged order
+    int[] position = new int[graph.idBound()];
+    for (int j = 0; j < order.length; j++) {
+      position[order[j]] = j;
+    }
+    int[][] orders = new int[targets.length][];
+    for (int first = 0; first < targets.length; first += BLOCK) {
+      int count = Math.min(BLOCK, targets.length - first);
+      int words = (count + 63) >>> 6;
+      // bits[j * words ..] holds the targets of this block that depend on order[j]
+      long[] bits = new long[order.length * words];
+      for (int t = 0; t < count; t++) {
+        int j = position[targets[first + t]];
+        bits[j * words + (t >>> 6)] |= 1L << t;
+      }
+      for (int j = order.length - 1; j >= 0; j--) {
+        int v = order[j];
+        for (int k = 0; k < graph.outDegree(v); k++) {
+          int dep = position[graph.adjacentAt(v, k)] * words;
+          for (int w = 0; w < words; w++) {
+            bits[dep + w] |= bits[j * words + w];
+          }
+        }
+      }
+      // counted first so every order is allocated once, at its size
+      int[] sizes = new int[count];
+      for (int j = 0; j < order.length; j++) {
+        for (int w = 0; w < words; w++) {
+          for (long word = bits[j * words + w]; word != 0; word &= word - 1) {
+            sizes[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+          }
+        }
+      }
+      for (int t = 0; t < count; t++) {
+        orders[first + t] = new int[sizes[t]];
+        sizes[t] = 0;
+      }
+      // the merged order is walked forwards, so every order comes out in installation order
+      for (int j = 0; j < order.length; j++) {
+        for (int w = 0; w < words; w++) {
+          for (long word = bits[j * words + w]; word != 0; word &= word - 1) {
+            int t = (w << 6) + Long.numberOfTrailingZeros(word);
+            orders[first + t][sizes[t]++] = order[j];
+          }
+        }
+      }
+    }
+    return orders;
+  }
+
+  /**
+   * Returns the shared resolver, which counts the vertices and edges searched for the metrics.
+   */
+  DependencyResolver resolver() {
+    return resolver;
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Filename: CacheStats.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Point in time statistics of the installation order cache of a PackageManager.
+ */
+public class CacheStats {
+
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long invalidations;
+  private final int entries;
+  private final long weight;
+  private final long maxWeight;
+
+  /**
+   * Creates the statistics, only OrderCache creates them.
+   */
+  CacheStats(long hits, long misses, long evictions, long invalidations, int entries, long weight,
+      long maxWeight) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.invalidations = invalidations;
+    this.entries = entries;
+    this.weight = weight;
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Returns the number of lookups answered from the cache.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that had to resolve the order.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the fraction of lookups answered from the cache, 0 if there was no lookup.
+   */
+  public double getHitRate() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  /**
+   * Returns the number of orders dropped to stay within the maximum weight.
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of orders dropped because the graph changed under them.
+   */
+  public long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * Returns the number of orders in the cache.
+   */
+  public int getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the total number of packages over all the orders in the cache.
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  /**
+   * Returns the maximum weight of the cache.
+   */
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "hits=%d misses=%d hitRate=%.3f evictions=%d invalidations=%d entries=%d weight=%d/%d",
+        hits, misses, getHitRate(), evictions, invalidations, entries, weight, maxWeight);
+  }
+}
@@ -0,0 +1,312 @@
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Filename: ConcurrentGraph.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Thread-safe graph for many query threads and one writer, built around a Graph guarded by a
+ * StampedLock.
+ *
+ * Writes take the write lock. A single read such as getAdjacentVerticesOf or getAllVertices first
+ * runs without any lock under an optimistic stamp, and only if a write got in the way, or the torn
+ * state made it throw, is it run again under the read lock. Readers never block each other and
+ * only wait for a writer when they actually raced with it.
+ *
+ * A query that needs many reads, like an installation order, must not see the graph change half
+ * way through. snapshot returns an immutable version of the graph as it was between two writes,
+ * shared by every query until the next write. Each version is made from the one before by
+ * reading again only the vertices that writes touched since, so after a single write it costs
+ * about as much as the write itself rather than a copy of the whole graph.
+ */
+class ConcurrentGraph implements IndexedGraph {
+
+  // the graph being guarded, only touched under the lock or an optimistic stamp
+  private final Graph graph;
+  private final StampedLock lock = new StampedLock();
+  // version of the graph as of the last write, null until a query asks for one after a write
+  private volatile VersionedGraph snapshot;
+  // the latest version made, the next one is made from it, guarded by changed
+  private VersionedGraph latest;
+  // ids whose name or rows changed since latest was made, written under the write lock
+  private final BitSet changed;
+
+  /*
+   * Default no-argument constructor
+   */
+  ConcurrentGraph() {
+    this.graph = new Graph();
+    this.latest = VersionedGraph.empty();
+    this.snapshot = latest;
+    this.changed = new BitSet();
+    // every change marks the ids whose rows it touched, the next version reads only those again
+    graph.addListener(new GraphListener() {
+      @Override
+      public void vertexAdded(int id) {
+        changed.set(id);
+      }
+
+      @Override
+      public void vertexRemoved(int id) {
+        changed.set(id);
+      }
+
+      @Override
+      public void edgeAdded(int src, int dst) {
+        changed.set(src);
+        changed.set(dst);
+      }
+
+      @Override
+      public void edgeRemoved(int src, int dst) {
+        changed.set(src);
+        changed.set(dst);
+      }
+    });
+  }
+
+  @Override
+  public void addVertex(String vertex) {
+    long stamp = beginWrite();
+    try {
+      graph.addVertex(vertex);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void removeVertex(String vertex) {
+    long stamp = beginWrite();
+    try {
+      graph.removeVertex(vertex);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void addEdge(String vertex1, String vertex2) {
+    long stamp = beginWrite();
+    try {
+      graph.addEdge(vertex1, vertex2);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void removeEdge(String vertex1, String vertex2) {
+    long stamp = beginWrite();
+    try {
+      graph.removeEdge(vertex1, vertex2);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Adds every vertex and edge of another graph in one write, so readers see either none or all of
+   * it. The vertices are added in id order and the edges in row order, which gives the same ids
+   * and adjacency order as adding them one by one.
+   *
+   * @param other the graph to copy from, it must not change during the call
+   */
+  void addAll(AdjacencyRows other) {
+    long stamp = beginWrite();
+    try {
+      graph.addAll(other);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Runs a change to the guarded graph in one write, so readers see either none or all of it.
+   *
+   * @param change the change, it must not keep the graph it is given
+   * @return what the change returns
+   */
+  <T> T update(Function<Graph, T> change) {
+    long stamp = beginWrite();
+    try {
+      return change.apply(graph);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public Set<String> getAllVertices() {
+    return read(graph::getAllVertices);
+  }
+
+  @Override
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    return read(() -> graph.getAdjacentVerticesOf(vertex));
+  }
+
+  @Override
+  public int size() {
+    return readInt(graph::size);
+  }
+
+  @Override
+  public int order() {
+    return readInt(graph::order);
+  }
+
+  @Override
+  public int idOf(String vertex) {
+    return readInt(() -> graph.idOf(vertex));
+  }
+
+  @Override
+  public String nameOf(int id) {
+    return read(() -> graph.nameOf(id));
+  }
+
+  @Override
+  public int idBound() {
+    return readInt(graph::idBound);
+  }
+
+  @Override
+  public int outDegree(int id) {
+    return readInt(() -> graph.outDegree(id));
+  }
+
+  @Override
+  public int adjacentAt(int id, int k) {
+    return readInt(() -> graph.adjacentAt(id, k));
+  }
+
+  @Override
+  public int inDegree(int id) {
+    return readInt(() -> graph.inDegree(id));
+  }
+
+  @Override
+  public int incomingAt(int id, int k) {
+    return readInt(() -> graph.incomingAt(id, k));
+  }
+
+  /**
+   * Returns a version of the graph that no later write will change, with the same ids as the graph
+   * had at the time. Consecutive calls without a write in between return the same version.
+   *
+   * @return the immutable version
+   */
+  IndexedGraph snapshot() {
+    VersionedGraph version = snapshot;
+    if (version != null) {
+      return version;
+    }
+    long stamp = lock.readLock();
+    try {
+      // readers share the read lock, so only one of them makes the version and clears the marks
+      synchronized (changed) {
+        // publishing under the read lock means no write can have slipped in after the version
+        version = snapshot;
+        if (version == null) {
+          version = latest.next(graph, changed);
+          changed.clear();
+          latest = version;
+          snapshot = version;
+        }
+      }
+      return version;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Registers a listener that is told about every later change. The callbacks run while the write
+   * lock is held.
+   *
+   * @param listener the listener to add
+   */
+  void addListener(GraphListener listener) {
+    long stamp = lock.writeLock();
+    try {
+      graph.addListener(listener);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Unregisters a listener added by addListener.
+   *
+   * @param listener the listener to remove
+   */
+  void removeListener(GraphListener listener) {
+    long stamp = lock.writeLock();
+    try {
+      graph.removeListener(listener);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * helper method that takes the write lock and drops the snapshot before anything changes, so a
+   * reader that sees the effects of this write can never be handed the old snapshot
+   */
+  private long beginWrite() {
+    long stamp = lock.writeLock();
+    snapshot = null;
+    return stamp;
+  }
+
+  /**
+   * helper method that runs a read optimistically and falls back to the read lock
+   */
+  private <T> T read(Supplier<T> query) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        T result = query.get();
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        // the read saw a write half done, it is run again below
+      }
+    }
+    stamp = lock.readLock();
+    try {
+      return query.get();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * helper method like read for queries returning an int, without boxing the result
+   */
+  private int readInt(IntSupplier query) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        int result = query.getAsInt();
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      } catch (RuntimeException e) {
+        // the read saw a write half done, it is run again below
+      }
+    }
+    stamp = lock.readLock();
+    try {
+      return query.getAsInt();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+}
@@ -1,5 +1,53 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @SuppressWarnings("serial")
 public class CycleException extends Exception {
 	
+	// the packages of one offending cycle, may be empty
+	private final List<String> cycle;
+	// packages that could not be ordered because of the cycle, may be empty
+	private final List<String> blockedPackages;
+
+	public CycleException() {
+		this.cycle = Collections.emptyList();
+		this.blockedPackages = Collections.emptyList();
+	}
+
+	public CycleException(List<String> cycle, List<String> blockedPackages) {
+		super(describe(cycle));
+		this.cycle = Collections.unmodifiableList(new ArrayList<String>(cycle));
+		this.blockedPackages = Collections.unmodifiableList(new ArrayList<String>(blockedPackages));
+	}
+
+	/**
+	 * Returns the packages of the cycle that was found, each package depends on the next one
+	 * and the last one depends on the first one.
+	 * 
+	 * @return the packages of the cycle, empty if it is not known
+	 */
+	public List<String> getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * Returns the packages that could not be ordered, that is the packages on a cycle and
+	 * every package that depends on one of them.
+	 * 
+	 * @return the blocked packages, empty if they are not known
+	 */
+	public List<String> getBlockedPackages() {
+		return blockedPackages;
+	}
+
+	/**
+	 * helper method that spells out a cycle as "A -> B -> A"
+	 */
+	private static String describe(List<String> cycle) {
+		if (cycle.isEmpty()) {
+			return null;
+		}
+		return "dependency cycle " + String.join(" -> ", cycle) + " -> " + cycle.get(0);
+	}
 }
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * Filename: DependencyCounter.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Counts the distinct direct and indirect dependencies of every package in one sweep over the
+ * condensation of the graph.
+ *
+ * Every vertex gets a bit column, with the members of a component in consecutive columns. Going
+ * through the components in installation order, the dependency set of a component is the union of
+ * the sets of the components it points to plus their own members, so each set is built with
+ * word-parallel ORs and counted with bitCount. To keep memory bounded the columns are handled in
+ * batches: a batch of columns only needs rows for the components that come after the first
+ * column's component, since a component can only reach components with a smaller number.
+ */
+class DependencyCounter {
+
+  // upper bound on the number of longs allocated for one batch (64MB)
+  private static final int WORD_BUDGET = 1 << 23;
+
+  // the components the counts are based on
+  private final StronglyConnectedComponents components;
+  // number of distinct dependencies of each component's members
+  private final int[] count;
+
+  /**
+   * Counts the dependencies of every component.
+   *
+   * @param components the components of the graph
+   */
+  DependencyCounter(StronglyConnectedComponents components) {
+    this(components, WORD_BUDGET);
+  }
+
+  /**
+   * Counts the dependencies of every component using batches of at most about wordBudget longs.
+   *
+   * @param components the components of the graph
+   * @param wordBudget upper bound on the longs used per batch, at least one word per component
+   *                   is always used
+   */
+  DependencyCounter(StronglyConnectedComponents components, int wordBudget) {
+    this.components = components;
+    int componentNum = components.count();
+    this.count = new int[componentNum];
+    // column of the first member of every component
+    int[] firstColumn = new int[componentNum + 1];
+    for (int c = 0; c < componentNum; c++) {
+      firstColumn[c + 1] = firstColumn[c] + components.size(c);
+    }
+    int columns = firstColumn[componentNum];
+    int totalWords = (columns + 63) >>> 6;
+    int batchWords = Math.max(1, Math.min(totalWords, wordBudget / Math.max(1, componentNum)));
+    long[] rows = new long[Math.max(1, componentNum * batchWords)];
+
+    int first = 0;
+    for (int lo = 0; lo < columns; lo += batchWords * 64) {
+      int hi = Math.min(columns, lo + batchWords * 64);
+      int words = (hi - lo + 63) >>> 6;
+      // first component with a member in this batch, components before it never see a bit
+      while (firstColumn[first + 1] <= lo) {
+        first++;
+      }
+      Arrays.fill(rows, 0, (componentNum - first) * words, 0L);
+      for (int c = first; c < componentNum; c++) {
+        int row = (c - first) * words;
+        for (int k = 0; k < components.condensedDegree(c); k++) {
+          int dep = components.condensedAt(c, k);
+          if (dep < first) {
+            continue;
+          }
+          int depRow = (dep - first) * words;
+          for (int w = 0; w < words; w++) {
+            rows[row + w] |= rows[depRow + w];
+          }
+          // the members of the dependency itself
+          setRange(rows, row, firstColumn[dep] - lo, firstColumn[dep + 1] - lo, hi - lo);
+        }
+        int bits = 0;
+        for (int w = 0; w < words; w++) {
+          bits += Long.bitCount(rows[row + w]);
+        }
+        count[c] += bits;
+      }
+    }
+    // members of a cycle depend on every other member of it
+    for (int c = 0; c < componentNum; c++) {
+      count[c] += components.size(c) - 1;
+    }
+  }
+
+  /**
+   * Returns the number of distinct packages a vertex depends on, directly or not, not counting
+   * the vertex itself.
+   *
+   * @param id the id of the vertex
+   */
+  int countOf(int id) {
+    return count[components.componentOf(id)];
+  }
+
+  /**
+   * helper method that sets the bits [from, to) of a row, clipped to [0, limit)
+   */
+  private static void setRange(long[] rows, int row, int from, int to, int limit) {
+    from = Math.max(from, 0);
+    to = Math.min(to, limit);
+    for (int bit = from; bit < to; bit++) {
+      rows[row + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filename: DependencyResolver.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Finds the installation order of a single package with an iterative depth first search.
+ *
+ * Every vertex is coloured white (not seen), grey (on the current path) or black (finished). A
+ * vertex is added to the order when it turns black, which is after all of its dependencies, so
+ * every package is visited exactly once no matter how many packages share it. Reaching a grey
+ * vertex again means the current path loops back on itself, so cycles of any length are found in
+ * the same pass. The path is kept on an explicit stack instead of the call stack, so very deep
+ * dependency chains cannot overflow it.
+ */
+class DependencyResolver {
+
+  private static final byte WHITE = 0;
+  private static final byte GREY = 1;
+  private static final byte BLACK = 2;
+
+  // the graph being searched
+  private final IndexedGraph graph;
+  // colour of every vertex, indexed by id
+  private final byte[] colour;
+  // the current path: the vertex at each level and the index of the next edge to follow
+  private int[] pathVertex = new int[64];
+  private int[] pathEdge = new int[64];
+  private int depth;
+  // finished vertices in installation order
+  private int[] order = new int[64];
+  private int orderSize;
+  // number of vertices and edges searched over every call, for the metrics
+  private long visitedVertices;
+  private long visitedEdges;
+
+  /**
+   * Creates a resolver for a graph. The graph must not change while the resolver is used.
+   *
+   * @param graph the graph to search
+   */
+  DependencyResolver(IndexedGraph graph) {
+    this.graph = graph;
+    this.colour = new byte[graph.idBound()];
+  }
+
+  /**
+   * Returns the installation order of a vertex: the vertex itself and everything it depends on,
+   * directly or not, where each vertex comes after all of its dependencies.
+   *
+   * Vertices finished by an earlier call on the same resolver count as already installed and are
+   * left out. After a CycleException the resolver must not be used again.
+   *
+   * @param root the id of the vertex to install
+   * @return the ids in installation order, ending with root
+   * @throws CycleException if a cycle is reachable from root
+   */
+  int[] resolve(int root) throws CycleException {
+    orderSize = 0;
+    depth = 0;
+    if (colour[root] == BLACK) {
+      return new int[0];
+    }
+    push(root);
+    while (depth > 0) {
+      int v = pathVertex[depth - 1];
+      int k = pathEdge[depth - 1];
+      if (k < graph.outDegree(v)) {
+        // follow the next edge of the vertex on top of the path
+        pathEdge[depth - 1] = k + 1;
+        visitedEdges++;
+        int dep = graph.adjacentAt(v, k);
+        if (colour[dep] == WHITE) {
+          push(dep);
+        } else if (colour[dep] == GREY) {
+          throw cycleAt(dep);
+        }
+      } else {
+        // all dependencies are done, the vertex can be installed
+        colour[v] = BLACK;
+        depth--;
+        if (orderSize == order.length) {
+          order = Arrays.copyOf(order, orderSize * 2);
+        }
+        order[orderSize++] = v;
+      }
+    }
+    return Arrays.copyOf(order, orderSize);
+  }
+
+  /**
+   * Marks a vertex as already installed. Later calls to resolve leave it out and do not search its
+   * dependencies.
+   *
+   * @param id the id of the vertex
+   */
+  void markInstalled(int id) {
+    colour[id] = BLACK;
+  }
+
+  /**
+   * Returns the number of vertices searched by every call to resolve so far.
+   */
+  long getVisitedVertexCount() {
+    return visitedVertices;
+  }
+
+  /**
+   * Returns the number of edges followed by every call to resolve so far.
+   */
+  long getVisitedEdgeCount() {
+    return visitedEdges;
+  }
+
+  /**
+   * helper method that puts a white vertex on top of the path
+   */
+  private void push(int v) {
+    if (depth == pathVertex.length) {
+      pathVertex = Arrays.copyOf(pathVertex, depth * 2);
+      pathEdge = Arrays.copyOf(pathEdge, depth * 2);
+    }
+    colour[v] = GREY;
+    visitedVertices++;
+    pathVertex[depth] = v;
+    pathEdge[depth] = 0;
+    depth++;
+  }
+
+  /**
+   * helper method that builds the exception for an edge from the top of the path back to the grey
+   * vertex dep. The cycle is the part of the path from dep to the top, and every vertex on the path
+   * depends on it, so all of them are blocked.
+   */
+  private CycleException cycleAt(int dep) {
+    List<String> blocked = new ArrayList<String>(depth);
+    List<String> cycle = new ArrayList<String>();
+    for (int i = 0; i < depth; i++) {
+      blocked.add(graph.nameOf(pathVertex[i]));
+      if (pathVertex[i] == dep || !cycle.isEmpty()) {
+        cycle.add(graph.nameOf(pathVertex[i]));
+      }
+    }
+    return new CycleException(cycle, blocked);
+  }
+}
@@ -0,0 +1,323 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filename: DynamicTopologicalOrder.java Project: p4 Authors: Kunlun Wang Email:
+ * kwang358@wisc.edu
+ *
+ * Keeps a global installation order of a Graph up to date while edges are added and removed,
+ * following the dynamic topological sort of Pearce and Kelly.
+ *
+ * Every vertex has a position and every vertex comes after all of its dependencies. Removing an
+ * edge never breaks that. When an edge A -> B is added with B currently after A, only the
+ * vertices positioned between A and B can be affected: the dependents of A in that window and the
+ * dependencies of B in that window are found with two bounded searches, and their positions are
+ * shuffled among themselves so that B's side comes first. If the search from A reaches B, the new
+ * edge closes a cycle.
+ *
+ * The order listens to the graph. Edges that go through checkEdge are rejected before they close
+ * a cycle; an edge added to the graph some other way that closes one marks the order stale, and it
+ * is rebuilt from scratch the next time it is read.
+ */
+class DynamicTopologicalOrder implements GraphListener {
+
+  // the graph being ordered
+  private final Graph graph;
+  // position of every vertex id, -1 for ids not in use
+  private int[] position;
+  // vertex at every position, -1 for positions freed by removed vertices
+  private int[] vertexAt;
+  // number of positions handed out, and how many of them are free
+  private int used;
+  private int holes;
+  // true after an edge closed a cycle behind our back
+  private boolean stale;
+
+  // search state, a vertex is visited in the current search when mark[v] == stamp
+  private int[] mark;
+  private int stamp;
+  private int[] stack = new int[16];
+
+  /**
+   * Builds the order of a graph and starts listening to it.
+   *
+   * @param graph the graph to order
+   * @throws CycleException if the graph has a cycle
+   */
+  DynamicTopologicalOrder(Graph graph) throws CycleException {
+    this.graph = graph;
+    rebuild();
+    graph.addListener(this);
+  }
+
+  /**
+   * Stops listening to the graph.
+   */
+  void detach() {
+    graph.removeListener(this);
+  }
+
+  /**
+   * Returns the current installation order of all the vertices.
+   *
+   * @return the ids of all the vertices in installation order
+   * @throws CycleException if the graph has a cycle
+   */
+  int[] order() throws CycleException {
+    if (stale) {
+      rebuild();
+    }
+    int[] order = new int[used - holes];
+    int size = 0;
+    for (int p = 0; p < used; p++) {
+      if (vertexAt[p] >= 0) {
+        order[size++] = vertexAt[p];
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Makes room in the order for an edge from src to dst that is about to be added, moving only the
+   * vertices between the two. Both vertices must already be in the graph.
+   *
+   * @param src the id of the dependent
+   * @param dst the id of the dependency
+   * @throws CycleException if the edge would close a cycle, the order is left unchanged
+   */
+  void checkEdge(int src, int dst) throws CycleException {
+    if (stale) {
+      rebuild();
+    }
+    if (src == dst) {
+      String name = graph.nameOf(src);
+      throw new CycleException(List.of(name), List.of(name));
+    }
+    int lower = position[src];
+    int upper = position[dst];
+    if (upper < lower) {
+      // dst already comes first
+      return;
+    }
+    // everything that depends on src and sits before dst has to move behind dst
+    int[] forward = search(src, upper, true, dst);
+    if (forward == null) {
+      List<String> cycle = cycle(src, dst);
+      throw new CycleException(cycle, cycle);
+    }
+    // everything dst depends on that sits after src has to move in front of src
+    int[] backward = search(dst, lower, false, -1);
+    reorder(backward, forward);
+  }
+
+  @Override
+  public void vertexAdded(int id) {
+    if (id >= position.length) {
+      position = Arrays.copyOf(position, Math.max(id + 1, position.length * 2));
+      mark = Arrays.copyOf(mark, position.length);
+    }
+    // a new vertex has no edges, so the end of the order is fine
+    if (used == vertexAt.length) {
+      vertexAt = Arrays.copyOf(vertexAt, Math.max(16, used * 2));
+    }
+    position[id] = used;
+    vertexAt[used++] = id;
+  }
+
+  @Override
+  public void vertexRemoved(int id) {
+    vertexAt[position[id]] = -1;
+    position[id] = -1;
+    holes++;
+    if (holes > 16 && holes > used / 2) {
+      compact();
+    }
+  }
+
+  @Override
+  public void edgeAdded(int src, int dst) {
+    if (!stale && (src == dst || position[dst] > position[src])) {
+      // the edge was added without checkEdge, fix the order now, a self-loop never fits in it
+      try {
+        checkEdge(src, dst);
+      } catch (CycleException e) {
+        stale = true;
+      }
+    }
+  }
+
+  /**
+   * helper method that collects the vertices reachable from start whose position is within the
+   * window. Forward searches follow dependents up to position bound, backward searches follow
+   * dependencies down to position bound.
+   *
+   * @return the vertices found, or null if the forward search reached target
+   */
+  private int[] search(int start, int bound, boolean forward, int target) {
+    newStamp();
+    int[] found = new int[16];
+    int foundNum = 0;
+    int depth = 0;
+    mark[start] = stamp;
+    stack[depth++] = start;
+    while (depth > 0) {
+      int v = stack[--depth];
+      if (foundNum == found.length) {
+        found = Arrays.copyOf(found, foundNum * 2);
+      }
+      found[foundNum++] = v;
+      int degree = forward ? graph.inDegree(v) : graph.outDegree(v);
+      for (int k = 0; k < degree; k++) {
+        int w = forward ? graph.incomingAt(v, k) : graph.adjacentAt(v, k);
+        if (w == target) {
+          return null;
+        }
+        boolean inWindow = forward ? position[w] < bound : position[w] > bound;
+        if (mark[w] != stamp && inWindow) {
+          mark[w] = stamp;
+          if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+          }
+          stack[depth++] = w;
+        }
+      }
+    }
+    return Arrays.copyOf(found, foundNum);
+  }
+
+  /**
+   * helper method that gives the positions held by both sets back to them, the backward set first
+   * and each set keeping its relative order
+   */
+  private void reorder(int[] backward, int[] forward) {
+    sortByPosition(backward);
+    sortByPosition(forward);
+    int[] slots = new int[backward.length + forward.length];
+    for (int i = 0; i < backward.length; i++) {
+      slots[i] = position[backward[i]];
+    }
+    for (int i = 0; i < forward.length; i++) {
+      slots[backward.length + i] = position[forward[i]];
+    }
+    Arrays.sort(slots);
+    for (int i = 0; i < slots.length; i++) {
+      int v = i < backward.length ? backward[i] : forward[i - backward.length];
+      position[v] = slots[i];
+      vertexAt[slots[i]] = v;
+    }
+  }
+
+  /**
+   * helper method that sorts vertex ids by their position
+   */
+  private void sortByPosition(int[] vertices) {
+    long[] keyed = new long[vertices.length];
+    for (int i = 0; i < vertices.length; i++) {
+      keyed[i] = ((long) position[vertices[i]] << 32) | vertices[i];
+    }
+    Arrays.sort(keyed);
+    for (int i = 0; i < vertices.length; i++) {
+      vertices[i] = (int) keyed[i];
+    }
+  }
+
+  /**
+   * helper method that finds the names on a path of dependencies from dst back to src, which
+   * together with a new edge src -> dst is a cycle
+   */
+  private List<String> cycle(int src, int dst) {
+    return cycleThrough(graph, src, dst);
+  }
+
+  /**
+   * Returns the cycle a new edge src -> dst would close: src, dst and the shortest path of
+   * dependencies from dst back to src, each package depending on the next and the last one on
+   * src. Returns null if dst does not depend on src, so the edge closes no cycle.
+   *
+   * @param graph the graph without the new edge
+   * @param src   the id of the dependent
+   * @param dst   the id of the dependency, different from src
+   */
+  static List<String> cycleThrough(IndexedGraph graph, int src, int dst) {
+    // breadth first search over dependencies, parent[v] is the vertex v was reached from plus one
+    int[] parent = new int[graph.idBound()];
+    int[] queue = new int[graph.idBound()];
+    int tail = 0;
+    queue[tail++] = dst;
+    parent[dst] = dst + 1;
+    for (int head = 0; head < tail && parent[src] == 0; head++) {
+      int v = queue[head];
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        int w = graph.adjacentAt(v, k);
+        if (parent[w] == 0) {
+          parent[w] = v + 1;
+          queue[tail++] = w;
+        }
+      }
+    }
+    if (parent[src] == 0) {
+      return null;
+    }
+    List<String> path = new ArrayList<String>();
+    for (int v = src; v != dst; v = parent[v] - 1) {
+      path.add(graph.nameOf(v));
+    }
+    path.add(graph.nameOf(dst));
+    // path runs src <- ... <- dst, the cycle runs src -> dst -> ... -> src
+    List<String> cycle = new ArrayList<String>();
+    cycle.add(path.get(0));
+    for (int i = path.size() - 1; i > 0; i--) {
+      cycle.add(path.get(i));
+    }
+    return cycle;
+  }
+
+  /**
+   * helper method that starts a new search without clearing the marks
+   */
+  private void newStamp() {
+    if (++stamp == Integer.MAX_VALUE) {
+      Arrays.fill(mark, 0);
+      stamp = 1;
+    }
+  }
+
+  /**
+   * helper method that closes the holes left by removed vertices
+   */
+  private void compact() {
+    int size = 0;
+    for (int p = 0; p < used; p++) {
+      int v = vertexAt[p];
+      if (v >= 0) {
+        position[v] = size;
+        vertexAt[size++] = v;
+      }
+    }
+    Arrays.fill(vertexAt, size, used, -1);
+    used = size;
+    holes = 0;
+  }
+
+  /**
+   * helper method that computes the order from scratch
+   */
+  private void rebuild() throws CycleException {
+    int bound = graph.idBound();
+    int[] order = new TopologicalSorter(graph).order();
+    int capacity = Math.max(16, bound);
+    position = new int[capacity];
+    Arrays.fill(position, -1);
+    vertexAt = new int[capacity];
+    mark = new int[capacity];
+    stamp = 0;
+    for (int p = 0; p < order.length; p++) {
+      position[order[p]] = p;
+      vertexAt[p] = order[p];
+    }
+    used = order.length;
+    holes = 0;
+    stale = false;
+  }
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filename: FrozenGraph.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Immutable graph in compressed sparse row form, for a graph that is only queried once it has
+ * been built.
+ *
+ * The edges of vertex v are targets[offsets[v] .. offsets[v + 1]), so an edge costs one int and
+ * the adjacency of every vertex is one contiguous slice of a single array. The incoming edges are
+ * stored the same way, sorted by the id they come from. Names are kept in an array indexed by id
+ * and found through an open addressing table of ids, without boxing. A frozen graph keeps the ids
+ * of the graph it was frozen from, removed ids included, and every field is final, so it can be
+ * handed to other threads without any locking.
+ */
+class FrozenGraph implements IndexedGraph {
+
+  // name of every id, null for ids that were not in use
+  private final String[] names;
+  // edges of vertex v are targets[offsets[v] .. offsets[v + 1])
+  private final int[] offsets;
+  private final int[] targets;
+  // edges into vertex v come from sources[reverseOffsets[v] .. reverseOffsets[v + 1])
+  private final int[] reverseOffsets;
+  private final int[] sources;
+  // open addressing table from name to id + 1, 0 marks an empty slot
+  private final int[] slots;
+  private final int vertexNum;
+
+  /**
+   * helper constructor that takes over the finished arrays
+   */
+  private FrozenGraph(String[] names, int[] offsets, int[] targets, int[] reverseOffsets,
+      int[] sources, int[] slots, int vertexNum) {
+    this.names = names;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.reverseOffsets = reverseOffsets;
+    this.sources = sources;
+    this.slots = slots;
+    this.vertexNum = vertexNum;
+  }
+
+  /**
+   * Copies a graph into a frozen graph with the same ids and the same adjacency order.
+   *
+   * @param graph the graph to copy, it must not change during the call
+   * @return the frozen copy
+   */
+  static FrozenGraph of(IndexedGraph graph) {
+    int bound = graph.idBound();
+    String[] names = new String[bound];
+    int[] offsets = new int[bound + 1];
+    for (int id = 0; id < bound; id++) {
+      names[id] = graph.nameOf(id);
+      offsets[id + 1] = offsets[id] + (names[id] == null ? 0 : graph.outDegree(id));
+    }
+    int[] targets = new int[offsets[bound]];
+    for (int id = 0; id < bound; id++) {
+      for (int k = 0; k < offsets[id + 1] - offsets[id]; k++) {
+        targets[offsets[id] + k] = graph.adjacentAt(id, k);
+      }
+    }
+    // counting sort of the edges by target, going through sources in id order keeps rows sorted
+    int[] reverseOffsets = new int[bound + 1];
+    for (int target : targets) {
+      reverseOffsets[target + 1]++;
+    }
+    for (int id = 0; id < bound; id++) {
+      reverseOffsets[id + 1] += reverseOffsets[id];
+    }
+    int[] sources = new int[targets.length];
+    int[] fill = Arrays.copyOf(reverseOffsets, bound);
+    for (int id = 0; id < bound; id++) {
+      for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+        sources[fill[targets[e]]++] = id;
+      }
+    }
+    // the table is kept at most half full so probe sequences stay short
+    int vertexNum = 0;
+    for (String name : names) {
+      if (name != null) {
+        vertexNum++;
+      }
+    }
+    int[] slots = new int[Integer.highestOneBit(Math.max(4, vertexNum) * 2 - 1) << 1];
+    int mask = slots.length - 1;
+    for (int id = 0; id < bound; id++) {
+      if (names[id] != null) {
+        int slot = slotOf(names[id].hashCode(), mask);
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+      }
+    }
+    return new FrozenGraph(names, offsets, targets, reverseOffsets, sources, slots, vertexNum);
+  }
+
+  /**
+   * A frozen graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addVertex(String vertex) {
+    throw new UnsupportedOperationException("frozen graph is read-only");
+  }
+
+  /**
+   * A frozen graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeVertex(String vertex) {
+    throw new UnsupportedOperationException("frozen graph is read-only");
+  }
+
+  /**
+   * A frozen graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("frozen graph is read-only");
+  }
+
+  /**
+   * A frozen graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("frozen graph is read-only");
+  }
+
+  /**
+   * Returns a Set that contains all the vertices
+   */
+  public Set<String> getAllVertices() {
+    Set<String> vertexSet = new HashSet<String>(vertexNum * 2);
+    for (String name : names) {
+      if (name != null) {
+        vertexSet.add(name);
+      }
+    }
+    return vertexSet;
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * @param vertex the vertex where we try to find its neighbors
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    List<String> neighborList = new ArrayList<String>();
+    int id = idOf(vertex);
+    if (id >= 0) {
+      for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+        neighborList.add(names[targets[e]]);
+      }
+    }
+    return neighborList;
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   */
+  public int size() {
+    return targets.length;
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   */
+  public int order() {
+    return vertexNum;
+  }
+
+  public int idOf(String vertex) {
+    if (vertex == null) {
+      return -1;
+    }
+    int mask = slots.length - 1;
+    int slot = slotOf(vertex.hashCode(), mask);
+    while (slots[slot] != 0) {
+      int id = slots[slot] - 1;
+      if (names[id].equals(vertex)) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  public String nameOf(int id) {
+    return names[id];
+  }
+
+  public int idBound() {
+    return names.length;
+  }
+
+  public int outDegree(int id) {
+    return offsets[id + 1] - offsets[id];
+  }
+
+  public int adjacentAt(int id, int k) {
+    return targets[offsets[id] + k];
+  }
+
+  public int inDegree(int id) {
+    return reverseOffsets[id + 1] - reverseOffsets[id];
+  }
+
+  public int incomingAt(int id, int k) {
+    return sources[reverseOffsets[id] + k];
+  }
+
+  /**
+   * helper method that spreads the bits of a hash code and maps it to its home slot
+   */
+  private static int slotOf(int hash, int mask) {
+    int h = hash * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+}
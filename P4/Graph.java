@@ -1,25 +1,46 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
 /**
  * Filename: Graph.java Project: p4 Authors: Kunlun Wang & Deb Deppeler Email: kwang358@wisc.edu
- * 
+ *
  * Directed and unweighted graph implementation
+ *
+ * Every vertex name is interned to a dense int id through a hash index, and the edges of each
+ * vertex are kept in a growable int array, so finding a vertex and adding an edge are O(1)
+ * amortized instead of a scan over all the vertices. The edges coming into each vertex are kept
+ * the same way, so the dependents of a vertex are found without a scan either.
  */
 
-public class Graph implements GraphADT {
+public class Graph implements IndexedGraph {
 
-  // First of all, we need to define a few data structure:
-  // we have two options for DS:
-  // This is a list structure that stores all the vertices in the graph W
+  // initial length of a freshly created adjacency row
+  private static final int INITIAL_ROW_LENGTH = 4;
+
+  // This is a list structure that stores all the vertices in the graph, the index of a vertex in
+  // this list is its id. The slot of a removed vertex is null until the id is reused
   private List<String> vertexList;
-  // we could also use a 2D arrayList to store all the edges
-  private List<List<String>> edgeList;
-  // This is an adjacency matrix
-  private boolean[][] adjMatrix;
+  // hash index from the name of a vertex to its id
+  private Map<String, Integer> vertexIndex;
+  // ids of removed vertices that can be handed out again
+  private int[] freeIds;
+  private int freeNum;
+  // edgeList[id] stores the ids of the vertices that vertex id has an edge to,
+  // only the first edgeCount[id] entries of a row are in use
+  private int[][] edgeList;
+  private int[] edgeCount;
+  // reverseList[id] stores the ids of the vertices that have an edge to vertex id, in the order
+  // the edges were added, only the first reverseCount[id] entries of a row are in use
+  private int[][] reverseList;
+  private int[] reverseCount;
+  // every edge encoded as (src << 32 | dst), used to reject duplicate edges in O(1)
+  private LongHashSet edgeSet;
 
   // int var to store the number of vertices in the graph, aka order
   private int vertexNum;
@@ -27,20 +48,27 @@ public class Graph implements GraphADT {
   // int var to store the number of edges in the graph, aka edges
   private int edgeNum;
 
+  // listeners told about every change, usually empty
+  private GraphListener[] listeners;
+
 
   /*
    * Default no-argument constructor
    */
   public Graph() {
-    // we initilize the adjMatrix to have a large size of 200*200
-    // and if the matrix number of vertices exceeds the size,
-    // we could expand its size
-    this.adjMatrix = new boolean[200][200];
     // initialize the edgeList
-    this.edgeList = new ArrayList<>();
+    this.edgeList = new int[16][];
+    this.edgeCount = new int[16];
+    this.reverseList = new int[16][];
+    this.reverseCount = new int[16];
+    this.edgeSet = new LongHashSet();
     this.vertexList = new ArrayList<String>();
+    this.vertexIndex = new HashMap<String, Integer>();
+    this.freeIds = new int[4];
+    this.freeNum = 0;
     this.vertexNum = 0;
     this.edgeNum = 0;
+    this.listeners = new GraphListener[0];
   }
 
   /**
@@ -48,182 +76,250 @@ public class Graph implements GraphADT {
    *
    * If vertex is null or already exists, method ends without adding a vertex or throwing an
    * exception.
-   * 
+   *
    * Valid argument conditions: 1. vertex is non-null 2. vertex is not already in the graph
    */
 
   public void addVertex(String vertex) {
-    // if the vertex to be added is null && the vertexList contains such a vertex
-    // then we immediately proceed to return
-    if (vertex != null && !this.vertexList.contains(vertex)) {
-      // we add the vertex to the vertexList
-      vertexList.add(vertex);
-      // And we since there is one more vertex, we need to increment the
-      // amount of arrayList in edgeList
-      edgeList.add(new ArrayList<>());
-      // we need to increment the vertex number
-      this.vertexNum++;
+    // if the vertex to be added is null we immediately proceed to return,
+    // addChecker ignores vertices that are already in the graph
+    if (vertex != null) {
+      addChecker(vertex);
     }
   }
 
-  // private boolean [][] expandAdjMatrix(boolean[][] adjMatrix) {
-  // int reSize = 2 * adjMatrix.length;
-  // boolean[][] reSizedMatrix = new boolean [reSize][reSize];
-  // for (int i=0; i<adjMatrix.length; i++) {
-  // for (int j=0; j<adjMatrix[i].length; j++) {
-  // reSizedMatrix[i][j] = adjMatrix[i][j];
-  // }
-  // }
-  // return reSizedMatrix;
-  // }
-  //
-
   /**
    * Remove a vertex and all associated edges from the graph.
-   * 
+   *
    * If vertex is null or does not exist, method ends without removing a vertex, edges, or throwing
    * an exception.
-   * 
+   *
    * Valid argument conditions: 1. vertex is non-null 2. vertex is not already in the graph
    */
   public void removeVertex(String vertex) {
-    // if the vertex is not null && the vertexList contains such a vertex
+    // if the vertex is not null && the graph contains such a vertex
     // we proceed to removal
-    if (vertex != null && this.vertexList.contains(vertex)) {
-      for (int i = 0; i < vertexNum; i++) {
-        // if the element at index i of the vertexList equals the vertex to be removed,
-        // then we need to remove that element
-        if (vertexList.get(i).equals(vertex)) {
-          vertexList.remove(i);
-          // decrement the vertex number
-          vertexNum--;
-        }
+    int id = idOf(vertex);
+    if (id < 0) {
+      return;
+    }
+    // first drop all the edges going out of the vertex
+    int[] row = edgeList[id];
+    int count = edgeCount[id];
+    for (int k = 0; k < count; k++) {
+      edgeSet.remove(edgeKey(id, row[k]));
+      removeFromReverseRow(row[k], id);
+    }
+    edgeNum -= count;
+    edgeList[id] = null;
+    edgeCount[id] = 0;
+    for (int k = 0; k < count; k++) {
+      for (GraphListener listener : listeners) {
+        listener.edgeRemoved(id, row[k]);
       }
     }
+    // then drop all the edges coming into the vertex, the reverse row says where they come from
+    while (reverseCount[id] > 0) {
+      removeFromRow(reverseList[id][reverseCount[id] - 1], id);
+    }
+    reverseList[id] = null;
+    // finally release the id
+    vertexIndex.remove(vertex);
+    vertexList.set(id, null);
+    if (freeNum == freeIds.length) {
+      freeIds = Arrays.copyOf(freeIds, freeNum * 2);
+    }
+    freeIds[freeNum++] = id;
+    vertexNum--;
+    for (GraphListener listener : listeners) {
+      listener.vertexRemoved(id);
+    }
   }
 
   /**
    * Add the edge from vertex1 to vertex2 to this graph. (edge is directed and unweighted) If either
    * vertex does not exist, add vertex, and add edge, no exception is thrown. If the edge exists in
    * the graph, no edge is added and no exception is thrown.
-   * 
+   *
    * Valid argument conditions: 1. neither vertex is null 2. both vertices are in the graph 3. the
    * edge is not in the graph
    */
   public void addEdge(String vertex1, String vertex2) {
-    // first check if both of the vertices are not null
-    // if (vertex1 == null || vertex2 == null) {
-    // return;
-    // }
-    // then check if both vertices are in the graph,
-    // if either or both of the vertices are not in the graph,
-    // we need to add it/them to the graph.
-    // if (!vertexList.contains(vertex1) || !vertexList.contains(vertex2)) {
-    // addVertex(vertex1);
-    // addVertex(vertex2);
-    // }
-
-    // now we need to check if there is an edge between vertex1 and vertex2
-
-    // if (!adjMatrix[vertexList.indexOf(vertex1)] [vertexList.indexOf(vertex2)]) {
-    // adjMatrix[vertexList.indexOf(vertex1)] [vertexList.indexOf(vertex2)] = true;
-    // edgeNum++;
-    // }
-    // }
-
-
     // first, we need to make sure that both vertices are not null
     if (vertex1 != null && vertex2 != null) {
-      // then we need to check for the duplicate of that vertex in the vertexList
-      addChecker(vertex1);
-      addChecker(vertex2);
-      for (int i = 0; i < vertexNum; i++) {
-        // here we add an edge from vertex 1 to vertex 2
-        if (vertexList.get(i).equals(vertex1)) {
-          if (!edgeList.get(i).contains(vertex2)) {
-            edgeList.get(i).add(vertex2);
-            // increment the edge number
-            this.edgeNum++;
-          }
-        }
-      }
+      // then we look up both vertices, adding the ones that are not in the graph yet
+      int src = addChecker(vertex1);
+      int dst = addChecker(vertex2);
+      addEdge(src, dst);
     }
+  }
 
-
+  /**
+   * Adds every vertex and edge of another graph that this graph does not have yet. Vertices are
+   * added in the id order of the other graph and each is looked up by name only once, so merging a
+   * graph read from a manifest gives the same ids as reading the manifest into this graph.
+   *
+   * @param other the graph to copy from, it must not change during the call
+   */
+  void addAll(AdjacencyRows other) {
+    int[] idMap = new int[other.idBound()];
+    for (int id = 0; id < idMap.length; id++) {
+      String name = other.nameOf(id);
+      idMap[id] = name == null ? -1 : addChecker(name);
+    }
+    for (int id = 0; id < idMap.length; id++) {
+      for (int k = 0; idMap[id] >= 0 && k < other.outDegree(id); k++) {
+        addEdge(idMap[id], idMap[other.adjacentAt(id, k)]);
+      }
+    }
   }
 
   /**
-   * helper method to check for duplicate of the vertex to be added if the vertext to be added
-   * doesnt exist in the vertexList, then we need to add it to the vertex list
-   * 
+   * helper method that adds the edge between two vertices that are in the graph, unless it is
+   * already there
    */
+  private void addEdge(int src, int dst) {
+    // the edge set tells us in O(1) whether the edge is already there
+    if (edgeSet.add(edgeKey(src, dst))) {
+      int[] row = edgeList[src];
+      if (row == null) {
+        row = new int[INITIAL_ROW_LENGTH];
+        edgeList[src] = row;
+      } else if (edgeCount[src] == row.length) {
+        row = Arrays.copyOf(row, row.length * 2);
+        edgeList[src] = row;
+      }
+      row[edgeCount[src]++] = dst;
+      int[] reverseRow = reverseList[dst];
+      if (reverseRow == null) {
+        reverseRow = new int[INITIAL_ROW_LENGTH];
+        reverseList[dst] = reverseRow;
+      } else if (reverseCount[dst] == reverseRow.length) {
+        reverseRow = Arrays.copyOf(reverseRow, reverseRow.length * 2);
+        reverseList[dst] = reverseRow;
+      }
+      reverseRow[reverseCount[dst]++] = src;
+      // increment the edge number
+      this.edgeNum++;
+      for (GraphListener listener : listeners) {
+        listener.edgeAdded(src, dst);
+      }
+    }
+  }
 
-  private void addChecker(String toAddVertex) {
-    for (int i = 0; i < this.vertexNum; i++) {
-      // check if the vertex exists in the vertexList or not
-      if (!vertexList.get(i).equals(toAddVertex)) {
-        // if not, add to the vertexList
-        addVertex(toAddVertex);
+  /**
+   * helper method to check for duplicate of the vertex to be added if the vertex to be added
+   * doesnt exist in the graph, then we need to add it to the vertex list
+   *
+   * @param toAddVertex non-null name of the vertex
+   * @return the id of the vertex
+   */
+  private int addChecker(String toAddVertex) {
+    Integer existing = vertexIndex.get(toAddVertex);
+    if (existing != null) {
+      return existing;
+    }
+    int id;
+    // reuse the id of a removed vertex if there is one
+    if (freeNum > 0) {
+      id = freeIds[--freeNum];
+      vertexList.set(id, toAddVertex);
+    } else {
+      id = vertexList.size();
+      vertexList.add(toAddVertex);
+      if (id == edgeCount.length) {
+        int capacity = edgeCount.length * 2;
+        edgeList = Arrays.copyOf(edgeList, capacity);
+        edgeCount = Arrays.copyOf(edgeCount, capacity);
+        reverseList = Arrays.copyOf(reverseList, capacity);
+        reverseCount = Arrays.copyOf(reverseCount, capacity);
       }
     }
+    vertexIndex.put(toAddVertex, id);
+    // we need to increment the vertex number
+    this.vertexNum++;
+    for (GraphListener listener : listeners) {
+      listener.vertexAdded(id);
+    }
+    return id;
   }
 
   /**
    * Remove the edge from vertex1 to vertex2 from this graph. (edge is directed and unweighted) If
    * either vertex does not exist, or if an edge from vertex1 to vertex2 does not exist, no edge is
    * removed and no exception is thrown.
-   * 
+   *
    * Valid argument conditions: 1. neither vertex is null 2. both vertices are in the graph 3. the
    * edge from vertex1 to vertex2 is in the graph
    */
   public void removeEdge(String vertex1, String vertex2) {
-    // first we need to check if either of vertex is null
-    // if (!(vertex1 != null && vertex2 != null)) {
-    // return;
-    // }
-    //
-    // then we need to check if both vertices are in the graph
-    // if (!(vertexList.contains(vertex1) && vertexList.contains(vertex2))) {
-    // return;
-    // }
-    //
-    // if (adjMatrix[vertexList.indexOf(vertex1)] [vertexList.indexOf(vertex2)]) {
-    // adjMatrix[vertexList.indexOf(vertex1)] [vertexList.indexOf(vertex2)] = false;
-    // edgeNum--;
-    // }
-    // }
-
-
-    // make sure that both of the vertices are not null
-    if (vertex1 != null && vertex2 != null) {
-      for (int i = 0; i < this.vertexNum; i++) {
-        // we use the same method as we used in the previous method
-        // to remove the edge
-        if (vertexList.get(i).equals(vertex1)) {
-          if (edgeList.get(i).contains(vertex2)) {
-            // remove edge from the edgeList
-            edgeList.get(i).remove(vertex2);
-            // decrement
-            this.edgeNum--;
-          }
+    // make sure that both of the vertices are in the graph
+    int src = idOf(vertex1);
+    int dst = idOf(vertex2);
+    if (src >= 0 && dst >= 0 && edgeSet.contains(edgeKey(src, dst))) {
+      removeFromRow(src, dst);
+    }
+  }
+
+  /**
+   * helper method that removes an existing edge from src to dst, the remaining entries of the row
+   * keep their order
+   */
+  private void removeFromRow(int src, int dst) {
+    int[] row = edgeList[src];
+    int count = edgeCount[src];
+    for (int k = 0; k < count; k++) {
+      if (row[k] == dst) {
+        System.arraycopy(row, k + 1, row, k, count - k - 1);
+        edgeCount[src] = count - 1;
+        removeFromReverseRow(dst, src);
+        edgeSet.remove(edgeKey(src, dst));
+        // decrement
+        this.edgeNum--;
+        for (GraphListener listener : listeners) {
+          listener.edgeRemoved(src, dst);
         }
+        return;
       }
     }
   }
 
+  /**
+   * helper method that removes src from the reverse row of dst, the remaining entries of the row
+   * keep their order
+   */
+  private void removeFromReverseRow(int dst, int src) {
+    int[] row = reverseList[dst];
+    int count = reverseCount[dst];
+    for (int k = 0; k < count; k++) {
+      if (row[k] == src) {
+        System.arraycopy(row, k + 1, row, k, count - k - 1);
+        reverseCount[dst] = count - 1;
+        return;
+      }
+    }
+  }
+
+  /**
+   * helper method that encodes an edge as a single long key
+   */
+  private static long edgeKey(int src, int dst) {
+    return ((long) src << 32) | dst;
+  }
+
   /**
    * Returns a Set that contains all the vertices
-   * 
+   *
    */
   public Set<String> getAllVertices() {
-    // declare a set that contains all the elements from the vertexList
-    Set<String> vertexSet = new HashSet<String>(this.vertexList);
+    // declare a set that contains all the vertices that are still in the graph
+    Set<String> vertexSet = new HashSet<String>(vertexIndex.keySet());
     return vertexSet;
   }
 
   /**
    * Get all the neighbor (adjacent) vertices of a vertex
-   * 
+   *
    * @param vertex the vertex where we try to find its neighbors
    *
    */
@@ -231,21 +327,12 @@ public class Graph implements GraphADT {
     // first we declare a list that will store all the neighbors
     // of a given vertex
     List<String> neighborList = new ArrayList<String>();
-    // if the vertex is not null
-    if (vertex != null) {
-      // and the vertexList should contain such a vertex
-      if (vertexList.contains(vertex)) {
-        // First of all we go to the source of the vertex(scr, from)
-        for (int i = 0; i < this.vertexNum; i++) {
-          // If we found such a vertex
-          if (vertexList.get(i).equals(vertex)) {
-            // then we proceed to the get all the elements in that arrayList
-            for (int j = 0; j < edgeList.get(i).size(); j++) {
-              // get all the elements
-              neighborList.add(edgeList.get(i).get(j));
-            }
-          }
-        }
+    int id = idOf(vertex);
+    // if the graph contains such a vertex we translate every id in its row back to a name
+    if (id >= 0) {
+      int[] row = edgeList[id];
+      for (int k = 0; k < edgeCount[id]; k++) {
+        neighborList.add(vertexList.get(row[k]));
       }
     }
     return neighborList;
@@ -264,4 +351,101 @@ public class Graph implements GraphADT {
   public int order() {
     return vertexNum;
   }
+
+  /**
+   * Registers a listener that is told about every later change to the graph.
+   *
+   * @param listener the listener to add
+   */
+  void addListener(GraphListener listener) {
+    listeners = Arrays.copyOf(listeners, listeners.length + 1);
+    listeners[listeners.length - 1] = listener;
+  }
+
+  /**
+   * Unregisters a listener added by addListener.
+   *
+   * @param listener the listener to remove
+   */
+  void removeListener(GraphListener listener) {
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] == listener) {
+        GraphListener[] rest = new GraphListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, rest, 0, i);
+        System.arraycopy(listeners, i + 1, rest, i, rest.length - i);
+        listeners = rest;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the id of a vertex, or -1 if the vertex is null or not in the graph.
+   *
+   * @param vertex the name of the vertex
+   */
+  public int idOf(String vertex) {
+    if (vertex == null) {
+      return -1;
+    }
+    Integer id = vertexIndex.get(vertex);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the name of the vertex with the given id, or null if the id is not in use.
+   *
+   * @param id the id of the vertex
+   */
+  public String nameOf(int id) {
+    return vertexList.get(id);
+  }
+
+  /**
+   * Returns an exclusive upper bound on the ids handed out so far. Ids of removed vertices below
+   * this bound have a null name.
+   */
+  public int idBound() {
+    return vertexList.size();
+  }
+
+  /**
+   * Returns the number of edges going out of the vertex with the given id.
+   *
+   * @param id the id of the vertex
+   */
+  public int outDegree(int id) {
+    return edgeCount[id];
+  }
+
+  /**
+   * Returns the id of the k-th vertex that the vertex with the given id has an edge to, in the
+   * order the edges were added.
+   *
+   * @param id the id of the vertex
+   * @param k  index into the adjacency row, 0 <= k < outDegree(id)
+   */
+  public int adjacentAt(int id, int k) {
+    return edgeList[id][k];
+  }
+
+  /**
+   * Returns the number of edges coming into the vertex with the given id.
+   *
+   * @param id the id of the vertex
+   */
+  public int inDegree(int id) {
+    return reverseCount[id];
+  }
+
+  /**
+   * Returns the id of the k-th vertex that has an edge to the vertex with the given id, in the
+   * order the edges were added.
+   *
+   * @param id the id of the vertex
+   * @param k  index into the reverse row, 0 <= k < inDegree(id)
+   */
+  public int incomingAt(int id, int k) {
+    return reverseList[id][k];
+  }
 }
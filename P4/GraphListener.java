@@ -0,0 +1,39 @@
+/**
+ * Filename: GraphListener.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Gets told about every change made to a Graph, so that state derived from the graph can be
+ * updated or thrown away. The callbacks run on the thread that changes the graph, right after
+ * the change, and should be quick.
+ */
+interface GraphListener {
+
+  /**
+   * Called after a vertex is added.
+   *
+   * @param id the id of the new vertex
+   */
+  default void vertexAdded(int id) {}
+
+  /**
+   * Called after a vertex is removed, once the edges of the vertex have been removed.
+   *
+   * @param id the id the vertex had, it may be given to a new vertex later
+   */
+  default void vertexRemoved(int id) {}
+
+  /**
+   * Called after an edge is added.
+   *
+   * @param src the id of the vertex the edge starts at
+   * @param dst the id of the vertex the edge ends at
+   */
+  default void edgeAdded(int src, int dst) {}
+
+  /**
+   * Called after an edge is removed.
+   *
+   * @param src the id of the vertex the edge started at
+   * @param dst the id of the vertex the edge ended at
+   */
+  default void edgeRemoved(int src, int dst) {}
+}
@@ -0,0 +1,453 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Filename: GraphSnapshot.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Read-only graph backed by a memory-mapped binary snapshot file.
+ *
+ * A snapshot stores the vertex names as one UTF-8 blob, the edges in compressed sparse row form
+ * (an offsets array and a targets array) and an open addressing hash table from name to id. All
+ * lookups read straight from the mapped file, so opening a snapshot costs no parsing and puts
+ * almost nothing on the heap. The checksum and size of the manifest the graph was built from are
+ * recorded in the header so a stale snapshot can be detected.
+ *
+ * File layout, all numbers big endian:
+ *
+ * <pre>
+ * header      magic, version, vertex count, edge count, hash slots, (unused),
+ *             manifest size, manifest checksum, then the offset of every section below
+ * nameOffsets int[V + 1]   byte offset of each name in the names blob
+ * names       byte[]       UTF-8 names, padded to a multiple of 4
+ * offsets     int[V + 1]   edges of vertex v are targets[offsets[v] .. offsets[v + 1])
+ * targets     int[E]
+ * revOffsets  int[V + 1]   edges into v come from sources[revOffsets[v] .. revOffsets[v + 1])
+ * sources     int[E]       sorted by id within every vertex
+ * hash        (int hash, int id + 1)[slots], 0 id marks an empty slot
+ * </pre>
+ */
+class GraphSnapshot implements IndexedGraph {
+
+  // "PKGS"
+  private static final int MAGIC = 0x504B4753;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 96;
+
+  // the mapped snapshot file
+  private final ByteBuffer buffer;
+  private final int vertexNum;
+  private final int edgeNum;
+  private final int hashSlots;
+  private final long manifestSize;
+  private final long manifestChecksum;
+  // absolute positions of the sections in the buffer
+  private final int nameOffsetsPos;
+  private final int namesPos;
+  private final int offsetsPos;
+  private final int targetsPos;
+  private final int reverseOffsetsPos;
+  private final int sourcesPos;
+  private final int hashPos;
+
+  /**
+   * helper constructor that reads the header of a mapped snapshot
+   */
+  private GraphSnapshot(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("not a graph snapshot");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("unsupported graph snapshot version " + buffer.getInt(4));
+    }
+    this.vertexNum = buffer.getInt(8);
+    this.edgeNum = buffer.getInt(12);
+    this.hashSlots = buffer.getInt(16);
+    this.manifestSize = buffer.getLong(24);
+    this.manifestChecksum = buffer.getLong(32);
+    this.nameOffsetsPos = (int) buffer.getLong(40);
+    this.namesPos = (int) buffer.getLong(48);
+    this.offsetsPos = (int) buffer.getLong(56);
+    this.targetsPos = (int) buffer.getLong(64);
+    this.reverseOffsetsPos = (int) buffer.getLong(72);
+    this.sourcesPos = (int) buffer.getLong(80);
+    this.hashPos = (int) buffer.getLong(88);
+    if ((long) hashPos + 8L * hashSlots != buffer.capacity()) {
+      throw new IOException("truncated graph snapshot");
+    }
+  }
+
+  /**
+   * Maps a snapshot file into memory.
+   *
+   * @param snapshotPath path of the snapshot
+   * @return the graph stored in the snapshot
+   * @throws FileNotFoundException if the snapshot does not exist
+   * @throws IOException           if the file cannot be read or is not a valid snapshot
+   */
+  static GraphSnapshot open(Path snapshotPath) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("graph snapshot larger than 2GB");
+      }
+      // the mapping stays valid after the channel is closed
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new GraphSnapshot(mapped);
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(snapshotPath.toString());
+    }
+  }
+
+  /**
+   * Writes a graph to a snapshot file. Vertex ids are renumbered densely, so ids of the snapshot do
+   * not have to match the ids of the graph.
+   *
+   * @param graph            the graph to write
+   * @param snapshotPath     path of the snapshot to create or overwrite
+   * @param manifestSize     size in bytes of the manifest the graph was built from
+   * @param manifestChecksum checksum of that manifest, see checksumOf
+   * @throws IOException if the snapshot cannot be written
+   */
+  static void write(IndexedGraph graph, Path snapshotPath, long manifestSize,
+      long manifestChecksum) throws IOException {
+    // give every vertex in use a dense new id
+    int bound = graph.idBound();
+    int[] newId = new int[bound];
+    List<byte[]> names = new ArrayList<byte[]>();
+    long namesLength = 0;
+    long edges = 0;
+    for (int id = 0; id < bound; id++) {
+      String name = graph.nameOf(id);
+      if (name == null) {
+        newId[id] = -1;
+        continue;
+      }
+      newId[id] = names.size();
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      names.add(bytes);
+      namesLength += bytes.length;
+      edges += graph.outDegree(id);
+    }
+    int vertices = names.size();
+    int slots = Integer.highestOneBit(Math.max(4, vertices) * 2 - 1) << 1;
+
+    long nameOffsetsPos = HEADER_SIZE;
+    long namesPos = nameOffsetsPos + 4L * (vertices + 1);
+    long offsetsPos = namesPos + ((namesLength + 3) & ~3L);
+    long targetsPos = offsetsPos + 4L * (vertices + 1);
+    long reverseOffsetsPos = targetsPos + 4L * edges;
+    long sourcesPos = reverseOffsetsPos + 4L * (vertices + 1);
+    long hashPos = sourcesPos + 4L * edges;
+    if (hashPos + 8L * slots > Integer.MAX_VALUE) {
+      throw new IOException("graph too large for a snapshot");
+    }
+
+    // build the name hash table, each slot holds the hash of the name and its id + 1
+    int[] table = new int[slots * 2];
+    for (int v = 0; v < vertices; v++) {
+      int hash = new String(names.get(v), StandardCharsets.UTF_8).hashCode();
+      int slot = slotOf(hash, slots - 1);
+      while (table[slot * 2 + 1] != 0) {
+        slot = (slot + 1) & (slots - 1);
+      }
+      table[slot * 2] = hash;
+      table[slot * 2 + 1] = v + 1;
+    }
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(snapshotPath), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(vertices);
+      out.writeInt((int) edges);
+      out.writeInt(slots);
+      out.writeInt(0);
+      out.writeLong(manifestSize);
+      out.writeLong(manifestChecksum);
+      out.writeLong(nameOffsetsPos);
+      out.writeLong(namesPos);
+      out.writeLong(offsetsPos);
+      out.writeLong(targetsPos);
+      out.writeLong(reverseOffsetsPos);
+      out.writeLong(sourcesPos);
+      out.writeLong(hashPos);
+      // name offsets, then the names themselves
+      int offset = 0;
+      for (byte[] name : names) {
+        out.writeInt(offset);
+        offset += name.length;
+      }
+      out.writeInt(offset);
+      for (byte[] name : names) {
+        out.write(name);
+      }
+      for (long pad = namesLength; (pad & 3) != 0; pad++) {
+        out.writeByte(0);
+      }
+      // csr offsets, then the targets in the same order as the graph
+      int edgeOffset = 0;
+      for (int id = 0; id < bound; id++) {
+        if (newId[id] >= 0) {
+          out.writeInt(edgeOffset);
+          edgeOffset += graph.outDegree(id);
+        }
+      }
+      out.writeInt(edgeOffset);
+      for (int id = 0; id < bound; id++) {
+        if (newId[id] >= 0) {
+          for (int k = 0; k < graph.outDegree(id); k++) {
+            out.writeInt(newId[graph.adjacentAt(id, k)]);
+          }
+        }
+      }
+      // reverse csr, a counting sort of the edges by target
+      int[] reverseOffsets = new int[vertices + 1];
+      for (int id = 0; id < bound; id++) {
+        if (newId[id] >= 0) {
+          for (int k = 0; k < graph.outDegree(id); k++) {
+            reverseOffsets[newId[graph.adjacentAt(id, k)] + 1]++;
+          }
+        }
+      }
+      for (int v = 0; v < vertices; v++) {
+        reverseOffsets[v + 1] += reverseOffsets[v];
+      }
+      int[] sources = new int[(int) edges];
+      int[] fill = Arrays.copyOf(reverseOffsets, vertices);
+      for (int id = 0; id < bound; id++) {
+        if (newId[id] >= 0) {
+          for (int k = 0; k < graph.outDegree(id); k++) {
+            sources[fill[newId[graph.adjacentAt(id, k)]]++] = newId[id];
+          }
+        }
+      }
+      for (int start : reverseOffsets) {
+        out.writeInt(start);
+      }
+      for (int source : sources) {
+        out.writeInt(source);
+      }
+      for (int entry : table) {
+        out.writeInt(entry);
+      }
+    }
+  }
+
+  /**
+   * Computes the CRC32C checksum of a file, used to tie a snapshot to its manifest.
+   *
+   * @param file the file to checksum
+   * @return the checksum
+   * @throws IOException if the file cannot be read
+   */
+  static long checksumOf(Path file) throws IOException {
+    CRC32C crc = new CRC32C();
+    byte[] chunk = new byte[1 << 16];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read;
+      while ((read = in.read(chunk)) > 0) {
+        crc.update(chunk, 0, read);
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Returns true if this snapshot was written from the given manifest, checked through the size
+   * and checksum of the manifest.
+   *
+   * @param manifest path of the manifest
+   * @throws IOException if the manifest cannot be read
+   */
+  boolean isSnapshotOf(Path manifest) throws IOException {
+    return Files.size(manifest) == manifestSize && checksumOf(manifest) == manifestChecksum;
+  }
+
+  /**
+   * Returns the size of the manifest this snapshot was written from, -1 if none.
+   */
+  long getManifestSize() {
+    return manifestSize;
+  }
+
+  /**
+   * Returns the checksum of the manifest this snapshot was written from.
+   */
+  long getManifestChecksum() {
+    return manifestChecksum;
+  }
+
+  /**
+   * A snapshot is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addVertex(String vertex) {
+    throw new UnsupportedOperationException("graph snapshot is read-only");
+  }
+
+  /**
+   * A snapshot is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeVertex(String vertex) {
+    throw new UnsupportedOperationException("graph snapshot is read-only");
+  }
+
+  /**
+   * A snapshot is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("graph snapshot is read-only");
+  }
+
+  /**
+   * A snapshot is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("graph snapshot is read-only");
+  }
+
+  /**
+   * Returns a Set that contains all the vertices, the names are decoded from the snapshot.
+   */
+  public Set<String> getAllVertices() {
+    Set<String> vertexSet = new HashSet<String>();
+    for (int id = 0; id < vertexNum; id++) {
+      vertexSet.add(nameOf(id));
+    }
+    return vertexSet;
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * @param vertex the vertex where we try to find its neighbors
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    List<String> neighborList = new ArrayList<String>();
+    int id = idOf(vertex);
+    if (id >= 0) {
+      for (int k = 0; k < outDegree(id); k++) {
+        neighborList.add(nameOf(adjacentAt(id, k)));
+      }
+    }
+    return neighborList;
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   */
+  public int size() {
+    return edgeNum;
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   */
+  public int order() {
+    return vertexNum;
+  }
+
+  public int idOf(String vertex) {
+    if (vertex == null) {
+      return -1;
+    }
+    byte[] bytes = null;
+    int hash = vertex.hashCode();
+    int mask = hashSlots - 1;
+    int slot = slotOf(hash, mask);
+    // probe until an empty slot, only names with the same hash are compared byte by byte
+    while (true) {
+      int entry = hashPos + slot * 8;
+      int id = buffer.getInt(entry + 4) - 1;
+      if (id < 0) {
+        return -1;
+      }
+      if (buffer.getInt(entry) == hash) {
+        if (bytes == null) {
+          bytes = vertex.getBytes(StandardCharsets.UTF_8);
+        }
+        if (nameEquals(id, bytes)) {
+          return id;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  public String nameOf(int id) {
+    int start = buffer.getInt(nameOffsetsPos + id * 4);
+    int end = buffer.getInt(nameOffsetsPos + id * 4 + 4);
+    byte[] bytes = new byte[end - start];
+    buffer.get(namesPos + start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public int idBound() {
+    return vertexNum;
+  }
+
+  public int outDegree(int id) {
+    return buffer.getInt(offsetsPos + id * 4 + 4) - buffer.getInt(offsetsPos + id * 4);
+  }
+
+  public int adjacentAt(int id, int k) {
+    return buffer.getInt(targetsPos + (buffer.getInt(offsetsPos + id * 4) + k) * 4);
+  }
+
+  public int inDegree(int id) {
+    return buffer.getInt(reverseOffsetsPos + id * 4 + 4)
+        - buffer.getInt(reverseOffsetsPos + id * 4);
+  }
+
+  public int incomingAt(int id, int k) {
+    return buffer.getInt(sourcesPos + (buffer.getInt(reverseOffsetsPos + id * 4) + k) * 4);
+  }
+
+  /**
+   * helper method that compares the stored name of a vertex with the given UTF-8 bytes
+   */
+  private boolean nameEquals(int id, byte[] bytes) {
+    int start = buffer.getInt(nameOffsetsPos + id * 4);
+    int end = buffer.getInt(nameOffsetsPos + id * 4 + 4);
+    if (end - start != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (buffer.get(namesPos + start + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * helper method that maps a name hash to its home slot
+   */
+  private static int slotOf(int hash, int mask) {
+    return (hash ^ (hash >>> 16)) * 0x9E3779B9 & mask;
+  }
+}
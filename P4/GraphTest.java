@@ -203,4 +203,77 @@ public class GraphTest {
 
 
 
-}
\ No newline at end of file
+  /**
+   * Test whether removing a vertex also removes the edges going into and out of it.
+   */
+  @Test
+  public void test012_removeVertexRemovesAssociatedEdges() {
+    Graph testGraph012 = new Graph();
+    testGraph012.addEdge("A", "B");
+    testGraph012.addEdge("B", "C");
+    testGraph012.addEdge("C", "B");
+    testGraph012.addEdge("A", "C");
+    testGraph012.removeVertex("B");
+    int sizeResult = testGraph012.size();
+    int orderResult = testGraph012.order();
+    if (sizeResult != 1 || orderResult != 2) {
+      fail("The size of the graph should be 1, but the result is " + sizeResult
+          + "The order of the graph should be 2, but the result is " + orderResult);
+    }
+    if (!testGraph012.getAdjacentVerticesOf("A").equals(List.of("C"))) {
+      fail("A should only be adjacent to C, but the result is "
+          + testGraph012.getAdjacentVerticesOf("A"));
+    }
+    // adding the vertex back should not bring back any of its old edges
+    testGraph012.addVertex("B");
+    if (!testGraph012.getAdjacentVerticesOf("B").isEmpty() || testGraph012.size() != 1) {
+      fail("B should have no edges after it is added again");
+    }
+  }
+
+  /**
+   * Test whether duplicate edges are ignored and edge order is kept on a large graph.
+   */
+  @Test
+  public void test013_addManyEdges() {
+    Graph testGraph013 = new Graph();
+    for (int i = 0; i < 10000; i++) {
+      testGraph013.addEdge("root", "pkg" + i);
+      testGraph013.addEdge("root", "pkg" + i);
+    }
+    testGraph013.removeEdge("root", "pkg0");
+    if (testGraph013.size() != 9999 || testGraph013.order() != 10001) {
+      fail("The size of the graph should be 9999, but the result is " + testGraph013.size()
+          + "The order of the graph should be 10001, but the result is " + testGraph013.order());
+    }
+    List<String> adjacent = testGraph013.getAdjacentVerticesOf("root");
+    if (!adjacent.get(0).equals("pkg1") || !adjacent.get(9998).equals("pkg9999")) {
+      fail("The adjacent vertices of root should keep the order the edges were added in");
+    }
+  }
+
+  /**
+   * Test whether the incoming edges of every vertex are kept up to date.
+   */
+  @Test
+  public void test014_incomingEdges() {
+    Graph testGraph014 = new Graph();
+    testGraph014.addEdge("A", "C");
+    testGraph014.addEdge("B", "C");
+    testGraph014.addEdge("C", "C");
+    testGraph014.addEdge("D", "C");
+    testGraph014.removeEdge("B", "C");
+    testGraph014.removeVertex("A");
+    int c = testGraph014.idOf("C");
+    if (testGraph014.inDegree(c) != 2
+        || !testGraph014.nameOf(testGraph014.incomingAt(c, 0)).equals("C")
+        || !testGraph014.nameOf(testGraph014.incomingAt(c, 1)).equals("D")) {
+      fail("C should only have edges coming from C and D");
+    }
+    testGraph014.removeVertex("C");
+    if (testGraph014.size() != 0 || testGraph014.inDegree(testGraph014.idOf("D")) != 0) {
+      fail("The size of the graph should be 0, but the result is " + testGraph014.size());
+    }
+  }
+
+}
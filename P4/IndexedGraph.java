@@ -0,0 +1,37 @@
+/**
+ * Filename: IndexedGraph.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * A graph whose vertices are also numbered with int ids, so traversals can work on arrays indexed
+ * by id instead of hashing vertex names at every step.
+ *
+ * Ids are in the range [0, idBound()). An id in that range whose name is null is not in use. The
+ * names and the outgoing edges are read through AdjacencyRows.
+ */
+interface IndexedGraph extends GraphADT, AdjacencyRows {
+
+  /**
+   * Returns the id of a vertex.
+   *
+   * @param vertex the name of the vertex
+   * @return the id of the vertex, or -1 if the vertex is null or not in the graph
+   */
+  public int idOf(String vertex);
+
+  /**
+   * Returns the number of edges coming into a vertex.
+   *
+   * @param id the id of the vertex
+   * @return the in degree of the vertex
+   */
+  public int inDegree(int id);
+
+  /**
+   * Returns the id of the k-th vertex that has an edge to a vertex. The order of the incoming
+   * edges is not specified, but stays the same while the graph does not change.
+   *
+   * @param id the id of the vertex
+   * @param k  index of the edge, 0 <= k < inDegree(id)
+   * @return the id of the vertex the edge comes from
+   */
+  public int incomingAt(int id, int k);
+}
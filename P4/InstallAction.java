@@ -0,0 +1,18 @@
+/**
+ * Filename: InstallAction.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * The work done to install one package, called by PackageManager.install once all the
+ * dependencies of the package have been installed. Calls for different packages may run at the
+ * same time on different threads.
+ */
+public interface InstallAction {
+
+  /**
+   * Installs a package.
+   *
+   * @param pkg the name of the package
+   * @throws Exception if the package could not be installed, no package that depends on it will
+   *                   be installed after that
+   */
+  public void install(String pkg) throws Exception;
+}
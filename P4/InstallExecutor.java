@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Filename: InstallExecutor.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Runs an InstallAction for a set of packages on a thread pool, as fast as the dependencies allow.
+ *
+ * Every package keeps an atomic count of its dependencies that are not installed yet. When an
+ * installation finishes, the counts of its dependents go down and every dependent that reaches
+ * zero is handed to the pool right away, without waiting for the rest of its wave. After the
+ * first failure no new installation is started; the ones already running are left to finish.
+ */
+class InstallExecutor {
+
+  // the graph the packages belong to
+  private final IndexedGraph graph;
+  // the packages to install, in installation order
+  private final int[] order;
+  // the pool the installations run on
+  private final Executor pool;
+  private final InstallAction action;
+
+  // local index of every vertex in order, -1 for vertices not being installed
+  private final int[] localOf;
+  // dependents of local index i are dependents[dependentStart[i] .. dependentStart[i + 1])
+  private final int[] dependentStart;
+  private final int[] dependents;
+  // number of dependencies of every local index that are not installed yet
+  private final AtomicIntegerArray remaining;
+
+  // installations handed to the pool that have not finished yet
+  private final AtomicInteger outstanding = new AtomicInteger();
+  // released once outstanding drops to zero for good
+  private final CountDownLatch done = new CountDownLatch(1);
+  // the first failure, and the local index of the package that caused it
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  private volatile int failedIndex = -1;
+
+  // results, slot s describes the s-th installation that finished
+  private final AtomicInteger finishedNum = new AtomicInteger();
+  private final int[] finished;
+  private final long[] startNanos;
+  private final long[] durationNanos;
+  private final boolean[] installed;
+  private long runStart;
+
+  /**
+   * Prepares to install a set of packages. The set must contain every dependency of its members
+   * and the graph must not change while the installation runs.
+   *
+   * @param graph  the graph the packages belong to
+   * @param order  ids of the packages in installation order
+   * @param action what to do to install one package
+   * @param pool   the pool to run the installations on
+   */
+  InstallExecutor(IndexedGraph graph, int[] order, InstallAction action, Executor pool) {
+    this.graph = graph;
+    this.order = order;
+    this.action = action;
+    this.pool = pool;
+    int n = order.length;
+    this.localOf = new int[graph.idBound()];
+    Arrays.fill(localOf, -1);
+    for (int i = 0; i < n; i++) {
+      localOf[order[i]] = i;
+    }
+    // count dependencies and dependents, then fill the dependents rows
+    this.remaining = new AtomicIntegerArray(n);
+    this.dependentStart = new int[n + 1];
+    for (int i = 0; i < n; i++) {
+      int v = order[i];
+      remaining.set(i, graph.outDegree(v));
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        dependentStart[localOf[graph.adjacentAt(v, k)] + 1]++;
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      dependentStart[i + 1] += dependentStart[i];
+    }
+    this.dependents = new int[dependentStart[n]];
+    int[] fill = new int[n];
+    for (int i = 0; i < n; i++) {
+      int v = order[i];
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        int dep = localOf[graph.adjacentAt(v, k)];
+        dependents[dependentStart[dep] + fill[dep]++] = i;
+      }
+    }
+    this.finished = new int[n];
+    this.startNanos = new long[n];
+    this.durationNanos = new long[n];
+    this.installed = new boolean[n];
+  }
+
+  /**
+   * Installs every package and waits until no installation is running any more.
+   *
+   * @return the report of the run
+   * @throws InterruptedException if the calling thread is interrupted while waiting, no new
+   *                              installation is started after that
+   */
+  InstallReport run() throws InterruptedException {
+    runStart = System.nanoTime();
+    // hold one extra count so the run cannot finish while the first packages are handed out
+    outstanding.incrementAndGet();
+    // the leaves are told by their out degree, the counts of their dependents may already be
+    // dropping to zero on the pool, and those are submitted by install
+    for (int i = 0; i < order.length; i++) {
+      if (graph.outDegree(order[i]) == 0) {
+        submit(i);
+      }
+    }
+    release();
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      failure.compareAndSet(null, e);
+      throw e;
+    }
+    long wallTime = System.nanoTime() - runStart;
+
+    int count = finishedNum.get();
+    List<String> installedNames = new ArrayList<String>(count);
+    for (int s = 0; s < count; s++) {
+      installedNames.add(graph.nameOf(order[finished[s]]));
+    }
+    List<String> skipped = new ArrayList<String>();
+    int failed = failedIndex;
+    for (int i = 0; i < order.length; i++) {
+      if (!installed[i] && i != failed) {
+        skipped.add(graph.nameOf(order[i]));
+      }
+    }
+    return new InstallReport(installedNames, Arrays.copyOf(startNanos, count),
+        Arrays.copyOf(durationNanos, count), skipped, wallTime,
+        failed < 0 ? null : graph.nameOf(order[failed]), failure.get());
+  }
+
+  /**
+   * helper method that hands one package to the pool
+   */
+  private void submit(int i) {
+    outstanding.incrementAndGet();
+    try {
+      pool.execute(() -> install(i));
+    } catch (RejectedExecutionException e) {
+      fail(i, e);
+      release();
+    }
+  }
+
+  /**
+   * helper method that runs on the pool and installs one package
+   */
+  private void install(int i) {
+    try {
+      if (failure.get() != null) {
+        return;
+      }
+      long start = System.nanoTime();
+      action.install(graph.nameOf(order[i]));
+      long end = System.nanoTime();
+      int slot = finishedNum.getAndIncrement();
+      finished[slot] = i;
+      startNanos[slot] = start - runStart;
+      durationNanos[slot] = end - start;
+      installed[i] = true;
+      // release every dependent whose last dependency this was
+      for (int d = dependentStart[i]; d < dependentStart[i + 1]; d++) {
+        if (remaining.decrementAndGet(dependents[d]) == 0 && failure.get() == null) {
+          submit(dependents[d]);
+        }
+      }
+    } catch (Throwable t) {
+      fail(i, t);
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * helper method that records the first failure
+   */
+  private void fail(int i, Throwable t) {
+    if (failure.compareAndSet(null, t)) {
+      failedIndex = i;
+    }
+  }
+
+  /**
+   * helper method that gives back one outstanding count and ends the run at zero
+   */
+  private void release() {
+    if (outstanding.decrementAndGet() == 0) {
+      done.countDown();
+    }
+  }
+}
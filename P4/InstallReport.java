@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filename: InstallReport.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * The outcome of PackageManager.install: which packages were installed, when each of them started
+ * and how long it took, and the first failure if there was one.
+ */
+public class InstallReport {
+
+  private final List<String> installed;
+  private final List<String> skipped;
+  private final long[] startNanos;
+  private final long[] durationNanos;
+  private final long wallTimeNanos;
+  private final String failedPackage;
+  private final Throwable failure;
+
+  /**
+   * Creates a report, only InstallExecutor creates reports.
+   *
+   * @param installed     packages installed, in the order they finished
+   * @param startNanos    start of each installed package, relative to the start of the run
+   * @param durationNanos time taken by each installed package
+   * @param skipped       packages that were never started because of a failure
+   * @param wallTimeNanos time taken by the whole run
+   * @param failedPackage the package whose installation failed first, or null
+   * @param failure       what that installation threw, or null
+   */
+  InstallReport(List<String> installed, long[] startNanos, long[] durationNanos,
+      List<String> skipped, long wallTimeNanos, String failedPackage, Throwable failure) {
+    this.installed = Collections.unmodifiableList(new ArrayList<String>(installed));
+    this.startNanos = startNanos;
+    this.durationNanos = durationNanos;
+    this.skipped = Collections.unmodifiableList(new ArrayList<String>(skipped));
+    this.wallTimeNanos = wallTimeNanos;
+    this.failedPackage = failedPackage;
+    this.failure = failure;
+  }
+
+  /**
+   * Returns true if every package was installed.
+   */
+  public boolean isSuccessful() {
+    return failure == null;
+  }
+
+  /**
+   * Returns the packages that were installed, in the order they finished.
+   */
+  public List<String> getInstalled() {
+    return installed;
+  }
+
+  /**
+   * Returns the packages that were not installed because an installation failed.
+   */
+  public List<String> getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * Returns the package whose installation failed first, or null if none failed.
+   */
+  public String getFailedPackage() {
+    return failedPackage;
+  }
+
+  /**
+   * Returns what the first failed installation threw, or null if none failed.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * Returns the time the whole run took, in nanoseconds.
+   */
+  public long getWallTimeNanos() {
+    return wallTimeNanos;
+  }
+
+  /**
+   * Returns when the i-th installed package started, in nanoseconds since the start of the run.
+   *
+   * @param i index into getInstalled()
+   */
+  public long getStartNanos(int i) {
+    return startNanos[i];
+  }
+
+  /**
+   * Returns how long the i-th installed package took, in nanoseconds.
+   *
+   * @param i index into getInstalled()
+   */
+  public long getDurationNanos(int i) {
+    return durationNanos[i];
+  }
+
+  /**
+   * Returns one line per installed package with its start and duration in milliseconds, followed
+   * by the failure if there was one.
+   */
+  @Override
+  public String toString() {
+    StringBuilder report = new StringBuilder();
+    for (int i = 0; i < installed.size(); i++) {
+      report.append(String.format("%-40s start %10.3f ms  took %10.3f ms%n", installed.get(i),
+          startNanos[i] / 1e6, durationNanos[i] / 1e6));
+    }
+    report.append(String.format("%d installed, %d skipped in %.3f ms%n", installed.size(),
+        skipped.size(), wallTimeNanos / 1e6));
+    if (failure != null) {
+      report.append("failed: ").append(failedPackage).append(": ").append(failure)
+          .append(System.lineSeparator());
+    }
+    return report.toString();
+  }
+}
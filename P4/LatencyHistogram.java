@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filename: LatencyHistogram.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Histogram of latencies in nanoseconds with a fixed number of buckets, in the style of
+ * HdrHistogram.
+ *
+ * Every power of two is split into SUB_BUCKETS buckets of equal width, so a value is known to
+ * within an eighth of itself while the whole range of a long fits in under 500 buckets. Recording
+ * is a few shifts and one atomic add, without locks or allocation, so any number of threads can
+ * record at once.
+ */
+class LatencyHistogram {
+
+  // buckets per power of two, a power of two itself
+  private static final int SUB_BUCKETS = 8;
+  private static final int SUB_BITS = 3;
+  private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos the latency, negative values count as 0
+   */
+  void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Returns the number of latencies recorded.
+   */
+  long count() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the mean latency, 0 if none was recorded.
+   */
+  double mean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * Returns the largest latency recorded.
+   */
+  long max() {
+    return max.get();
+  }
+
+  /**
+   * Returns a latency that at least the given fraction of the recorded latencies do not exceed,
+   * rounded up to the end of its bucket and never above the largest latency. 0 if none was
+   * recorded.
+   *
+   * @param fraction between 0 and 1, 0.99 for the 99th percentile
+   */
+  long percentile(double fraction) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      snapshot[b] = counts.get(b);
+      total += snapshot[b];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    // rank of the wanted latency among the recorded ones, counting from 1
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += snapshot[b];
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(b), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * helper method that returns the bucket of a value that is not negative
+   */
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    // the SUB_BITS bits after the leading one pick the bucket within the power of two
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * helper method that returns the largest value of a bucket
+   */
+  private static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long sub = bucket % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BITS);
+    long lower = (SUB_BUCKETS + sub) * width;
+    return lower + width - 1;
+  }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/**
+ * Filename: LongHashSet.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Open addressing hash set of primitive non-negative long keys. Used by Graph to answer "does this
+ * edge exist" in O(1) without boxing every (src, dst) pair into a Long.
+ *
+ * Linear probing is used, and removal shifts the following entries back so that no tombstones are
+ * ever left in the table.
+ */
+class LongHashSet {
+
+  // marks an unused slot, keys are never negative
+  private static final long EMPTY = -1L;
+
+  // the slots of the table, its length is always a power of two
+  private long[] table;
+  // number of keys currently stored
+  private int size;
+  // the table grows once size reaches this threshold (load factor 0.5)
+  private int resizeAt;
+
+  /*
+   * Default no-argument constructor
+   */
+  LongHashSet() {
+    this(16);
+  }
+
+  /**
+   * Creates a set that can hold expectedSize keys before it needs to grow.
+   *
+   * @param expectedSize the expected number of keys
+   */
+  LongHashSet(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(8, expectedSize) * 2 - 1) << 1;
+    allocate(capacity);
+  }
+
+  /**
+   * Adds the key to the set.
+   *
+   * @param key a non-negative key
+   * @return true if the key was not already in the set
+   */
+  boolean add(long key) {
+    int mask = table.length - 1;
+    int slot = slotOf(key, mask);
+    // walk along the probe sequence until we find the key or an empty slot
+    while (table[slot] != EMPTY) {
+      if (table[slot] == key) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = key;
+    size++;
+    if (size >= resizeAt) {
+      rehash(table.length << 1);
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the key is in the set.
+   *
+   * @param key a non-negative key
+   */
+  boolean contains(long key) {
+    int mask = table.length - 1;
+    int slot = slotOf(key, mask);
+    while (table[slot] != EMPTY) {
+      if (table[slot] == key) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Removes the key from the set.
+   *
+   * @param key a non-negative key
+   * @return true if the key was in the set
+   */
+  boolean remove(long key) {
+    int mask = table.length - 1;
+    int slot = slotOf(key, mask);
+    while (table[slot] != key) {
+      if (table[slot] == EMPTY) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    // shift back every following entry that would otherwise become unreachable
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (table[next] != EMPTY) {
+      int home = slotOf(table[next], mask);
+      // the entry can move into the gap only if its home slot is not between gap and next
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        table[gap] = table[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    table[gap] = EMPTY;
+    size--;
+    return true;
+  }
+
+  /**
+   * Returns the number of keys in the set.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Removes every key from the set.
+   */
+  void clear() {
+    Arrays.fill(table, EMPTY);
+    size = 0;
+  }
+
+  /**
+   * helper method that allocates an empty table of the given capacity
+   */
+  private void allocate(int capacity) {
+    table = new long[capacity];
+    Arrays.fill(table, EMPTY);
+    resizeAt = capacity >>> 1;
+  }
+
+  /**
+   * helper method that moves every key into a table of the new capacity
+   */
+  private void rehash(int capacity) {
+    long[] old = table;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (long key : old) {
+      if (key != EMPTY) {
+        int slot = slotOf(key, mask);
+        while (table[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = key;
+      }
+    }
+  }
+
+  /**
+   * helper method that mixes the bits of the key and maps it to its home slot
+   */
+  private static int slotOf(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filename: ManifestDiff.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * What PackageManager.reloadGraph changed: how many packages and dependencies the new manifest
+ * added and removed, and how long parsing it and applying the change took.
+ */
+public class ManifestDiff {
+
+  private final int addedPackages;
+  private final int removedPackages;
+  private final int addedDependencies;
+  private final int removedDependencies;
+  private final long parseNanos;
+  private final long applyNanos;
+
+  /**
+   * Creates the diff, only applyTo creates diffs.
+   */
+  private ManifestDiff(int addedPackages, int removedPackages, int addedDependencies,
+      int removedDependencies, long parseNanos, long applyNanos) {
+    this.addedPackages = addedPackages;
+    this.removedPackages = removedPackages;
+    this.addedDependencies = addedDependencies;
+    this.removedDependencies = removedDependencies;
+    this.parseNanos = parseNanos;
+    this.applyNanos = applyNanos;
+  }
+
+  /**
+   * Changes a graph into the graph of a manifest with as few changes as possible, through the
+   * public add and remove methods of the graph, so its listeners only hear about what changed.
+   *
+   * Packages that are not in the manifest anymore are removed first, with all their edges, then
+   * the edges that are gone are removed, and only then are new packages and edges added. A new
+   * edge can therefore never close a cycle through an edge that is about to be removed.
+   *
+   * @param target     the graph to change
+   * @param manifest   the manifest as parsed
+   * @param parseNanos time it took to parse the manifest, kept in the diff
+   * @return the diff
+   */
+  static ManifestDiff applyTo(Graph target, ManifestShard manifest, long parseNanos) {
+    long start = System.nanoTime();
+    int removedPackages = 0;
+    int addedPackages = 0;
+    int edgesBefore = target.size();
+
+    // packages the manifest does not name anymore
+    List<String> gone = new ArrayList<String>();
+    for (int id = 0; id < target.idBound(); id++) {
+      String name = target.nameOf(id);
+      if (name != null && manifest.idOf(name) < 0) {
+        gone.add(name);
+      }
+    }
+    for (String name : gone) {
+      target.removeVertex(name);
+      removedPackages++;
+    }
+    // the edges of removed packages are counted with the other removed edges
+    int removedDependencies = edgesBefore - target.size();
+
+    // id in the target graph of every package of the manifest, adding the new ones in the order
+    // of the manifest
+    int[] targetId = new int[manifest.idBound()];
+    for (int id = 0; id < targetId.length; id++) {
+      String name = manifest.nameOf(id);
+      if (target.idOf(name) < 0) {
+        target.addVertex(name);
+        addedPackages++;
+      }
+      targetId[id] = target.idOf(name);
+    }
+
+    // mark[v] == stamp while v is a dependency of the package being compared
+    int[] mark = new int[target.idBound()];
+    int stamp = 0;
+    for (int id = 0; id < targetId.length; id++) {
+      int src = targetId[id];
+      stamp++;
+      for (int k = 0; k < manifest.outDegree(id); k++) {
+        mark[targetId[manifest.adjacentAt(id, k)]] = stamp;
+      }
+      // walk the row from the end, removing an edge shifts the edges after it
+      for (int k = target.outDegree(src) - 1; k >= 0; k--) {
+        int dst = target.adjacentAt(src, k);
+        if (mark[dst] != stamp) {
+          target.removeEdge(target.nameOf(src), target.nameOf(dst));
+          removedDependencies++;
+        }
+      }
+    }
+
+    int edgesKept = target.size();
+    for (int id = 0; id < targetId.length; id++) {
+      int src = targetId[id];
+      stamp++;
+      for (int k = 0; k < target.outDegree(src); k++) {
+        mark[target.adjacentAt(src, k)] = stamp;
+      }
+      for (int k = 0; k < manifest.outDegree(id); k++) {
+        int dst = targetId[manifest.adjacentAt(id, k)];
+        if (mark[dst] != stamp) {
+          mark[dst] = stamp;
+          target.addEdge(target.nameOf(src), target.nameOf(dst));
+        }
+      }
+    }
+    int addedDependencies = target.size() - edgesKept;
+    return new ManifestDiff(addedPackages, removedPackages, addedDependencies,
+        removedDependencies, parseNanos, System.nanoTime() - start);
+  }
+
+  /**
+   * Returns the number of packages added.
+   */
+  public int getAddedPackages() {
+    return addedPackages;
+  }
+
+  /**
+   * Returns the number of packages removed.
+   */
+  public int getRemovedPackages() {
+    return removedPackages;
+  }
+
+  /**
+   * Returns the number of dependencies added.
+   */
+  public int getAddedDependencies() {
+    return addedDependencies;
+  }
+
+  /**
+   * Returns the number of dependencies removed, including those of removed packages.
+   */
+  public int getRemovedDependencies() {
+    return removedDependencies;
+  }
+
+  /**
+   * Returns true if the manifest did not change the graph.
+   */
+  public boolean isEmpty() {
+    return addedPackages + removedPackages + addedDependencies + removedDependencies == 0;
+  }
+
+  /**
+   * Returns the time it took to parse the manifest.
+   */
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  /**
+   * Returns the time it took to change the graph.
+   */
+  public long getApplyNanos() {
+    return applyNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("+%d -%d packages, +%d -%d dependencies, parse=%dns apply=%dns",
+        addedPackages, removedPackages, addedDependencies, removedDependencies, parseNanos,
+        applyNanos);
+  }
+}
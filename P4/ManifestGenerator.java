@@ -0,0 +1,360 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Filename: ManifestGenerator.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Writes synthetic package manifests of the form {"packages":[{"name":..,"dependencies":[..]}]}
+ * for load and scaling tests.
+ *
+ * The packages p0 .. p(n - 1) are split into depth levels of about the same size, in order, and
+ * every package only depends on packages of lower levels:
+ *
+ * - its first dependency is its spine, a package of the level right below chosen by position, so
+ * the longest dependency chain has exactly depth packages;
+ * - the others are drawn one by one. With probability sharedDensity a dependency is one of the
+ * shared packages at the bottom of the graph, popular ones far more often; otherwise it is any
+ * package of the level right below.
+ *
+ * A cycle is injected by giving a package one extra dependency on a package that depends on it
+ * through spines, which can be chosen before anything is written. The output is streamed package
+ * by package and memory only grows with the number of cycles, so manifests with millions of
+ * packages are quick to write. The same settings and seed always give the same manifest.
+ *
+ * Usage: java ManifestGenerator packages file|- [--depth N] [--fan-out fixed|uniform|power-law]
+ * [--max-dependencies N] [--shared DENSITY] [--cycles COUNT] [--cycle-length N] [--seed S]
+ */
+public class ManifestGenerator {
+
+  /**
+   * How the number of dependencies of a package is drawn, between 1 and maxDependencies. Packages
+   * of the bottom level have none.
+   */
+  public enum FanOut {
+    /** every package has maxDependencies dependencies */
+    FIXED,
+    /** every number is as likely */
+    UNIFORM,
+    /** most packages have one or two, a few have a great many */
+    POWER_LAW
+  }
+
+  // size of the buffer between the generator and the file
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // number of packages
+  private final int packages;
+  private int depth = 8;
+  private FanOut fanOut = FanOut.UNIFORM;
+  private int maxDependencies = 4;
+  private double sharedDensity = 0.2;
+  private int cycles;
+  private int cycleLength = 2;
+  private long seed;
+
+  /**
+   * Creates a generator of manifests with the given number of packages and default settings.
+   *
+   * @param packages number of packages
+   * @throws IllegalArgumentException if packages is less than one
+   */
+  public ManifestGenerator(int packages) {
+    if (packages < 1) {
+      throw new IllegalArgumentException("a manifest needs at least one package");
+    }
+    this.packages = packages;
+  }
+
+  /**
+   * Sets the number of levels, which is the length of the longest dependency chain.
+   *
+   * @param depth number of levels, between 1 and the number of packages
+   * @return this generator
+   */
+  public ManifestGenerator depth(int depth) {
+    if (depth < 1 || depth > packages) {
+      throw new IllegalArgumentException("depth must be between 1 and the number of packages");
+    }
+    this.depth = depth;
+    return this;
+  }
+
+  /**
+   * Sets how many dependencies a package has.
+   *
+   * @param fanOut          how the number is drawn
+   * @param maxDependencies the largest number, at least 1
+   * @return this generator
+   */
+  public ManifestGenerator fanOut(FanOut fanOut, int maxDependencies) {
+    if (fanOut == null || maxDependencies < 1) {
+      throw new IllegalArgumentException("a fan-out needs a distribution and a positive maximum");
+    }
+    this.fanOut = fanOut;
+    this.maxDependencies = maxDependencies;
+    return this;
+  }
+
+  /**
+   * Sets the chance that a dependency other than the spine goes to a shared package.
+   *
+   * @param sharedDensity a probability between 0 and 1
+   * @return this generator
+   */
+  public ManifestGenerator sharedDensity(double sharedDensity) {
+    if (!(sharedDensity >= 0 && sharedDensity <= 1)) {
+      throw new IllegalArgumentException("shared density must be between 0 and 1");
+    }
+    this.sharedDensity = sharedDensity;
+    return this;
+  }
+
+  /**
+   * Sets the number of cycles to inject and the number of packages on each.
+   *
+   * @param cycles      number of cycles, 0 for an acyclic manifest
+   * @param cycleLength packages on a cycle, between 2 and depth
+   * @return this generator
+   */
+  public ManifestGenerator cycles(int cycles, int cycleLength) {
+    if (cycles < 0 || cycleLength < 2) {
+      throw new IllegalArgumentException("cycles must not be negative and have two packages");
+    }
+    this.cycles = cycles;
+    this.cycleLength = cycleLength;
+    return this;
+  }
+
+  /**
+   * Sets the seed of the random choices.
+   *
+   * @param seed the seed
+   * @return this generator
+   */
+  public ManifestGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Writes a manifest to a file, replacing it if it exists.
+   *
+   * @param file the file
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path file) throws IOException {
+    try (Writer out = new BufferedWriter(
+        new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+      write(out);
+    }
+  }
+
+  /**
+   * Writes a manifest to a writer, which is flushed but not closed.
+   *
+   * @param out the writer
+   * @throws IOException if the writer fails
+   * @throws IllegalStateException if the cycles do not fit in depth levels
+   */
+  public void write(Writer out) throws IOException {
+    if (cycles > 0 && cycleLength > depth) {
+      throw new IllegalStateException("a cycle cannot be longer than the depth");
+    }
+    Random random = new Random(seed);
+    Map<Integer, List<Integer>> backEdges = injectCycles(random);
+    // shared packages are the first ones, about the square root of the number of packages
+    int sharedNum = Math.max(1, (int) Math.sqrt(packages));
+    int[] dependencies = new int[maxDependencies + 1];
+    StringBuilder line = new StringBuilder();
+    out.write("{\"packages\": [");
+    for (int i = 0; i < packages; i++) {
+      line.setLength(0);
+      line.append(i == 0 ? "\n" : ",\n").append("{\"name\": \"p").append(i)
+          .append("\", \"dependencies\": [");
+      int level = levelOf(i);
+      int count = 0;
+      if (level > 0) {
+        dependencies[count++] = spineOf(i);
+        int below = levelStart(level - 1);
+        int belowSize = levelStart(level) - below;
+        int shared = Math.min(sharedNum, levelStart(level));
+        for (int k = drawFanOut(random); k > 1; k--) {
+          int dependency;
+          if (random.nextDouble() < sharedDensity) {
+            // a cube of a uniform number leans hard towards the first, most popular packages
+            double u = random.nextDouble();
+            dependency = (int) (shared * u * u * u);
+          } else {
+            dependency = below + random.nextInt(belowSize);
+          }
+          if (indexOf(dependencies, count, dependency) < 0) {
+            dependencies[count++] = dependency;
+          }
+        }
+      }
+      for (int k = 0; k < count; k++) {
+        line.append(k == 0 ? "\"p" : ", \"p").append(dependencies[k]).append('"');
+      }
+      List<Integer> extra = backEdges.get(i);
+      if (extra != null) {
+        for (int dependency : extra) {
+          line.append(count++ == 0 ? "\"p" : ", \"p").append(dependency).append('"');
+        }
+      }
+      line.append("]}");
+      out.append(line);
+    }
+    out.write("\n]}\n");
+    out.flush();
+  }
+
+  /**
+   * helper method that picks the cycles before anything is written. A cycle starts at a package
+   * top, follows spines down cycleLength - 1 levels and closes with an extra dependency of the
+   * bottom package on top. Returns the extra dependencies of every package that has some.
+   */
+  private Map<Integer, List<Integer>> injectCycles(Random random) {
+    Map<Integer, List<Integer>> backEdges = new HashMap<Integer, List<Integer>>();
+    if (cycles == 0) {
+      return backEdges;
+    }
+    // the top of a cycle needs cycleLength - 1 levels below it
+    int first = levelStart(cycleLength - 1);
+    for (int c = 0; c < cycles; c++) {
+      int top = first + random.nextInt(packages - first);
+      int bottom = top;
+      for (int k = 1; k < cycleLength; k++) {
+        bottom = spineOf(bottom);
+      }
+      List<Integer> extra = backEdges.get(bottom);
+      if (extra == null) {
+        extra = new ArrayList<Integer>(1);
+        backEdges.put(bottom, extra);
+      }
+      if (!extra.contains(top)) {
+        extra.add(top);
+      }
+    }
+    return backEdges;
+  }
+
+  /**
+   * helper method that draws the number of dependencies of a package above the bottom level
+   */
+  private int drawFanOut(Random random) {
+    switch (fanOut) {
+      case FIXED:
+        return maxDependencies;
+      case UNIFORM:
+        return 1 + random.nextInt(maxDependencies);
+      default:
+        // Pareto tail: a package has at least k dependencies with probability 1 / k
+        double k = 1 / (1 - random.nextDouble());
+        return k >= maxDependencies ? maxDependencies : (int) k;
+    }
+  }
+
+  /**
+   * helper method that returns the level of package i
+   */
+  private int levelOf(int i) {
+    return (int) ((long) i * depth / packages);
+  }
+
+  /**
+   * helper method that returns the first package of a level, or the number of packages for the
+   * level past the top
+   */
+  private int levelStart(int level) {
+    return (int) (((long) level * packages + depth - 1) / depth);
+  }
+
+  /**
+   * helper method that returns the spine of package i, the package at the same position in the
+   * level below, wrapped around if that level is shorter
+   */
+  private int spineOf(int i) {
+    int level = levelOf(i);
+    int below = levelStart(level - 1);
+    return below + (i - levelStart(level)) % (levelStart(level) - below);
+  }
+
+  /**
+   * helper method that returns the position of a value among the first count of an array, or -1
+   */
+  private static int indexOf(int[] values, int count, int value) {
+    for (int k = 0; k < count; k++) {
+      if (values[k] == value) {
+        return k;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Writes a manifest from the command line, to a file or to standard output for "-".
+   *
+   * @param args packages, file and options, see the class comment
+   * @throws IOException if the manifest cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length % 2 != 0) {
+      System.err.println("usage: java ManifestGenerator packages file|- [--depth N]"
+          + " [--fan-out fixed|uniform|power-law] [--max-dependencies N] [--shared DENSITY]"
+          + " [--cycles COUNT] [--cycle-length N] [--seed S]");
+      System.exit(2);
+    }
+    ManifestGenerator generator = new ManifestGenerator(Integer.parseInt(args[0]));
+    FanOut fanOut = generator.fanOut;
+    int maxDependencies = generator.maxDependencies;
+    int cycles = 0;
+    int cycleLength = generator.cycleLength;
+    for (int i = 2; i < args.length; i += 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "--depth":
+          generator.depth(Integer.parseInt(value));
+          break;
+        case "--fan-out":
+          fanOut = FanOut.valueOf(value.toUpperCase().replace('-', '_'));
+          break;
+        case "--max-dependencies":
+          maxDependencies = Integer.parseInt(value);
+          break;
+        case "--shared":
+          generator.sharedDensity(Double.parseDouble(value));
+          break;
+        case "--cycles":
+          cycles = Integer.parseInt(value);
+          break;
+        case "--cycle-length":
+          cycleLength = Integer.parseInt(value);
+          break;
+        case "--seed":
+          generator.seed(Long.parseLong(value));
+          break;
+        default:
+          throw new IllegalArgumentException("unknown option " + args[i]);
+      }
+    }
+    generator.fanOut(fanOut, maxDependencies).cycles(cycles, cycleLength);
+    if (args[1].equals("-")) {
+      Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+          BUFFER_SIZE);
+      generator.write(out);
+    } else {
+      generator.write(Paths.get(args[1]));
+    }
+  }
+}
@@ -0,0 +1,375 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Filename: ManifestReader.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Streams a json package manifest of the form {"packages":[{"name":..,"dependencies":[..]}]} into a
+ * graph.
+ *
+ * Instead of building the whole JSONObject tree first, the manifest is walked token by token through
+ * json-simple's ContentHandler callbacks and every dependency is turned into an edge as soon as it
+ * is read. The only thing buffered is the dependency list of a package whose "name" comes after
+ * its "dependencies", so memory stays proportional to the graph and not to the file.
+ *
+ * A package may have a "version" and its dependencies may name the versions they accept, as in
+ * "B@^1.2". The graph only gets the package names, one vertex for all the versions of a package.
+ * Given a VersionRegistry, the reader also adds every package that has a version or a ranged
+ * dependency to it, once its object is closed.
+ */
+class ManifestReader implements ContentHandler {
+
+  // size of the byte buffer between the file channel and the decoder
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // the graph the packages are added to
+  private final GraphADT graph;
+  // true to time the calls that add to the graph
+  private final boolean timed;
+  // time spent adding to the graph, while timed
+  private long buildNanos;
+  // the registry versioned packages are added to, or null to ignore versions
+  private final VersionRegistry registry;
+
+  // current nesting depth of objects and arrays, the root object is depth 1
+  private int depth;
+  // key of the current entry of the root object
+  private String rootKey;
+  // depth of the "packages" array, or -1 while we are not inside it
+  private int packagesDepth = -1;
+  // key of the current entry of the package object being read
+  private String packageKey;
+  // true while we are reading the "dependencies" array of a package
+  private boolean inDependencies;
+  // name of the package being read, null until its "name" entry is seen
+  private String name;
+  // dependencies seen before the name of the package
+  private final List<String> pending = new ArrayList<String>();
+  // version of the package being read, and all its dependencies with their ranges, while a
+  // registry is given
+  private String version;
+  private final List<String> dependencies = new ArrayList<String>();
+  private boolean ranged;
+
+  // number of packages and dependencies read so far
+  private long packageCount;
+  private long dependencyCount;
+  // size and CRC32C of the bytes of the manifest read, -1 and 0 until a whole file is read
+  private long manifestSize = -1;
+  private long manifestChecksum;
+
+  /**
+   * Creates a reader that adds packages to the given graph.
+   *
+   * @param graph the graph to add packages to
+   */
+  ManifestReader(GraphADT graph) {
+    this(graph, false);
+  }
+
+  /**
+   * Creates a reader that adds packages to the given graph and can time how long that takes.
+   *
+   * @param graph the graph to add packages to
+   * @param timed true to time every call that adds to the graph
+   */
+  ManifestReader(GraphADT graph, boolean timed) {
+    this(graph, timed, null);
+  }
+
+  /**
+   * Creates a reader that adds packages to the given graph and their versions to a registry.
+   *
+   * @param graph    the graph to add packages to
+   * @param timed    true to time every call that adds to the graph
+   * @param registry the registry to add versioned packages to, or null to ignore versions
+   */
+  ManifestReader(GraphADT graph, boolean timed, VersionRegistry registry) {
+    this.graph = graph;
+    this.timed = timed;
+    this.registry = registry;
+  }
+
+  /**
+   * Reads the manifest at the given path into the graph.
+   *
+   * @param jsonFilepath path of the json manifest
+   * @param graph        the graph to add the packages and their dependencies to
+   * @return the reader, which knows how many packages and dependencies were read
+   * @throws FileNotFoundException if file path is incorrect
+   * @throws IOException           if the file cannot be read
+   * @throws ParseException        if the json cannot be parsed
+   */
+  static ManifestReader read(String jsonFilepath, GraphADT graph)
+      throws FileNotFoundException, IOException, ParseException {
+    return read(jsonFilepath, graph, false);
+  }
+
+  /**
+   * Reads the manifest at the given path into the graph, timing the calls that add to the graph
+   * if asked to. The time left over is the time spent reading and parsing the json.
+   *
+   * @param jsonFilepath path of the json manifest
+   * @param graph        the graph to add the packages and their dependencies to
+   * @param timed        true to time the calls that add to the graph
+   * @return the reader, which knows how many packages and dependencies were read and how long
+   *         adding them took
+   * @throws FileNotFoundException if file path is incorrect
+   * @throws IOException           if the file cannot be read
+   * @throws ParseException        if the json cannot be parsed
+   */
+  static ManifestReader read(String jsonFilepath, GraphADT graph, boolean timed)
+      throws FileNotFoundException, IOException, ParseException {
+    return read(jsonFilepath, graph, timed, null);
+  }
+
+  /**
+   * Reads the manifest at the given path into the graph and the versions of its packages into a
+   * registry.
+   *
+   * @param jsonFilepath path of the json manifest
+   * @param graph        the graph to add the packages and their dependencies to
+   * @param timed        true to time the calls that add to the graph
+   * @param registry     the registry to add versioned packages to, or null to ignore versions
+   * @return the reader, which knows how many packages and dependencies were read and how long
+   *         adding them took
+   * @throws FileNotFoundException if file path is incorrect
+   * @throws IOException           if the file cannot be read
+   * @throws ParseException        if the json cannot be parsed, or a version or range cannot be
+   *                               read
+   */
+  static ManifestReader read(String jsonFilepath, GraphADT graph, boolean timed,
+      VersionRegistry registry) throws FileNotFoundException, IOException, ParseException {
+    ManifestReader handler = new ManifestReader(graph, timed, registry);
+    try (FileChannel file = FileChannel.open(Paths.get(jsonFilepath), StandardOpenOption.READ);
+        ChecksumChannel channel = new ChecksumChannel(file);
+        Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(),
+            BUFFER_SIZE)) {
+      new JSONParser().parse(reader, handler);
+      // the parser may stop before the end of the file, the rest still belongs to the checksum
+      ByteBuffer rest = ByteBuffer.allocate(BUFFER_SIZE);
+      while (channel.read(rest) >= 0) {
+        rest.clear();
+      }
+      handler.manifestSize = channel.size;
+      handler.manifestChecksum = channel.crc.getValue();
+    } catch (NoSuchFileException | InvalidPathException e) {
+      throw new FileNotFoundException(jsonFilepath);
+    }
+    return handler;
+  }
+
+  /**
+   * Returns the number of packages read.
+   */
+  long getPackageCount() {
+    return packageCount;
+  }
+
+  /**
+   * Returns the number of dependencies read.
+   */
+  long getDependencyCount() {
+    return dependencyCount;
+  }
+
+  /**
+   * Returns the time spent adding to the graph, 0 unless the reader is timed.
+   */
+  long getBuildNanos() {
+    return buildNanos;
+  }
+
+  /**
+   * Returns the number of bytes of the manifest read, -1 unless the whole file was read.
+   */
+  long getManifestSize() {
+    return manifestSize;
+  }
+
+  /**
+   * Returns the CRC32C of the bytes of the manifest read, the same GraphSnapshot.checksumOf gives
+   * for an unchanged file.
+   */
+  long getManifestChecksum() {
+    return manifestChecksum;
+  }
+
+  @Override
+  public void startJSON() {
+    depth = 0;
+  }
+
+  @Override
+  public void endJSON() {}
+
+  @Override
+  public boolean startObject() {
+    depth++;
+    // an object directly inside the packages array is a new package
+    if (packagesDepth > 0 && depth == packagesDepth + 1) {
+      name = null;
+      pending.clear();
+      version = null;
+      dependencies.clear();
+      ranged = false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean endObject() throws ParseException {
+    if (packagesDepth > 0 && depth == packagesDepth + 1) {
+      if (registry != null && name != null && (version != null || ranged)) {
+        try {
+          registry.add(new Package(name, version, dependencies.toArray(new String[0])));
+        } catch (IllegalArgumentException e) {
+          throw new ParseException(ParseException.ERROR_UNEXPECTED_EXCEPTION, e);
+        }
+      }
+      // a package without a name cannot be added, its dependencies are dropped with it
+      pending.clear();
+      name = null;
+    }
+    depth--;
+    return true;
+  }
+
+  @Override
+  public boolean startObjectEntry(String key) {
+    if (depth == 1) {
+      rootKey = key;
+    } else if (packagesDepth > 0 && depth == packagesDepth + 1) {
+      packageKey = key;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean endObjectEntry() {
+    if (depth == 1) {
+      rootKey = null;
+    } else if (packagesDepth > 0 && depth == packagesDepth + 1) {
+      packageKey = null;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean startArray() {
+    depth++;
+    if (depth == 2 && "packages".equals(rootKey)) {
+      packagesDepth = depth;
+    } else if (packagesDepth > 0 && depth == packagesDepth + 2
+        && "dependencies".equals(packageKey)) {
+      inDependencies = true;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean endArray() {
+    if (inDependencies && depth == packagesDepth + 2) {
+      inDependencies = false;
+    } else if (depth == packagesDepth) {
+      packagesDepth = -1;
+    }
+    depth--;
+    return true;
+  }
+
+  @Override
+  public boolean primitive(Object value) {
+    if (!(value instanceof String)) {
+      return true;
+    }
+    String text = (String) value;
+    if (inDependencies && depth == packagesDepth + 2) {
+      dependencyCount++;
+      if (registry != null) {
+        dependencies.add(text);
+        ranged |= text.indexOf('@', 1) > 0;
+      }
+      text = Package.dependencyName(text);
+      if (name != null) {
+        long start = timed ? System.nanoTime() : 0;
+        graph.addEdge(name, text);
+        if (timed) {
+          buildNanos += System.nanoTime() - start;
+        }
+      } else {
+        pending.add(text);
+      }
+    } else if (packagesDepth > 0 && depth == packagesDepth + 1 && "name".equals(packageKey)) {
+      // the package itself is added before any of its dependencies
+      name = text;
+      packageCount++;
+      long start = timed ? System.nanoTime() : 0;
+      graph.addVertex(name);
+      for (String dependency : pending) {
+        graph.addEdge(name, dependency);
+      }
+      if (timed) {
+        buildNanos += System.nanoTime() - start;
+      }
+      pending.clear();
+    } else if (packagesDepth > 0 && depth == packagesDepth + 1 && "version".equals(packageKey)) {
+      version = text;
+    }
+    return true;
+  }
+
+  /**
+   * Channel that counts the bytes read through it and adds them to a CRC32C, so the manifest is
+   * checksummed as it is parsed instead of being read a second time.
+   */
+  private static class ChecksumChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel channel;
+    private final CRC32C crc = new CRC32C();
+    private long size;
+
+    ChecksumChannel(ReadableByteChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      int start = dst.position();
+      int n = channel.read(dst);
+      if (n > 0) {
+        ByteBuffer bytes = dst.duplicate();
+        bytes.position(start).limit(start + n);
+        crc.update(bytes);
+        size += n;
+      }
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filename: ManifestShard.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Append-only graph that one manifest is parsed into before it is merged into the graph of a
+ * PackageManager with Graph.addAll.
+ *
+ * Many manifests are parsed at once, each into a shard of its own, so a shard keeps only what the
+ * merge needs: the names in the order they were first seen and the rows of edges. There is no
+ * edge set and no reverse index, the graph the shard is merged into builds those anyway. An edge
+ * named twice in the manifest is kept twice here, and dropped by the merge. The ids stay dense in
+ * the order the names were first seen, even after a removal, which the parser never does.
+ */
+class ManifestShard implements GraphADT, AdjacencyRows {
+
+  // edges a row starts with
+  private static final int INITIAL_ROW_LENGTH = 4;
+
+  // name of every id, in the order the names were first seen
+  private final List<String> names = new ArrayList<String>();
+  private final HashMap<String, Integer> index = new HashMap<String, Integer>();
+  // edges going out of every id
+  private int[][] rows = new int[16][];
+  private int[] rowLengths = new int[16];
+  private int edgeNum;
+
+  /**
+   * Adds a vertex unless it is null or already there.
+   */
+  @Override
+  public void addVertex(String vertex) {
+    if (vertex != null) {
+      idFor(vertex);
+    }
+  }
+
+  /**
+   * Adds the edge from vertex1 to vertex2, adding either vertex if needed. The edge is not checked
+   * against the edges already there.
+   */
+  @Override
+  public void addEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return;
+    }
+    int src = idFor(vertex1);
+    int dst = idFor(vertex2);
+    int[] row = rows[src];
+    if (row == null) {
+      row = new int[INITIAL_ROW_LENGTH];
+      rows[src] = row;
+    } else if (rowLengths[src] == row.length) {
+      row = Arrays.copyOf(row, row.length * 2);
+      rows[src] = row;
+    }
+    row[rowLengths[src]++] = dst;
+    edgeNum++;
+  }
+
+  /**
+   * Removes a vertex with every edge into or out of it. Every vertex seen after it moves down one
+   * id, and with no reverse index every row is scanned, so this takes time in the size of the whole
+   * shard.
+   */
+  @Override
+  public void removeVertex(String vertex) {
+    int id = idOf(vertex);
+    if (id < 0) {
+      return;
+    }
+    edgeNum -= rowLengths[id];
+    names.remove(id);
+    index.remove(vertex);
+    int n = names.size();
+    System.arraycopy(rows, id + 1, rows, id, n - id);
+    System.arraycopy(rowLengths, id + 1, rowLengths, id, n - id);
+    rows[n] = null;
+    rowLengths[n] = 0;
+    for (int v = id; v < n; v++) {
+      index.put(names.get(v), v);
+    }
+    // drop the edges into the vertex and renumber the ones to the vertices that moved
+    for (int v = 0; v < n; v++) {
+      int kept = 0;
+      for (int k = 0; k < rowLengths[v]; k++) {
+        int dst = rows[v][k];
+        if (dst != id) {
+          rows[v][kept++] = dst > id ? dst - 1 : dst;
+        }
+      }
+      edgeNum -= rowLengths[v] - kept;
+      rowLengths[v] = kept;
+    }
+  }
+
+  /**
+   * Removes the edge from vertex1 to vertex2, every copy of it if it was added more than once.
+   */
+  @Override
+  public void removeEdge(String vertex1, String vertex2) {
+    int src = idOf(vertex1);
+    int dst = idOf(vertex2);
+    if (src < 0 || dst < 0) {
+      return;
+    }
+    int kept = 0;
+    for (int k = 0; k < rowLengths[src]; k++) {
+      if (rows[src][k] != dst) {
+        rows[src][kept++] = rows[src][k];
+      }
+    }
+    edgeNum -= rowLengths[src] - kept;
+    rowLengths[src] = kept;
+  }
+
+  @Override
+  public Set<String> getAllVertices() {
+    return new HashSet<String>(names);
+  }
+
+  @Override
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    List<String> neighborList = new ArrayList<String>();
+    int id = idOf(vertex);
+    for (int k = 0; id >= 0 && k < rowLengths[id]; k++) {
+      neighborList.add(names.get(rows[id][k]));
+    }
+    return neighborList;
+  }
+
+  /**
+   * Returns the number of edges added, counting an edge added twice twice.
+   */
+  @Override
+  public int size() {
+    return edgeNum;
+  }
+
+  @Override
+  public int order() {
+    return names.size();
+  }
+
+  /**
+   * Returns the id of a vertex, or -1 if the vertex is null or not in the shard.
+   */
+  public int idOf(String vertex) {
+    Integer id = vertex == null ? null : index.get(vertex);
+    return id == null ? -1 : id;
+  }
+
+  @Override
+  public String nameOf(int id) {
+    return id >= 0 && id < names.size() ? names.get(id) : null;
+  }
+
+  @Override
+  public int idBound() {
+    return names.size();
+  }
+
+  @Override
+  public int outDegree(int id) {
+    return rowLengths[id];
+  }
+
+  @Override
+  public int adjacentAt(int id, int k) {
+    return rows[id][k];
+  }
+
+  /**
+   * helper method that returns the id of a vertex, adding it if it is new
+   */
+  private int idFor(String vertex) {
+    Integer existing = index.get(vertex);
+    if (existing != null) {
+      return existing;
+    }
+    int id = names.size();
+    names.add(vertex);
+    index.put(vertex, id);
+    if (id == rows.length) {
+      rows = Arrays.copyOf(rows, id * 2);
+      rowLengths = Arrays.copyOf(rowLengths, id * 2);
+    }
+    return id;
+  }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filename: ManifestWatcher.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Watches a manifest file and reloads a PackageManager from it whenever it changes.
+ *
+ * A WatchService can only watch directories, so the directory of the manifest is watched and
+ * events about other files are ignored. Editors and copy tools often write a file in several
+ * steps, so after the first event the watcher waits until the directory has been quiet for
+ * QUIET_MILLIS before reloading, and makes one reload for the whole burst. Files replaced by a
+ * rename show up as created, which is watched as well.
+ */
+class ManifestWatcher implements Runnable {
+
+  // how long the file must stay unchanged before it is reloaded
+  static final long QUIET_MILLIS = 50;
+
+  private final PackageManager manager;
+  private final Path file;
+  private final ReloadListener listener;
+  private final WatchService watchService;
+  private final Thread thread;
+
+  /**
+   * Starts watching a manifest on a daemon thread of its own.
+   *
+   * @param manager  the manager to reload
+   * @param file     the manifest
+   * @param listener told about every reload, may be null
+   * @throws IOException if the directory of the file cannot be watched
+   */
+  ManifestWatcher(PackageManager manager, Path file, ReloadListener listener) throws IOException {
+    this.manager = manager;
+    this.file = file.toAbsolutePath();
+    this.listener = listener;
+    this.watchService = this.file.getFileSystem().newWatchService();
+    this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    this.thread = new Thread(this, "manifest-watcher-" + file.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        if (!concernsFile(watchService.take())) {
+          continue;
+        }
+        // wait for the burst of events to end
+        WatchKey more;
+        while ((more = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          concernsFile(more);
+        }
+        reload();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // stop was called
+    }
+  }
+
+  /**
+   * Stops watching and waits for a reload in progress to finish.
+   *
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  void stop() throws InterruptedException {
+    thread.interrupt();
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      // the thread is stopping anyway
+    }
+    if (thread != Thread.currentThread()) {
+      thread.join();
+    }
+  }
+
+  /**
+   * helper method that reloads the manager and tells the listener how it went
+   */
+  private void reload() {
+    try {
+      ManifestDiff diff = manager.reloadGraph(file.toString());
+      if (listener != null) {
+        listener.reloaded(diff);
+      }
+    } catch (Exception e) {
+      if (listener != null) {
+        listener.failed(e);
+      }
+    }
+  }
+
+  /**
+   * helper method that reads the events of a key, makes the key ready for more, and returns true
+   * if any event was about the manifest
+   */
+  private boolean concernsFile(WatchKey key) {
+    boolean found = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      // an overflow means events were lost, one of them may have been ours
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW
+          || file.getFileName().equals(event.context())) {
+        found = true;
+      }
+    }
+    key.reset();
+    return found;
+  }
+}
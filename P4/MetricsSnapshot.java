@@ -0,0 +1,127 @@
+/**
+ * Filename: MetricsSnapshot.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Point in time metrics of a PackageManager: the size of its graph, the time spent building it
+ * and the statistics of its queries and of its installation order cache.
+ */
+public class MetricsSnapshot {
+
+  private final int vertexCount;
+  private final int edgeCount;
+  private final long manifestsRead;
+  private final long parseNanos;
+  private final long buildNanos;
+  private final long lastParseNanos;
+  private final long lastBuildNanos;
+  private final OperationStats installationOrder;
+  private final OperationStats batchInstallationOrder;
+  private final OperationStats toInstall;
+  private final CacheStats orderCache;
+
+  /**
+   * Creates the metrics, only PackageManagerMetrics creates them.
+   */
+  MetricsSnapshot(int vertexCount, int edgeCount, long manifestsRead, long parseNanos,
+      long buildNanos, long lastParseNanos, long lastBuildNanos, OperationStats installationOrder,
+      OperationStats batchInstallationOrder, OperationStats toInstall, CacheStats orderCache) {
+    this.vertexCount = vertexCount;
+    this.edgeCount = edgeCount;
+    this.manifestsRead = manifestsRead;
+    this.parseNanos = parseNanos;
+    this.buildNanos = buildNanos;
+    this.lastParseNanos = lastParseNanos;
+    this.lastBuildNanos = lastBuildNanos;
+    this.installationOrder = installationOrder;
+    this.batchInstallationOrder = batchInstallationOrder;
+    this.toInstall = toInstall;
+    this.orderCache = orderCache;
+  }
+
+  /**
+   * Returns the number of packages in the graph.
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * Returns the number of dependencies in the graph.
+   */
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * Returns the number of manifests constructGraph read while metrics were on.
+   */
+  public long getManifestsRead() {
+    return manifestsRead;
+  }
+
+  /**
+   * Returns the time constructGraph spent parsing json, over all the manifests.
+   */
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  /**
+   * Returns the time constructGraph spent adding packages and dependencies to the graph, over all
+   * the manifests.
+   */
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  /**
+   * Returns the time spent parsing the last manifest.
+   */
+  public long getLastParseNanos() {
+    return lastParseNanos;
+  }
+
+  /**
+   * Returns the time spent adding the last manifest to the graph.
+   */
+  public long getLastBuildNanos() {
+    return lastBuildNanos;
+  }
+
+  /**
+   * Returns the statistics of getInstallationOrder of a single package.
+   */
+  public OperationStats getInstallationOrder() {
+    return installationOrder;
+  }
+
+  /**
+   * Returns the statistics of getInstallationOrder of many packages and of getInstallationOrders.
+   */
+  public OperationStats getBatchInstallationOrder() {
+    return batchInstallationOrder;
+  }
+
+  /**
+   * Returns the statistics of both forms of toInstall.
+   */
+  public OperationStats getToInstall() {
+    return toInstall;
+  }
+
+  /**
+   * Returns the statistics of the installation order cache, or null if caching is off.
+   */
+  public CacheStats getOrderCache() {
+    return orderCache;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "vertices=%d edges=%d manifests=%d parse=%dns build=%dns%n"
+            + "getInstallationOrder: %s%nbatchInstallationOrder: %s%ntoInstall: %s%n"
+            + "orderCache: %s",
+        vertexCount, edgeCount, manifestsRead, parseNanos, buildNanos, installationOrder,
+        batchInstallationOrder, toInstall, orderCache);
+  }
+}
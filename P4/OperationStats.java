@@ -0,0 +1,110 @@
+/**
+ * Filename: OperationStats.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Point in time statistics of one kind of query of a PackageManager: how many calls completed,
+ * how long they took and how much of the graph they searched.
+ */
+public class OperationStats {
+
+  private final long calls;
+  private final long visitedVertices;
+  private final long visitedEdges;
+  private final double meanNanos;
+  private final long p50Nanos;
+  private final long p90Nanos;
+  private final long p99Nanos;
+  private final long maxNanos;
+
+  /**
+   * Creates the statistics, only PackageManagerMetrics creates them.
+   */
+  OperationStats(long calls, long visitedVertices, long visitedEdges, double meanNanos,
+      long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+    this.calls = calls;
+    this.visitedVertices = visitedVertices;
+    this.visitedEdges = visitedEdges;
+    this.meanNanos = meanNanos;
+    this.p50Nanos = p50Nanos;
+    this.p90Nanos = p90Nanos;
+    this.p99Nanos = p99Nanos;
+    this.maxNanos = maxNanos;
+  }
+
+  /**
+   * Returns the number of calls that completed.
+   */
+  public long getCalls() {
+    return calls;
+  }
+
+  /**
+   * Returns the number of packages searched over all the calls.
+   */
+  public long getVisitedVertices() {
+    return visitedVertices;
+  }
+
+  /**
+   * Returns the number of dependencies followed over all the calls.
+   */
+  public long getVisitedEdges() {
+    return visitedEdges;
+  }
+
+  /**
+   * Returns the mean number of packages searched per call, 0 if there was no call.
+   */
+  public double getMeanVisitedVertices() {
+    return calls == 0 ? 0 : (double) visitedVertices / calls;
+  }
+
+  /**
+   * Returns the mean number of dependencies followed per call, 0 if there was no call.
+   */
+  public double getMeanVisitedEdges() {
+    return calls == 0 ? 0 : (double) visitedEdges / calls;
+  }
+
+  /**
+   * Returns the mean latency of a call in nanoseconds.
+   */
+  public double getMeanNanos() {
+    return meanNanos;
+  }
+
+  /**
+   * Returns the median latency in nanoseconds, to within an eighth.
+   */
+  public long getP50Nanos() {
+    return p50Nanos;
+  }
+
+  /**
+   * Returns the 90th percentile latency in nanoseconds, to within an eighth.
+   */
+  public long getP90Nanos() {
+    return p90Nanos;
+  }
+
+  /**
+   * Returns the 99th percentile latency in nanoseconds, to within an eighth.
+   */
+  public long getP99Nanos() {
+    return p99Nanos;
+  }
+
+  /**
+   * Returns the largest latency in nanoseconds.
+   */
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "calls=%d visited=%.1f/%.1f mean=%.0fns p50=%dns p90=%dns p99=%dns max=%dns", calls,
+        getMeanVisitedVertices(), getMeanVisitedEdges(), meanNanos, p50Nanos, p90Nanos, p99Nanos,
+        maxNanos);
+  }
+}
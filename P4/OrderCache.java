@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filename: OrderCache.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Least recently used cache of resolved installation orders, bounded by the total number of
+ * packages stored over all the orders (the weight).
+ *
+ * The cache listens to the graph. For every package it knows which cached orders contain it, and
+ * an order is dropped as soon as an edge going out of one of its packages is added or removed, or
+ * one of its packages is removed. Changes anywhere else in the graph leave the order alone. An
+ * epoch counter goes up with every change, so an order resolved while the graph was changing is
+ * not stored.
+ *
+ * All methods are synchronized, the cache can be shared by query threads and a writer.
+ */
+class OrderCache implements GraphListener {
+
+  // maximum total number of packages stored
+  private final long maxWeight;
+  // root id -> installation order of the root, in access order for lru eviction
+  private final LinkedHashMap<Integer, int[]> entries =
+      new LinkedHashMap<Integer, int[]>(16, 0.75f, true);
+  // package id -> roots whose cached order contains the package
+  private final Map<Integer, Set<Integer>> containedIn = new HashMap<Integer, Set<Integer>>();
+  private long weight;
+  // goes up whenever an order is invalidated or the cache is cleared
+  private long epoch;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxWeight maximum total number of packages over all the cached orders
+   */
+  OrderCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Returns the cached order of a root and counts a hit or a miss.
+   *
+   * @param root the id of the package
+   * @return the cached order, or null if there is none. The array must not be changed
+   */
+  synchronized int[] get(int root) {
+    int[] order = entries.get(root);
+    if (order == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return order;
+  }
+
+  /**
+   * Returns the current epoch, to be passed to put after resolving an order.
+   */
+  synchronized long epoch() {
+    return epoch;
+  }
+
+  /**
+   * Stores the order of a root, unless the graph changed since startEpoch or the order alone is
+   * heavier than the whole cache. Least recently used orders are evicted to make room.
+   *
+   * @param root       the id of the package
+   * @param order      its installation order, the cache keeps the array
+   * @param startEpoch the epoch read before the order was resolved
+   */
+  synchronized void put(int root, int[] order, long startEpoch) {
+    if (startEpoch != epoch || order.length > maxWeight) {
+      return;
+    }
+    if (entries.containsKey(root)) {
+      drop(root);
+    }
+    entries.put(root, order);
+    weight += order.length;
+    for (int v : order) {
+      Set<Integer> roots = containedIn.get(v);
+      if (roots == null) {
+        roots = new HashSet<Integer>(4);
+        containedIn.put(v, roots);
+      }
+      roots.add(root);
+    }
+    // the new order is the most recent one, so it is never the one evicted
+    while (weight > maxWeight) {
+      drop(entries.keySet().iterator().next());
+      evictions++;
+    }
+  }
+
+  /**
+   * Drops every cached order.
+   */
+  synchronized void clear() {
+    entries.clear();
+    containedIn.clear();
+    weight = 0;
+    epoch++;
+  }
+
+  /**
+   * Returns the statistics of the cache.
+   */
+  synchronized CacheStats stats() {
+    return new CacheStats(hits, misses, evictions, invalidations, entries.size(), weight,
+        maxWeight);
+  }
+
+  @Override
+  public synchronized void vertexRemoved(int id) {
+    invalidate(id);
+  }
+
+  @Override
+  public synchronized void edgeAdded(int src, int dst) {
+    invalidate(src);
+  }
+
+  @Override
+  public synchronized void edgeRemoved(int src, int dst) {
+    invalidate(src);
+  }
+
+  /**
+   * helper method that drops every order containing the package v
+   */
+  private void invalidate(int v) {
+    epoch++;
+    Set<Integer> roots = containedIn.get(v);
+    if (roots == null) {
+      return;
+    }
+    for (int root : new ArrayList<Integer>(roots)) {
+      drop(root);
+      invalidations++;
+    }
+  }
+
+  /**
+   * helper method that removes the order of a root and its reverse index entries
+   */
+  private void drop(int root) {
+    int[] order = entries.remove(root);
+    weight -= order.length;
+    for (int v : order) {
+      Set<Integer> roots = containedIn.get(v);
+      roots.remove(root);
+      if (roots.isEmpty()) {
+        containedIn.remove(v);
+      }
+    }
+  }
+}
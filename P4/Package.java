@@ -8,9 +8,14 @@
  * A package is a package name and an array of the names of other packages
  * that this package depends upon.
  * 
+ * A package may also carry a version, and a dependency may name the versions
+ * it accepts after an '@', as in "B@^1.2" or "B@>=1.0 <2.0", see VersionRange.
+ * A dependency without a range accepts any version.
+ * 
  */
 public class Package {
 	private String name;	
+	private String version;
 	private String[] dependencies;
 	
 	public Package() {
@@ -22,10 +27,23 @@ public class Package {
 		this.dependencies = dependencies;
 	}
 	
+	public Package(String name, String version, String[] dependencies) {
+		this.name = name;
+		this.version = version;
+		this.dependencies = dependencies;
+	}
+	
 	public String getName() {
 		return this.name;
 	}
 	
+	/**
+	 * Returns the version of the package, or null if it has none.
+	 */
+	public String getVersion() {
+		return this.version;
+	}
+	
 	public String[] getDependencies() {
 		return this.dependencies;
 	}
@@ -34,7 +52,32 @@ public class Package {
 		this.name = name;
 	}
 
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
 	public void setDependencies(String[] dependencies) {
 		this.dependencies = dependencies;
 	}
+	
+	/**
+	 * Returns the name of the package a dependency points at, without its
+	 * range.
+	 * 
+	 * @param dependency a dependency, "B" or "B@range"
+	 */
+	public static String dependencyName(String dependency) {
+		int at = dependency.indexOf('@', 1);
+		return at < 0 ? dependency : dependency.substring(0, at);
+	}
+	
+	/**
+	 * Returns the range of versions a dependency accepts, "" if it accepts any.
+	 * 
+	 * @param dependency a dependency, "B" or "B@range"
+	 */
+	public static String dependencyRange(String dependency) {
+		int at = dependency.indexOf('@', 1);
+		return at < 0 ? "" : dependency.substring(at + 1);
+	}
 }
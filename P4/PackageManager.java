@@ -1,13 +1,31 @@
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.Iterator;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import org.json.simple.parser.ParseException;
 
 /**
@@ -34,7 +52,70 @@ import org.json.simple.parser.ParseException;
 
 public class PackageManager {
 
-  private Graph graph;
+  // port the server started by main listens on by default
+  private static final int DEFAULT_PORT = 7400;
+
+  // the dependency graph, either built by constructGraph or mapped from a snapshot
+  private volatile IndexedGraph graph;
+
+  // size and checksum of the bytes of the one manifest the graph holds exactly, as they were
+  // read, -1 and 0 if it was built from none or from several, or was changed since
+  private long manifestSize = -1;
+  private long manifestChecksum;
+
+  // cache of resolved installation orders, null while caching is off
+  private OrderCache orderCache;
+  // global installation order kept up to date on every change, null while it is off
+  private DynamicTopologicalOrder dynamicOrder;
+  // true while dependsOn and getDependencyCounts use the reachability matrix
+  private boolean reachabilityOn;
+  // closure of the graph, built on demand and dropped on every change to the graph
+  private volatile ReachabilityMatrix reachability;
+  // the graph found too large for the matrix, the queries fall back until it changes
+  private volatile IndexedGraph reachabilityTooLarge;
+  // last answer of getPackageWithMaxDependencies on a graph that cannot change, null if none
+  private volatile MaxAnswer maxAnswer;
+  // true while dependsOn uses the reachability labels, which are kept like the matrix
+  private boolean reachabilityIndexOn;
+  private volatile ReachabilityIndex reachabilityIndex;
+  private final GraphListener reachabilityInvalidator = new GraphListener() {
+    @Override
+    public void vertexAdded(int id) {
+      reachability = null;
+      reachabilityTooLarge = null;
+      reachabilityIndex = null;
+    }
+
+    @Override
+    public void vertexRemoved(int id) {
+      reachability = null;
+      reachabilityTooLarge = null;
+      reachabilityIndex = null;
+    }
+
+    @Override
+    public void edgeAdded(int src, int dst) {
+      reachability = null;
+      reachabilityTooLarge = null;
+      reachabilityIndex = null;
+    }
+
+    @Override
+    public void edgeRemoved(int src, int dst) {
+      reachability = null;
+      reachabilityTooLarge = null;
+      reachabilityIndex = null;
+    }
+  };
+
+  // metrics of the graph and of the queries, null while metrics are off
+  private volatile PackageManagerMetrics metrics;
+  // name the metrics are registered under with JMX, null while they are not
+  private ObjectName metricsName;
+  // watches the manifest for changes, null while none is watched
+  private ManifestWatcher watcher;
+  // versions of the packages that the manifests gave versions
+  private volatile VersionRegistry registry = new VersionRegistry();
 
   /*
    * Package Manager default no-argument constructor.
@@ -43,56 +124,771 @@ public class PackageManager {
     this.graph = new Graph();
   }
 
+  /**
+   * Package Manager constructor that can make the manager safe to share between threads.
+   * 
+   * A thread-safe manager answers queries from any number of threads while another thread calls
+   * constructGraph, addDependency or removeDependency. A query waits for the writer at most as long
+   * as it takes to read again the packages changed since the previous query, every query sees the
+   * graph as it was before or after each change, never half way through, and a manifest read by
+   * constructGraph shows up all at once. The caching and snapshot settings are still meant to be
+   * made before the manager is shared, and the incremental order is not available.
+   * 
+   * @param threadSafe true to guard the graph for concurrent use
+   */
+  public PackageManager(boolean threadSafe) {
+    this.graph = threadSafe ? new ConcurrentGraph() : new Graph();
+  }
+
   /**
    * Takes in a file path for a json file and builds the package dependency graph from it.
    * 
+   * The file is read through a buffered channel and parsed token by token, so peak memory is
+   * proportional to the graph rather than to the json document.
+   * 
    * @param jsonFilepath the name of json data file with package dependency information
    * @throws FileNotFoundException if file path is incorrect
    * @throws IOException if the give file cannot be read
    * @throws ParseException if the given json cannot be parsed
    */
-  public void constructGraph(String jsonFilepath)
+  public synchronized void constructGraph(String jsonFilepath)
       throws FileNotFoundException, IOException, ParseException {
 
-    try {// online source: https://www.geeksforgeeks.org/parse-json-java/
-      Object obj = new JSONParser().parse(new FileReader(jsonFilepath));
-      // typecast obj to JSONObject
-      JSONObject JSONObject = (JSONObject) obj;
-      // get packages, this is the package array
-      JSONArray jsonArray = (JSONArray) JSONObject.get("packages");
-      // we need to iterate the package
-      Iterator<JSONObject> packageIterate = jsonArray.iterator();
-
-      while (packageIterate.hasNext()) {
-        // get the names
-        JSONObject eachPackage = (JSONObject) packageIterate.next();
-        String packageNames = (String) eachPackage.get("name");
-        graph.addVertex(packageNames);
-        // then we need to get the dependencies
-        JSONArray dependencyArr = (JSONArray) eachPackage.get("dependencies");
-
-        Iterator dependencyIterate = (Iterator) dependencyArr.iterator();
-
-        while (dependencyIterate.hasNext()) {
-          String dependencyVertex = (String) dependencyIterate.next();
-          graph.addVertex(dependencyVertex);
-          graph.addEdge(packageNames, dependencyVertex);
+    PackageManagerMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    long buildNanos;
+    // the graph holds exactly this manifest only if it held nothing before
+    boolean fresh = graph.order() == 0;
+    ManifestReader reader;
+    if (graph instanceof ConcurrentGraph) {
+      // queries go on against the old graph while the manifest is parsed on the side
+      Graph parsed = new Graph();
+      reader = ManifestReader.read(jsonFilepath, parsed, recorder != null, registry);
+      long merge = recorder == null ? 0 : System.nanoTime();
+      ((ConcurrentGraph) graph).addAll(parsed);
+      buildNanos = recorder == null ? 0 : reader.getBuildNanos() + System.nanoTime() - merge;
+    } else {
+      // the manifest is streamed straight into the graph, no JSONObject tree is built
+      reader = ManifestReader.read(jsonFilepath, graph, recorder != null, registry);
+      buildNanos = reader.getBuildNanos();
+    }
+    if (recorder != null) {
+      recorder.recordConstructGraph(System.nanoTime() - start - buildNanos, buildNanos);
+    }
+    // remember the bytes the graph was built from so that a snapshot of it can be tied to them
+    if (fresh) {
+      rememberManifest(reader.getManifestSize(), reader.getManifestChecksum());
+    } else {
+      forgetManifest();
+    }
+  }
 
+  /**
+   * Builds the package dependency graph from many json files, parsing them in parallel on the
+   * common fork-join pool. See constructGraph(Collection, Executor).
+   * 
+   * @param jsonFilepaths the json data files with package dependency information
+   * @throws FileNotFoundException if a file path is incorrect
+   * @throws IOException if a file cannot be read
+   * @throws ParseException if a file cannot be parsed
+   */
+  public void constructGraph(Collection<String> jsonFilepaths)
+      throws FileNotFoundException, IOException, ParseException {
+    constructGraph(jsonFilepaths, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Builds the package dependency graph from many json files, for example one manifest per team.
+   * 
+   * Every file is parsed on the given pool into a light graph of its own, which holds just the
+   * names and the edges, so the parsing, which is most of the work, runs on as many threads as the
+   * pool has. The graphs are then merged into this
+   * manager's graph one after the other, in the order of the paths, and a package or a dependency
+   * named by several files ends up in the graph once. The result is the same as calling
+   * constructGraph(String) on each file in turn. If any file cannot be read, the graph is left as
+   * it was and the exception of the first such file is thrown.
+   * 
+   * @param jsonFilepaths the json data files with package dependency information
+   * @param pool the pool to parse the files on
+   * @throws FileNotFoundException if a file path is incorrect
+   * @throws IOException if a file cannot be read
+   * @throws ParseException if a file cannot be parsed
+   * @throws UnsupportedOperationException if the graph was loaded from a read-only snapshot or
+   *         was frozen
+   */
+  public synchronized void constructGraph(Collection<String> jsonFilepaths, Executor pool)
+      throws FileNotFoundException, IOException, ParseException {
+    if (!(graph instanceof Graph || graph instanceof ConcurrentGraph)) {
+      throw new UnsupportedOperationException("graph is read-only");
+    }
+    PackageManagerMetrics recorder = metrics;
+    boolean fresh = graph.order() == 0;
+    List<CompletableFuture<Shard>> shards = new ArrayList<CompletableFuture<Shard>>();
+    for (String jsonFilepath : jsonFilepaths) {
+      shards.add(CompletableFuture.supplyAsync(() -> Shard.read(jsonFilepath, recorder != null),
+          pool));
+    }
+    // wait for every file before touching the graph, so a bad file leaves it unchanged
+    List<Shard> parsed = new ArrayList<Shard>(shards.size());
+    for (CompletableFuture<Shard> shard : shards) {
+      try {
+        parsed.add(shard.join());
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof ParseException) {
+          throw (ParseException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
         }
+        throw (Error) cause;
+      }
+    }
+
+    // a thread-safe graph takes all the files in one write
+    Graph target = graph instanceof ConcurrentGraph ? new Graph() : (Graph) graph;
+    for (Shard shard : parsed) {
+      long start = recorder == null ? 0 : System.nanoTime();
+      target.addAll(shard.graph);
+      if (recorder != null) {
+        long buildNanos = shard.buildNanos + System.nanoTime() - start;
+        recorder.recordConstructGraph(shard.parseNanos, buildNanos);
+      }
+    }
+    if (graph instanceof ConcurrentGraph) {
+      ((ConcurrentGraph) graph).addAll(target);
+    }
+    for (Shard shard : parsed) {
+      registry.addAll(shard.versions);
+    }
+    if (fresh && parsed.size() == 1) {
+      rememberManifest(parsed.get(0).manifestSize, parsed.get(0).manifestChecksum);
+    } else if (!parsed.isEmpty()) {
+      forgetManifest();
+    }
+  }
+
+  /**
+   * Builds the package dependency graph from every .json file of a directory, parsing them in
+   * parallel on the given pool. The files are read in the order of their names, see
+   * constructGraph(Collection, Executor).
+   * 
+   * @param directory the directory holding the manifests, subdirectories are not searched
+   * @param pool the pool to parse the files on
+   * @throws FileNotFoundException if the directory does not exist
+   * @throws IOException if the directory or a file cannot be read
+   * @throws ParseException if a file cannot be parsed
+   */
+  public void constructGraphFromDirectory(String directory, Executor pool)
+      throws FileNotFoundException, IOException, ParseException {
+    Path dir = Paths.get(directory);
+    if (!Files.isDirectory(dir)) {
+      throw new FileNotFoundException(directory);
+    }
+    List<String> jsonFilepaths = new ArrayList<String>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+      for (Path file : files) {
+        if (Files.isRegularFile(file)) {
+          jsonFilepaths.add(file.toString());
+        }
+      }
+    }
+    Collections.sort(jsonFilepaths);
+    constructGraph(jsonFilepaths, pool);
+  }
+
+  /**
+   * Changes the graph to match a new version of the manifest it was built from, without starting
+   * over.
+   * 
+   * The manifest is parsed on the side and compared with the graph, and only the packages and
+   * dependencies that were added or removed are changed, through the same calls addDependency and
+   * removeDependency make. The order cache, the incremental order and the reachability index
+   * therefore only drop or redo what the change touches, and a thread-safe manager shows the
+   * whole change at once. The graph ends up holding exactly the manifest: packages and
+   * dependencies added by other manifests or by addDependency are removed.
+   * 
+   * @param jsonFilepath the new manifest
+   * @return ManifestDiff, what was added and removed
+   * @throws FileNotFoundException if file path is incorrect
+   * @throws IOException if the file cannot be read
+   * @throws ParseException if the file cannot be parsed, the graph is left as it was
+   * @throws UnsupportedOperationException if the graph was loaded from a read-only snapshot or
+   *         was frozen
+   */
+  public synchronized ManifestDiff reloadGraph(String jsonFilepath)
+      throws FileNotFoundException, IOException, ParseException {
+    if (!(graph instanceof Graph || graph instanceof ConcurrentGraph)) {
+      throw new UnsupportedOperationException("graph is read-only");
+    }
+    PackageManagerMetrics recorder = metrics;
+    long start = System.nanoTime();
+    ManifestShard manifest = new ManifestShard();
+    VersionRegistry versions = new VersionRegistry();
+    ManifestReader reader = ManifestReader.read(jsonFilepath, manifest, false, versions);
+    long parseNanos = System.nanoTime() - start;
+    ManifestDiff diff;
+    if (graph instanceof ConcurrentGraph) {
+      diff = ((ConcurrentGraph) graph).update(g -> ManifestDiff.applyTo(g, manifest, parseNanos));
+    } else {
+      diff = ManifestDiff.applyTo((Graph) graph, manifest, parseNanos);
+    }
+    if (recorder != null) {
+      recorder.recordConstructGraph(parseNanos, diff.getApplyNanos());
+    }
+    registry = versions;
+    rememberManifest(reader.getManifestSize(), reader.getManifestChecksum());
+    return diff;
+  }
+
+  /**
+   * Watches a manifest and calls reloadGraph on it every time it changes on disk, on a daemon
+   * thread of its own. Stops watching any other manifest first. The graph is not reloaded right
+   * away, call constructGraph or reloadGraph for that.
+   * 
+   * Reloads happen while other threads may be querying, so a manager that is watched should be
+   * thread-safe, see PackageManager(boolean).
+   * 
+   * @param jsonFilepath the manifest to watch
+   * @param listener told about every reload and every failed one, may be null
+   * @throws IOException if the directory of the manifest cannot be watched
+   * @throws InterruptedException if interrupted while stopping the previous watcher
+   */
+  public void watchManifest(String jsonFilepath, ReloadListener listener)
+      throws IOException, InterruptedException {
+    stopWatching();
+    ManifestWatcher started = new ManifestWatcher(this, Paths.get(jsonFilepath), listener);
+    ManifestWatcher previous;
+    synchronized (this) {
+      previous = watcher;
+      watcher = started;
+    }
+    // another thread started watching at the same time, only one watcher is kept
+    if (previous != null) {
+      previous.stop();
+    }
+  }
+
+  /**
+   * Stops watching the manifest, waiting for a reload in progress to finish. Does nothing if no
+   * manifest is watched.
+   * 
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void stopWatching() throws InterruptedException {
+    ManifestWatcher stopped;
+    // the watcher is stopped outside the lock, a reload it is making needs the lock to finish
+    synchronized (this) {
+      stopped = watcher;
+      watcher = null;
+    }
+    if (stopped != null) {
+      stopped.stop();
+    }
+  }
+
+  /**
+   * Helper class that holds the answer of getPackageWithMaxDependencies with the graph it was
+   * found on
+   */
+  private static class MaxAnswer {
+    final IndexedGraph view;
+    final String name;
+
+    MaxAnswer(IndexedGraph view, String name) {
+      this.view = view;
+      this.name = name;
+    }
+  }
+
+  /**
+   * Helper class that holds one manifest parsed on its own, with the time it took
+   */
+  private static class Shard {
+    final ManifestShard graph = new ManifestShard();
+    final VersionRegistry versions = new VersionRegistry();
+    long parseNanos;
+    long buildNanos;
+    long manifestSize;
+    long manifestChecksum;
+
+    /**
+     * Parses a manifest, wrapping the checked exceptions so it can run as a pool task
+     */
+    static Shard read(String jsonFilepath, boolean timed) {
+      Shard shard = new Shard();
+      long start = timed ? System.nanoTime() : 0;
+      try {
+        ManifestReader reader =
+            ManifestReader.read(jsonFilepath, shard.graph, timed, shard.versions);
+        shard.buildNanos = reader.getBuildNanos();
+        shard.manifestSize = reader.getManifestSize();
+        shard.manifestChecksum = reader.getManifestChecksum();
+      } catch (IOException | ParseException e) {
+        throw new CompletionException(e);
+      }
+      if (timed) {
+        shard.parseNanos = System.nanoTime() - start - shard.buildNanos;
+      }
+      return shard;
+    }
+  }
+
+  /**
+   * Writes the current dependency graph to a binary snapshot file that loadSnapshot can map back
+   * in without parsing any json.
+   * 
+   * The snapshot records the size and checksum of the manifest the graph was built from, as it
+   * was read then, not as it is on disk now. If the graph was not built from exactly one manifest,
+   * or was changed since through addDependency or removeDependency, the snapshot will never match
+   * a manifest.
+   * 
+   * A thread-safe manager writes the copy of the graph as of the last change, so changes made
+   * while the file is written neither block on it nor end up half in it.
+   * 
+   * @param snapshotPath path of the snapshot file to write
+   * @throws IOException if the snapshot cannot be written
+   */
+  public void saveSnapshot(String snapshotPath) throws IOException {
+    IndexedGraph current;
+    long size;
+    long checksum;
+    // the copy and the manifest it matches are taken together, the file is written outside
+    synchronized (this) {
+      current = queryGraph();
+      size = manifestSize;
+      checksum = manifestChecksum;
+    }
+    GraphSnapshot.write(current, Paths.get(snapshotPath), size, checksum);
+  }
+
+  /**
+   * Replaces the dependency graph with the graph stored in a snapshot file. The snapshot is memory
+   * mapped, so queries can be answered right away without parsing the manifest or copying the
+   * graph onto the heap. The loaded graph is read-only, constructGraph cannot add to it. The
+   * snapshot holds no versions, resolveVersions sees every package at version 0.0.0.
+   * 
+   * @param snapshotPath path of the snapshot written by saveSnapshot
+   * @param jsonFilepath the manifest the snapshot must have been written from
+   * @throws FileNotFoundException if either file does not exist
+   * @throws IOException if the files cannot be read, or the snapshot is invalid or was not
+   *         written from the given manifest
+   */
+  public synchronized void loadSnapshot(String snapshotPath, String jsonFilepath)
+      throws FileNotFoundException, IOException {
+    GraphSnapshot snapshot = GraphSnapshot.open(Paths.get(snapshotPath));
+    Path manifest = Paths.get(jsonFilepath);
+    if (!Files.exists(manifest)) {
+      throw new FileNotFoundException(jsonFilepath);
+    }
+    if (!snapshot.isSnapshotOf(manifest)) {
+      throw new IOException("snapshot " + snapshotPath + " is stale for " + jsonFilepath);
+    }
+    if (orderCache != null) {
+      // the snapshot never changes, so the cache only needs to forget the old graph
+      removeListener(orderCache);
+      orderCache.clear();
+    }
+    removeListener(reachabilityInvalidator);
+    disableIncrementalOrder();
+    this.graph = snapshot;
+    this.registry = new VersionRegistry();
+    rememberManifest(snapshot.getManifestSize(), snapshot.getManifestChecksum());
+  }
+
+  /**
+   * Freezes the dependency graph into an immutable compressed sparse row layout that every query
+   * reads from from now on. An edge then costs one int, the edges of a package are contiguous in
+   * memory, and the graph can be read by any number of threads without locking. Package ids do not
+   * change, so cached installation orders stay valid.
+   * 
+   * The frozen graph is read-only: constructGraph, addDependency and removeDependency throw
+   * UnsupportedOperationException afterwards, and the incremental order is turned off.
+   */
+  public synchronized void freeze() {
+    if (orderCache != null) {
+      removeListener(orderCache);
+    }
+    removeListener(reachabilityInvalidator);
+    disableIncrementalOrder();
+    IndexedGraph current = graph;
+    // the version of a thread-safe graph can be copied without holding up its writer
+    this.graph = FrozenGraph.of(
+        current instanceof ConcurrentGraph ? ((ConcurrentGraph) current).snapshot() : current);
+  }
+
+  /**
+   * Turns on caching of the results of getInstallationOrder. The cache keeps the most recently used
+   * orders as long as the total number of packages over all of them stays within maxWeight.
+   * 
+   * A cached order is dropped as soon as the graph changes in a way that can affect it: when an
+   * edge going out of one of its packages is added or removed, or one of its packages is removed.
+   * Any cache that was on before is replaced by an empty one.
+   * 
+   * @param maxWeight maximum total number of packages over all the cached orders
+   */
+  public void enableOrderCache(long maxWeight) {
+    disableOrderCache();
+    orderCache = new OrderCache(maxWeight);
+    addListener(orderCache);
+  }
+
+  /**
+   * Turns off caching of installation orders and drops the cached orders.
+   */
+  public void disableOrderCache() {
+    if (orderCache != null) {
+      removeListener(orderCache);
+    }
+    orderCache = null;
+  }
+
+  /**
+   * Turns on the reachability matrix, the full transitive closure of the graph kept as one bit row
+   * per group of packages. dependsOn then answers with a single bit test and getDependencyCounts
+   * with a bit count per package. The matrix is built by the first query that needs it and built
+   * again after the graph changes. It takes about V * V / 16 bytes for V packages, which is fine
+   * for tens of thousands of packages. While the matrix would take more than 256MB, the queries
+   * answer as if it were off, dependsOn with the reachability index if that is on.
+   */
+  public void enableReachabilityMatrix() {
+    reachabilityOn = true;
+    reachability = null;
+    reachabilityTooLarge = null;
+    listenForReachability();
+  }
+
+  /**
+   * Turns off the reachability matrix and drops it.
+   */
+  public void disableReachabilityMatrix() {
+    reachabilityOn = false;
+    reachability = null;
+    reachabilityTooLarge = null;
+    listenForReachability();
+  }
+
+  /**
+   * Turns on the reachability index for dependsOn, meant for graphs too large for the matrix.
+   * Every group of packages gets a few interval labels from depth first traversals of the graph,
+   * which settle most queries in a handful of comparisons, and a search pruned by the labels
+   * answers the rest. The index takes a few ints per package on top of the graph. Like the matrix
+   * it is built by the first query that needs it and built again after the graph changes. The
+   * matrix is used instead while both are on.
+   */
+  public void enableReachabilityIndex() {
+    reachabilityIndexOn = true;
+    reachabilityIndex = null;
+    listenForReachability();
+  }
+
+  /**
+   * Turns off the reachability index and drops it.
+   */
+  public void disableReachabilityIndex() {
+    reachabilityIndexOn = false;
+    reachabilityIndex = null;
+    listenForReachability();
+  }
+
+  /**
+   * Helper method that keeps the invalidator registered exactly once while the matrix or the
+   * index is on
+   */
+  private void listenForReachability() {
+    removeListener(reachabilityInvalidator);
+    if (reachabilityOn || reachabilityIndexOn) {
+      addListener(reachabilityInvalidator);
+    }
+  }
+
+  /**
+   * Helper method that returns the reachability index of the graph a query runs on, building it
+   * if the graph changed since it was last built
+   */
+  private ReachabilityIndex reachabilityIndexOf(IndexedGraph view) {
+    ReachabilityIndex index = reachabilityIndex;
+    if (index == null || index.graph() != view) {
+      index = new ReachabilityIndex(view);
+      reachabilityIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Helper method that returns the reachability matrix of the graph a query runs on, building it
+   * if the graph changed since it was last built, or null while the matrix is off or the graph is
+   * too large for it
+   */
+  private ReachabilityMatrix reachabilityOf(IndexedGraph view) {
+    if (!reachabilityOn || reachabilityTooLarge == view) {
+      return null;
+    }
+    ReachabilityMatrix matrix = reachability;
+    if (matrix == null || matrix.graph() != view) {
+      StronglyConnectedComponents components = new StronglyConnectedComponents(view);
+      if (!ReachabilityMatrix.fits(components)) {
+        reachabilityTooLarge = view;
+        return null;
       }
+      matrix = new ReachabilityMatrix(view, components);
+      reachability = matrix;
+    }
+    return matrix;
+  }
+
+  /**
+   * Helper method that lets a listener hear about every change to the graph
+   */
+  private void addListener(GraphListener listener) {
+    if (graph instanceof Graph) {
+      ((Graph) graph).addListener(listener);
+    } else if (graph instanceof ConcurrentGraph) {
+      ((ConcurrentGraph) graph).addListener(listener);
+    }
+  }
+
+  /**
+   * Helper method that stops a listener from hearing about changes to the graph
+   */
+  private void removeListener(GraphListener listener) {
+    if (graph instanceof Graph) {
+      ((Graph) graph).removeListener(listener);
+    } else if (graph instanceof ConcurrentGraph) {
+      ((ConcurrentGraph) graph).removeListener(listener);
+    }
+  }
+
+  /**
+   * Turns on incremental maintenance of the global installation order. From now on
+   * getInstallationOrderForAllPackages reads the order kept up to date on every change instead of
+   * sorting the whole graph, and addDependency only reorders the packages between the two ends of
+   * the new edge.
+   * 
+   * @throws CycleException if the graph already has a cycle
+   * @throws UnsupportedOperationException if the graph was loaded from a read-only snapshot, was
+   *         frozen, or the manager is thread-safe
+   */
+  public void enableIncrementalOrder() throws CycleException {
+    if (graph instanceof ConcurrentGraph) {
+      throw new UnsupportedOperationException("incremental order is single-threaded");
+    }
+    if (!(graph instanceof Graph)) {
+      throw new UnsupportedOperationException("graph is read-only");
+    }
+    disableIncrementalOrder();
+    dynamicOrder = new DynamicTopologicalOrder((Graph) graph);
+  }
+
+  /**
+   * Turns off incremental maintenance of the global installation order.
+   */
+  public void disableIncrementalOrder() {
+    if (dynamicOrder != null) {
+      dynamicOrder.detach();
+      dynamicOrder = null;
+    }
+  }
+
+  /**
+   * Adds the dependency of pkg on dependency, adding either package if it is not in the graph yet.
+   * An edge that would close a cycle is rejected and the graph is left without it.
+   * 
+   * @param pkg the package that depends on the other one
+   * @param dependency the package it depends on
+   * @throws CycleException if dependency already depends on pkg, directly or not
+   * @throws UnsupportedOperationException if the graph was loaded from a read-only snapshot or
+   *         was frozen
+   */
+  public synchronized void addDependency(String pkg, String dependency) throws CycleException {
+    forgetManifest();
+    if (dynamicOrder != null) {
+      graph.addVertex(pkg);
+      graph.addVertex(dependency);
+      dynamicOrder.checkEdge(graph.idOf(pkg), graph.idOf(dependency));
+      graph.addEdge(pkg, dependency);
+      return;
+    }
+    IndexedGraph current = graph;
+    // on a thread-safe graph the packages, the check and the edge go in as one write, so no query
+    // sees pkg without its new dependency
+    List<String> cycle = current instanceof ConcurrentGraph
+        ? ((ConcurrentGraph) current).update(g -> addUnlessCycle(g, pkg, dependency))
+        : addUnlessCycle(current, pkg, dependency);
+    if (cycle != null) {
+      throw new CycleException(cycle, cycle);
+    }
+  }
+
+  /**
+   * Removes the dependency of pkg on dependency. Nothing happens if there is no such dependency.
+   * 
+   * @param pkg the package that depends on the other one
+   * @param dependency the package it depends on
+   * @throws UnsupportedOperationException if the graph was loaded from a read-only snapshot or
+   *         was frozen
+   */
+  public synchronized void removeDependency(String pkg, String dependency) {
+    forgetManifest();
+    IndexedGraph current = graph;
+    if (current instanceof ConcurrentGraph) {
+      ((ConcurrentGraph) current).update(g -> {
+        g.removeEdge(pkg, dependency);
+        return null;
+      });
+    } else {
+      current.removeEdge(pkg, dependency);
+    }
+  }
+
+  /**
+   * Helper method that adds both packages and the dependency of pkg on dependency, unless the
+   * dependency would close a cycle. Returns the real path of dependencies from dependency back to
+   * pkg that it would close, or null once the dependency is added
+   */
+  private static List<String> addUnlessCycle(IndexedGraph target, String pkg, String dependency) {
+    target.addVertex(pkg);
+    target.addVertex(dependency);
+    int src = target.idOf(pkg);
+    int dst = target.idOf(dependency);
+    List<String> cycle =
+        src == dst ? List.of(pkg) : DynamicTopologicalOrder.cycleThrough(target, src, dst);
+    if (cycle == null) {
+      target.addEdge(pkg, dependency);
+    }
+    return cycle;
+  }
+  /**
+   * helper method that ties the graph to the manifest it now holds exactly, by the size and
+   * checksum of the bytes it was read from
+   */
+  private void rememberManifest(long size, long checksum) {
+    manifestSize = size;
+    manifestChecksum = checksum;
+  }
 
+  /**
+   * helper method that unties the graph from its manifest before it is changed through the API, a
+   * read-only graph cannot change and keeps its manifest
+   */
+  private void forgetManifest() {
+    if (graph instanceof Graph || graph instanceof ConcurrentGraph) {
+      rememberManifest(-1, 0);
     }
+  }
+
+
+  /**
+   * Helper method that returns the graph a query should run on. For a thread-safe manager this is
+   * the copy of the graph as of the last change, so a query never sees a change half way through
+   */
+  private IndexedGraph queryGraph() {
+    IndexedGraph current = graph;
+    return current instanceof ConcurrentGraph ? ((ConcurrentGraph) current).snapshot() : current;
+  }
 
-    catch (FileNotFoundException e) {
-      throw new FileNotFoundException();
-    } catch (IOException e) {
-      throw new IOException();
-    } catch (ParseException e) {
-      throw new ParseException(0);
+  /**
+   * Helper method that checks whether there is a path of dependencies of length at least one from
+   * one package to another
+   */
+  private boolean reaches(IndexedGraph view, int from, int to) {
+    boolean[] visited = new boolean[view.idBound()];
+    int[] stack = new int[view.idBound()];
+    int depth = 0;
+    for (int k = 0; k < view.outDegree(from); k++) {
+      int w = view.adjacentAt(from, k);
+      if (!visited[w]) {
+        visited[w] = true;
+        stack[depth++] = w;
+      }
     }
+    while (depth > 0) {
+      int v = stack[--depth];
+      if (v == to) {
+        return true;
+      }
+      for (int k = 0; k < view.outDegree(v); k++) {
+        int w = view.adjacentAt(v, k);
+        if (!visited[w]) {
+          visited[w] = true;
+          stack[depth++] = w;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the hit, miss, eviction and invalidation counts of the installation order cache.
+   * 
+   * @return CacheStats of the cache, or null if caching is off
+   */
+  public CacheStats getOrderCacheStats() {
+    return orderCache == null ? null : orderCache.stats();
   }
 
 
+  /**
+   * Turns on metrics: how long constructGraph spends parsing json and building the graph, and the
+   * latency and the number of packages and dependencies searched by every getInstallationOrder
+   * and toInstall that completes. Does nothing if metrics are already on. While metrics are off,
+   * queries pay nothing for them but a null check.
+   */
+  public void enableMetrics() {
+    if (metrics == null) {
+      metrics = new PackageManagerMetrics(() -> graph, this::getOrderCacheStats);
+    }
+  }
+
+  /**
+   * Turns off metrics and forgets every count. A registered MBean keeps showing the last values
+   * until it is unregistered.
+   */
+  public void disableMetrics() {
+    metrics = null;
+  }
+
+  /**
+   * Returns the current metrics of the graph, the queries and the installation order cache.
+   * 
+   * @return MetricsSnapshot of the metrics, or null if metrics are off
+   */
+  public MetricsSnapshot getMetrics() {
+    PackageManagerMetrics recorder = metrics;
+    return recorder == null ? null : recorder.snapshot();
+  }
+
+  /**
+   * Turns on metrics and registers them with the platform MBean server, where jconsole and other
+   * JMX clients can read them. Any earlier registration of this manager is removed first.
+   * 
+   * @param name the object name, for example "p4:type=PackageManager"
+   * @return the name the metrics were registered under
+   * @throws JMException if the name is malformed or already taken
+   */
+  public synchronized ObjectName registerMetricsMBean(String name) throws JMException {
+    ObjectName objectName = new ObjectName(name);
+    unregisterMetricsMBean();
+    enableMetrics();
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(new StandardMBean(metrics, PackageManagerMetricsMBean.class), objectName);
+    metricsName = objectName;
+    return objectName;
+  }
+
+  /**
+   * Removes the metrics from the platform MBean server, if they were registered. Metrics stay on.
+   * 
+   * @throws JMException if the server fails to unregister them
+   */
+  public synchronized void unregisterMetricsMBean() throws JMException {
+    if (metricsName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+      metricsName = null;
+    }
+  }
+
   /**
    * Helper method to get all packages in the graph.
    * 
@@ -119,58 +915,109 @@ public class PackageManager {
    */
   public List<String> getInstallationOrder(String pkg)
       throws CycleException, PackageNotFoundException {
-    List<String> order = new Stack<String>();
-
+    PackageManagerMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    OrderCache cache = orderCache;
+    // the epoch is read before the graph is, so any change the graph we read has seen also
+    // shows up as a changed epoch
+    long epoch = cache == null ? 0 : cache.epoch();
+    IndexedGraph view = queryGraph();
     // first, we need to check if pkg exists in the graph,
     // if it doesn't, then throw exception
-    if (!graph.getAllVertices().contains(pkg)) {
+    int id = view.idOf(pkg);
+    if (id < 0) {
       throw new PackageNotFoundException();
     }
-    // we need to obtain the order, here I used a private helper to achieve the goal
-    try {
-      order = orderGetter(pkg, order);
+    int[] order = cache == null ? null : cache.get(id);
+    DependencyResolver resolver = null;
+    if (order == null || cache.epoch() != epoch) {
+      // a single iterative depth first search visits every dependency once
+      // and finds cycles of any length on the way
+      resolver = new DependencyResolver(view);
+      order = resolver.resolve(id);
+      // a cached order newer than the graph we read could name ids the graph does not have yet
+      if (cache != null) {
+        cache.put(id, order, epoch);
+      }
     }
-    // we need to detect if there is any cycle in the process
-    catch (CycleException e) {
-      throw new CycleException();
+    List<String> names = namesOf(view, order);
+    if (recorder != null) {
+      recorder.recordInstallationOrder(start, resolver);
     }
-    return order;
+    return names;
   }
 
   /**
-   * Helper method to get the installation order
-   *
-   * @param pkg package
-   * @param order
-   * @throws CycleException the cycle exception
-   */
-  private List<String> orderGetter(String pkg, List<String> order) throws CycleException {
-
-    List<String> dependencyList = graph.getAdjacentVerticesOf(pkg);
-    // if the dlist is null and if the package is not in the order list
-    if (dependencyList == null) {
-      if (!order.contains(pkg))
-        // we need to add package to the order list
-        order.add(pkg);
-      // and return the new order list
-      return order;
-      // if the dlist is not null
-    } else {
-      // we need to store the names of packages 
-      for (int i = 0; i < dependencyList.size(); i++) {
-        String names = dependencyList.get(i);
-        // we need to get the adjacent vertex of each names
-        List<String> adjVertex = graph.getAdjacentVerticesOf(names);
-        // if the adjVertex is not null, and the adjvertex contains package 
-        if (adjVertex != null && adjVertex.contains(pkg))
-          // cycle occured 
-          throw new CycleException();
-        // recursion back 
-        order = orderGetter(dependencyList.get(i), order);
+   * Given many package names, returns one list of every package they need in a valid installation
+   * order, each package once. This is what installing all of them together takes, and costs one
+   * search over the packages they depend on however many of them share dependencies.
+   * 
+   * @param pkgs the packages to install
+   * @return List<String>, order in which the packages have to be installed
+   * @throws CycleException if a cycle is reachable from any of the packages
+   * @throws PackageNotFoundException if any of the packages passed does not exist in the
+   *         dependency graph.
+   */
+  public List<String> getInstallationOrder(Collection<String> pkgs)
+      throws CycleException, PackageNotFoundException {
+    PackageManagerMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    IndexedGraph view = queryGraph();
+    BatchOrderResolver resolver = new BatchOrderResolver(view);
+    List<String> names = namesOf(view, resolver.resolve(idsOf(view, pkgs)));
+    if (recorder != null) {
+      recorder.recordBatchInstallationOrder(start, resolver.resolver());
+    }
+    return names;
+  }
+
+  /**
+   * Given many package names, returns a valid installation order for each of them, as
+   * getInstallationOrder(String) would, but from a single search shared by all of them: a
+   * package many of them depend on is searched once rather than once for each. The order of a
+   * package may differ from the one getInstallationOrder(String) returns, it is the part of the
+   * order for all the packages that the package needs.
+   * 
+   * @param pkgs the packages whose orders are wanted
+   * @return Map<String, List<String>> of the installation order of every package, in the order
+   *         the packages were given
+   * @throws CycleException if a cycle is reachable from any of the packages
+   * @throws PackageNotFoundException if any of the packages passed does not exist in the
+   *         dependency graph.
+   */
+  public Map<String, List<String>> getInstallationOrders(Collection<String> pkgs)
+      throws CycleException, PackageNotFoundException {
+    PackageManagerMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    IndexedGraph view = queryGraph();
+    int[] ids = idsOf(view, pkgs);
+    BatchOrderResolver resolver = new BatchOrderResolver(view);
+    int[][] orders = resolver.ordersOf(ids);
+    Map<String, List<String>> byName = new LinkedHashMap<String, List<String>>();
+    for (int t = 0; t < ids.length; t++) {
+      byName.put(view.nameOf(ids[t]), namesOf(view, orders[t]));
+    }
+    if (recorder != null) {
+      recorder.recordBatchInstallationOrder(start, resolver.resolver());
+    }
+    return byName;
+  }
+
+  /**
+   * Helper method that looks up the ids of packages, leaving out repeated ones
+   */
+  private int[] idsOf(IndexedGraph view, Collection<String> pkgs)
+      throws PackageNotFoundException {
+    Set<String> distinct = new LinkedHashSet<String>(pkgs);
+    int[] ids = new int[distinct.size()];
+    int t = 0;
+    for (String pkg : distinct) {
+      ids[t] = view.idOf(pkg);
+      if (ids[t++] < 0) {
+        throw new PackageNotFoundException();
       }
-      order.add(pkg);
     }
-    return order;
+    return ids;
   }
 
 
@@ -193,34 +1040,66 @@ public class PackageManager {
    */
   public List<String> toInstall(String newPkg, String installedPkg)
       throws CycleException, PackageNotFoundException {
-    // first, we need to check if the package already exists in the graph
-    // If the package does not exist in the dependency graph, then we need to throw
+    PackageManagerMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    IndexedGraph view = queryGraph();
+    // first, we need to check if both packages exist in the graph
+    // If a package does not exist in the dependency graph, then we need to throw
     // PackageNotFoundException
-    if (!(getAllPackages().contains(newPkg) || !getAllPackages().contains(installedPkg))) {
+    int newId = view.idOf(newPkg);
+    int installedId = view.idOf(installedPkg);
+    if (newId < 0 || installedId < 0) {
       throw new PackageNotFoundException();
     }
-    List<String> current;
-    List<String> alreadyInstalled;
-    // we need to get installation order of the new package 
-    // as well as the order of the installed package 
-    try {
-      current = getInstallationOrder(newPkg);
-      alreadyInstalled = this.getInstallationOrder(installedPkg);
-      // we need to iterate and store the current package 
-      String currentPkg;
-      for (int i = 0; i < current.size(); i++) {
-        currentPkg = current.get(i);
-        // if the alreadInsteall list contains the current package
-        if (alreadyInstalled.contains(currentPkg)) {
-          // then we need to remove that package 
-          current.remove(i);
-          i--;
-        }
+    // resolving the installed package first marks its whole closure as done,
+    // so resolving the new package afterwards only returns what is missing
+    DependencyResolver resolver = new DependencyResolver(view);
+    resolver.resolve(installedId);
+    List<String> names = namesOf(view, resolver.resolve(newId));
+    if (recorder != null) {
+      recorder.recordToInstall(start, resolver);
+    }
+    return names;
+  }
+
+  /**
+   * Given a package to be installed and the set of packages already installed, return a List of the
+   * packages that need to be newly installed, in installation order.
+   * 
+   * The dependencies of the new package are searched once, and the search stops at every package
+   * that is already installed, so the cost only depends on the packages that are missing. The
+   * installed set is taken as complete: the dependencies of an installed package are not checked.
+   * 
+   * @param newPkg the package to install
+   * @param installedPkgs the packages already installed
+   * @return List<String>, packages that need to be newly installed, empty if newPkg is installed
+   * 
+   * @throws CycleException if you encounter a cycle among the packages that need to be installed
+   * @throws PackageNotFoundException if any of the packages passed do not exist in the dependency
+   *         graph.
+   */
+  public List<String> toInstall(String newPkg, Set<String> installedPkgs)
+      throws CycleException, PackageNotFoundException {
+    PackageManagerMetrics recorder = metrics;
+    long start = recorder == null ? 0 : System.nanoTime();
+    IndexedGraph view = queryGraph();
+    int newId = view.idOf(newPkg);
+    if (newId < 0) {
+      throw new PackageNotFoundException();
+    }
+    DependencyResolver resolver = new DependencyResolver(view);
+    for (String installed : installedPkgs) {
+      int installedId = view.idOf(installed);
+      if (installedId < 0) {
+        throw new PackageNotFoundException();
       }
-    } catch (CycleException e) {
-      throw new CycleException();
+      resolver.markInstalled(installedId);
     }
-    return current;
+    List<String> names = namesOf(view, resolver.resolve(newId));
+    if (recorder != null) {
+      recorder.recordToInstall(start, resolver);
+    }
+    return names;
   }
 
   /**
@@ -231,40 +1110,150 @@ public class PackageManager {
    * returns a valid installation order that will not violate any dependencies
    * 
    * @return List<String>, order in which all the packages have to be installed
-   * @throws CycleException if you encounter a cycle in the graph
+   * @throws CycleException if you encounter a cycle in the graph, getBlockedPackages of the
+   *         exception lists every package that could not be ordered
    * @throws PackageNotFoundException
    */
   public List<String> getInstallationOrderForAllPackages()
       throws CycleException, PackageNotFoundException {
 
-    List<String> order = null;
-    List<String> orderAfterIteration = null;
-
-    Iterator<String> packageItr = getAllPackages().iterator();
-    boolean iteration = false;
-    String toInstall;
-    String pkgNames;
-    try {
-      while (packageItr.hasNext()) {
-        pkgNames = packageItr.next();
-        order = this.getInstallationOrder(pkgNames);
-
-        if (!iteration) {
-          orderAfterIteration = order;
-          iteration = true;
-        } else {
-          for (int i = 0; i < order.size(); i++) {
-            toInstall = order.get(i);
-            if (!orderAfterIteration.contains(toInstall)) {
-              orderAfterIteration.add(toInstall);
-            }
-          }
+    IndexedGraph view = queryGraph();
+    if (dynamicOrder != null) {
+      // the order is already up to date
+      return namesOf(view, dynamicOrder.order());
+    }
+    // one pass of Kahn's algorithm over the whole graph, O(V + E)
+    int[] order = new TopologicalSorter(view).order();
+    return namesOf(view, order);
+  }
+
+  /**
+   * Returns every group of packages that depend on each other in a cycle, found in one pass over
+   * the whole graph. A package that depends on itself is a group of its own.
+   * 
+   * @return List<List<String>>, the packages of every cycle group, empty if the graph has no cycle
+   */
+  public List<List<String>> getDependencyCycles() {
+    IndexedGraph view = queryGraph();
+    StronglyConnectedComponents components = new StronglyConnectedComponents(view);
+    List<List<String>> cycles = new ArrayList<List<String>>();
+    for (int c = 0; c < components.count(); c++) {
+      if (components.isCyclic(c)) {
+        List<String> group = new ArrayList<String>(components.size(c));
+        for (int i = 0; i < components.size(c); i++) {
+          group.add(view.nameOf(components.memberAt(c, i)));
         }
+        cycles.add(group);
       }
-    } catch (CycleException e) {
-      throw new CycleException();
     }
-    return orderAfterIteration;
+    return cycles;
+  }
+
+  /**
+   * Helper method that translates vertex ids back to package names
+   *
+   * @param ids the ids of the packages
+   * @return List<String> with the name of every package, in the same order
+   */
+  private List<String> namesOf(IndexedGraph view, int[] ids) {
+    List<String> names = new ArrayList<String>(ids.length);
+    for (int id : ids) {
+      names.add(view.nameOf(id));
+    }
+    return names;
+  }
+
+  /**
+   * Given a package name, returns its installation order split into waves that can each be
+   * installed in parallel.
+   * 
+   * Every package of a wave only depends on packages of earlier waves, so the packages of one wave
+   * can be installed at the same time once all earlier waves are done. The first wave holds the
+   * packages without dependencies and the last wave holds only pkg.
+   * 
+   * @param pkg the package to install
+   * @return List<List<String>>, the waves in the order they have to be installed
+   * @throws CycleException if you encounter a cycle while finding the dependencies of pkg
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph.
+   */
+  public List<List<String>> getInstallationWaves(String pkg)
+      throws CycleException, PackageNotFoundException {
+    IndexedGraph view = queryGraph();
+    int id = view.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
+    }
+    int[] order = new DependencyResolver(view).resolve(id);
+    return wavesOf(view, TopologicalSorter.waves(view, order));
+  }
+
+  /**
+   * Returns a global installation plan of all the packages split into waves that can each be
+   * installed in parallel. Every package of a wave only depends on packages of earlier waves.
+   * 
+   * @return List<List<String>>, the waves in the order they have to be installed
+   * @throws CycleException if you encounter a cycle in the graph
+   */
+  public List<List<String>> getInstallationWavesForAllPackages() throws CycleException {
+    IndexedGraph view = queryGraph();
+    int[] order = new TopologicalSorter(view).order();
+    return wavesOf(view, TopologicalSorter.waves(view, order));
+  }
+
+  /**
+   * Installs a package and all of its dependencies by calling action for each of them on the given
+   * pool. A package is handed to the pool as soon as its last dependency has been installed, so
+   * independent packages are installed in parallel.
+   * 
+   * Any Executor works, for example a ForkJoinPool for work stealing or, on Java 21, a virtual
+   * thread per task executor. The pool is not shut down. After the first failed installation no
+   * new installation is started and the packages left are reported as skipped.
+   * 
+   * @param pkg the package to install
+   * @param action what to do to install one package
+   * @param pool the pool to run the installations on
+   * @return InstallReport with the installed packages, their timings and the first failure
+   * @throws CycleException if you encounter a cycle while finding the dependencies of pkg
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph.
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public InstallReport install(String pkg, InstallAction action, Executor pool)
+      throws CycleException, PackageNotFoundException, InterruptedException {
+    IndexedGraph view = queryGraph();
+    int id = view.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
+    }
+    int[] order = new DependencyResolver(view).resolve(id);
+    return new InstallExecutor(view, order, action, pool).run();
+  }
+
+  /**
+   * Installs every package in the dependency graph by calling action for each of them on the given
+   * pool, see install(String, InstallAction, Executor).
+   * 
+   * @param action what to do to install one package
+   * @param pool the pool to run the installations on
+   * @return InstallReport with the installed packages, their timings and the first failure
+   * @throws CycleException if you encounter a cycle in the graph
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public InstallReport installAll(InstallAction action, Executor pool)
+      throws CycleException, InterruptedException {
+    IndexedGraph view = queryGraph();
+    int[] order = new TopologicalSorter(view).order();
+    return new InstallExecutor(view, order, action, pool).run();
+  }
+
+  /**
+   * Helper method that translates waves of vertex ids back to package names
+   */
+  private List<List<String>> wavesOf(IndexedGraph view, int[][] waves) {
+    List<List<String>> names = new ArrayList<List<String>>(waves.length);
+    for (int[] wave : waves) {
+      names.add(namesOf(view, wave));
+    }
+    return names;
   }
 
   /**
@@ -277,44 +1266,257 @@ public class PackageManager {
    * Example: if A depends on B and C, and B depends on C, and C depends on D. Then, A has 3
    * dependencies - B,C and D.
    * 
+   * Every package is counted, so the answer is kept until the graph changes and given again
+   * without counting. Only the graph of a manager that is not thread-safe, and was neither frozen
+   * nor loaded from a snapshot, is counted on every call, since nothing tells when it changed.
+   * 
    * @return String, name of the package with most dependencies.
    * @throws CycleException if you encounter a cycle in the graph
    * @throws PackageNotFoundException
    */
   public String getPackageWithMaxDependencies() throws CycleException, PackageNotFoundException {
 
-    Iterator<String> vertexIterator = graph.getAllVertices().iterator();
-    String pkgNames;
-    List<String> current = null;
-    List<String> maxDependencies = null;
-    boolean iteration = false;
+    IndexedGraph view = queryGraph();
+    // a thread-safe graph hands out a new view on every change, a frozen one never changes
+    MaxAnswer cached = maxAnswer;
+    if (cached != null && cached.view == view) {
+      return cached.name;
+    }
+    // the counts of all the packages come out of one sweep over the condensed graph
+    StronglyConnectedComponents components = new StronglyConnectedComponents(view);
+    for (int c = 0; c < components.count(); c++) {
+      if (components.isCyclic(c)) {
+        throw new CycleException(components.cycleNames(c), Collections.<String>emptyList());
+      }
+    }
+    DependencyCounter counter = new DependencyCounter(components);
     String max = null;
-    while (vertexIterator.hasNext()) {
-      pkgNames = vertexIterator.next();
-      try {
-        current = this.getInstallationOrder(pkgNames);
-        if (!iteration) {
-          maxDependencies = current;
-          max = pkgNames;
-          iteration = true;
-        }
-      } catch (CycleException e) {
-        throw new CycleException();
-      } catch (PackageNotFoundException e) {
+    int maxDependencies = -1;
+    for (int id = 0; id < view.idBound(); id++) {
+      if (view.nameOf(id) != null && counter.countOf(id) > maxDependencies) {
+        maxDependencies = counter.countOf(id);
+        max = view.nameOf(id);
+      }
+    }
+    if (!(view instanceof Graph)) {
+      maxAnswer = new MaxAnswer(view, max);
+    }
+    return max;
+  }
 
+  /**
+   * Returns the number of distinct packages every package depends on, directly or not. A package
+   * on a cycle depends on every other package of the cycle but not on itself.
+   * 
+   * @return Map<String, Integer> from every package to its number of dependencies
+   */
+  public Map<String, Integer> getDependencyCounts() {
+    IndexedGraph view = queryGraph();
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    ReachabilityMatrix matrix = reachabilityOf(view);
+    if (matrix != null) {
+      // the closure is already there, every count is one pass over a row
+      for (int id = 0; id < view.idBound(); id++) {
+        if (view.nameOf(id) != null) {
+          counts.put(view.nameOf(id), matrix.countOf(id));
+        }
       }
+      return counts;
+    }
+    DependencyCounter counter = new DependencyCounter(new StronglyConnectedComponents(view));
+    for (int id = 0; id < view.idBound(); id++) {
+      if (view.nameOf(id) != null) {
+        counts.put(view.nameOf(id), counter.countOf(id));
+      }
+    }
+    return counts;
+  }
 
-      if (maxDependencies.size() < current.size()) {
-        maxDependencies = current;
-        max = pkgNames;
+  /**
+   * Returns true if pkg depends on dependency, directly or through other packages. A package
+   * depends on itself only if it is on a dependency cycle.
+   * 
+   * With the reachability matrix on, this is a single bit test, and with the reachability index
+   * on it is usually a few label comparisons. Otherwise the dependencies of pkg are searched until
+   * dependency is found.
+   * 
+   * @param pkg the package that may depend on the other one
+   * @param dependency the package that may be depended on
+   * @return true if dependency is in the dependency tree of pkg
+   * @throws PackageNotFoundException if any of the packages passed do not exist in the dependency
+   *         graph.
+   */
+  public boolean dependsOn(String pkg, String dependency) throws PackageNotFoundException {
+    IndexedGraph view = queryGraph();
+    int from = view.idOf(pkg);
+    int to = view.idOf(dependency);
+    if (from < 0 || to < 0) {
+      throw new PackageNotFoundException();
+    }
+    ReachabilityMatrix matrix = reachabilityOf(view);
+    if (matrix != null) {
+      return matrix.reaches(from, to);
+    }
+    if (reachabilityIndexOn) {
+      return reachabilityIndexOf(view).reaches(from, to);
+    }
+    return reaches(view, from, to);
+  }
+
+  /**
+   * Returns the packages that depend directly on a package, in the order the dependencies were
+   * added for a graph built by constructGraph.
+   * 
+   * @param pkg the package whose dependents are wanted
+   * @return List<String> of the packages that list pkg as a dependency
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph.
+   */
+  public List<String> getDependents(String pkg) throws PackageNotFoundException {
+    IndexedGraph view = queryGraph();
+    int id = view.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
+    }
+    List<String> dependents = new ArrayList<String>(view.inDegree(id));
+    for (int k = 0; k < view.inDegree(id); k++) {
+      dependents.add(view.nameOf(view.incomingAt(id, k)));
+    }
+    return dependents;
+  }
+
+  /**
+   * Returns every package that depends on a package directly or not, that is every package that
+   * may break when pkg changes. The packages are found with one breadth first search over the
+   * reverse index, so they come nearest first and the cost only depends on how many there are.
+   * Cycles are fine: pkg itself is in the result only if it is on a cycle.
+   * 
+   * @param pkg the package whose dependents are wanted
+   * @return List<String> of all the packages that depend on pkg, in breadth first order
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph.
+   */
+  public List<String> getTransitiveDependents(String pkg) throws PackageNotFoundException {
+    IndexedGraph view = queryGraph();
+    int id = view.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
+    }
+    boolean[] visited = new boolean[view.idBound()];
+    // pkg itself can be queued twice, once as the start and once more if it is on a cycle
+    int[] queue = new int[view.idBound() + 1];
+    int tail = 0;
+    queue[tail++] = id;
+    List<String> dependents = new ArrayList<String>();
+    for (int head = 0; head < tail; head++) {
+      int v = queue[head];
+      for (int k = 0; k < view.inDegree(v); k++) {
+        int w = view.incomingAt(v, k);
+        if (!visited[w]) {
+          visited[w] = true;
+          queue[tail++] = w;
+          dependents.add(view.nameOf(w));
+        }
       }
     }
+    return dependents;
+  }
 
-    return max;
+  /**
+   * Picks one version of every package needed to install some packages, so that every package
+   * gets a version accepted by the ranges of all the packages depending on it. Newer versions are
+   * preferred: the newest version of every package is tried first, and an older one only where
+   * the newer ones conflict.
+   * 
+   * Versions come from the "version" of the packages in the manifests, and the versions a
+   * dependency accepts from its range, as in "B@^1.2". A package the manifests gave no version is
+   * taken as version 0.0.0 depending on any version of its dependencies. See VersionRange for the
+   * range syntax.
+   * 
+   * When the newest versions conflict, the search goes back to an older version of a package
+   * that caused the conflict. Every conflict it meets is remembered, so a combination of versions
+   * that failed once is never tried again during the resolution, and which versions of a package
+   * a range accepts is computed once and kept with the manifest.
+   * 
+   * @param requirements the packages to install, each with the range of versions wanted, "" or
+   *        "*" for any version
+   * @return Map<String, Version> of every package needed and the version picked, by name
+   * @throws VersionConflictException if no set of versions meets all the ranges, naming a package
+   *         whose ranges could not be met
+   * @throws PackageNotFoundException if a package asked for is not in any manifest
+   * @throws IllegalArgumentException if a range cannot be read
+   */
+  public Map<String, Version> resolveVersions(Map<String, String> requirements)
+      throws VersionConflictException, PackageNotFoundException {
+    return new VersionResolver(registry, queryGraph()).resolve(requirements);
   }
 
-  public static void main(String[] args) {
-    System.out.println("PackageManager.main()");
+  /**
+   * Loads a manifest once and answers queries on it over a local socket until the process is
+   * stopped, see PackageManagerServer for the protocol.
+   * 
+   * Usage: java PackageManager manifest.json [--port N | --socket PATH] [--threads N] [--watch]
+   * 
+   * The server listens on the loopback interface, on port 7400 unless told otherwise, or on a Unix
+   * domain socket. The queries run on a pool with a thread per processor, or with --threads on a
+   * pool of that many threads, where --threads 0 runs them on the selector thread. With --watch the
+   * graph is reloaded whenever the manifest changes. Without a manifest the usage is printed.
+   * 
+   * @param args the manifest and options
+   * @throws IOException if the manifest cannot be read or the socket cannot be bound
+   * @throws ParseException if the manifest cannot be parsed
+   * @throws InterruptedException never, the watcher is only started once
+   */
+  public static void main(String[] args) throws IOException, ParseException, InterruptedException {
+    if (args.length == 0) {
+      System.out.println("usage: java PackageManager manifest.json [--port N | --socket PATH]"
+          + " [--threads N] [--watch]");
+      return;
+    }
+    SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+    int threads = -1;
+    boolean watch = false;
+    for (int i = 1; i < args.length; i++) {
+      switch (args[i]) {
+        case "--port":
+          address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+              Integer.parseInt(args[++i]));
+          break;
+        case "--socket":
+          address = UnixDomainSocketAddress.of(args[++i]);
+          break;
+        case "--threads":
+          threads = Integer.parseInt(args[++i]);
+          break;
+        case "--watch":
+          watch = true;
+          break;
+        default:
+          throw new IllegalArgumentException("unknown option " + args[i]);
+      }
+    }
+    PackageManager manager = new PackageManager(true);
+    manager.constructGraph(args[0]);
+    if (watch) {
+      manager.watchManifest(args[0], null);
+    }
+    // null leaves the pool to the server
+    Executor pool = threads == 0 ? Runnable::run : null;
+    if (threads > 0) {
+      pool = Executors.newFixedThreadPool(threads, task -> {
+        Thread thread = new Thread(task, "package-manager-query");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    PackageManagerServer server = new PackageManagerServer(manager, address, pool);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        server.close();
+      } catch (IOException e) {
+        // the process is going away anyway
+      }
+    }));
+    System.out.println("serving " + manager.getAllPackages().size() + " packages on "
+        + server.getAddress());
   }
 
 }
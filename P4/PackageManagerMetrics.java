@@ -0,0 +1,296 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Filename: PackageManagerMetrics.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Collects the metrics of a PackageManager while they are on, and serves them to JMX.
+ *
+ * A query records its latency and how many packages and dependencies it searched with a handful
+ * of uncontended adds, so queries from many threads do not slow each other down. While metrics
+ * are off the manager has no PackageManagerMetrics at all, and the only cost left on a query is
+ * checking a field for null.
+ */
+class PackageManagerMetrics implements PackageManagerMetricsMBean {
+
+  /**
+   * helper class that holds the counts of one kind of query
+   */
+  private static class Operation {
+    final LatencyHistogram latency = new LatencyHistogram();
+    final LongAdder visitedVertices = new LongAdder();
+    final LongAdder visitedEdges = new LongAdder();
+
+    void record(long startNanos, DependencyResolver resolver) {
+      latency.record(System.nanoTime() - startNanos);
+      // a query answered from the cache searches nothing
+      if (resolver != null) {
+        visitedVertices.add(resolver.getVisitedVertexCount());
+        visitedEdges.add(resolver.getVisitedEdgeCount());
+      }
+    }
+
+    double perCall(LongAdder total) {
+      long calls = latency.count();
+      return calls == 0 ? 0 : (double) total.sum() / calls;
+    }
+
+    OperationStats stats() {
+      return new OperationStats(latency.count(), visitedVertices.sum(), visitedEdges.sum(),
+          latency.mean(), latency.percentile(0.5), latency.percentile(0.9),
+          latency.percentile(0.99), latency.max());
+    }
+  }
+
+  // where the size of the graph and the cache statistics are read from
+  private final Supplier<IndexedGraph> graph;
+  private final Supplier<CacheStats> orderCache;
+
+  // replaced by reset
+  private volatile Operation installationOrder = new Operation();
+  private volatile Operation batchInstallationOrder = new Operation();
+  private volatile Operation toInstall = new Operation();
+
+  // timings of constructGraph, only written under the lock of this object
+  private long manifestsRead;
+  private long parseNanos;
+  private long buildNanos;
+  private long lastParseNanos;
+  private long lastBuildNanos;
+
+  /**
+   * Creates metrics with every count at 0.
+   *
+   * @param graph      supplies the current graph of the manager
+   * @param orderCache supplies the statistics of the order cache, or null if caching is off
+   */
+  PackageManagerMetrics(Supplier<IndexedGraph> graph, Supplier<CacheStats> orderCache) {
+    this.graph = graph;
+    this.orderCache = orderCache;
+  }
+
+  /**
+   * Records the reading of one manifest by constructGraph.
+   *
+   * @param parseNanos time spent parsing json
+   * @param buildNanos time spent adding to the graph
+   */
+  synchronized void recordConstructGraph(long parseNanos, long buildNanos) {
+    manifestsRead++;
+    this.parseNanos += parseNanos;
+    this.buildNanos += buildNanos;
+    lastParseNanos = parseNanos;
+    lastBuildNanos = buildNanos;
+  }
+
+  /**
+   * Records a completed getInstallationOrder.
+   *
+   * @param startNanos System.nanoTime() when the call started
+   * @param resolver   the resolver that searched the graph, null if the order came from the cache
+   */
+  void recordInstallationOrder(long startNanos, DependencyResolver resolver) {
+    installationOrder.record(startNanos, resolver);
+  }
+
+  /**
+   * Records a completed getInstallationOrder of many packages or getInstallationOrders. A batch is
+   * kept apart from single orders, since it takes as long as many of them.
+   *
+   * @param startNanos System.nanoTime() when the call started
+   * @param resolver   the resolver that searched the graph
+   */
+  void recordBatchInstallationOrder(long startNanos, DependencyResolver resolver) {
+    batchInstallationOrder.record(startNanos, resolver);
+  }
+
+  /**
+   * Records a completed toInstall.
+   *
+   * @param startNanos System.nanoTime() when the call started
+   * @param resolver   the resolver that searched the graph
+   */
+  void recordToInstall(long startNanos, DependencyResolver resolver) {
+    toInstall.record(startNanos, resolver);
+  }
+
+  /**
+   * Returns the current metrics.
+   */
+  synchronized MetricsSnapshot snapshot() {
+    IndexedGraph current = graph.get();
+    return new MetricsSnapshot(current.order(), current.size(), manifestsRead, parseNanos,
+        buildNanos, lastParseNanos, lastBuildNanos, installationOrder.stats(),
+        batchInstallationOrder.stats(), toInstall.stats(), orderCache.get());
+  }
+
+  @Override
+  public synchronized void reset() {
+    installationOrder = new Operation();
+    batchInstallationOrder = new Operation();
+    toInstall = new Operation();
+    manifestsRead = 0;
+    parseNanos = 0;
+    buildNanos = 0;
+    lastParseNanos = 0;
+    lastBuildNanos = 0;
+  }
+
+  @Override
+  public int getVertexCount() {
+    return graph.get().order();
+  }
+
+  @Override
+  public int getEdgeCount() {
+    return graph.get().size();
+  }
+
+  @Override
+  public synchronized long getManifestsRead() {
+    return manifestsRead;
+  }
+
+  @Override
+  public synchronized long getParseNanos() {
+    return parseNanos;
+  }
+
+  @Override
+  public synchronized long getBuildNanos() {
+    return buildNanos;
+  }
+
+  @Override
+  public synchronized long getLastParseNanos() {
+    return lastParseNanos;
+  }
+
+  @Override
+  public synchronized long getLastBuildNanos() {
+    return lastBuildNanos;
+  }
+
+  @Override
+  public long getInstallationOrderCalls() {
+    return installationOrder.latency.count();
+  }
+
+  @Override
+  public double getInstallationOrderMeanNanos() {
+    return installationOrder.latency.mean();
+  }
+
+  @Override
+  public long getInstallationOrderP50Nanos() {
+    return installationOrder.latency.percentile(0.5);
+  }
+
+  @Override
+  public long getInstallationOrderP99Nanos() {
+    return installationOrder.latency.percentile(0.99);
+  }
+
+  @Override
+  public long getInstallationOrderMaxNanos() {
+    return installationOrder.latency.max();
+  }
+
+  @Override
+  public double getInstallationOrderMeanVisitedVertices() {
+    return installationOrder.perCall(installationOrder.visitedVertices);
+  }
+
+  @Override
+  public double getInstallationOrderMeanVisitedEdges() {
+    return installationOrder.perCall(installationOrder.visitedEdges);
+  }
+
+  @Override
+  public long getBatchInstallationOrderCalls() {
+    return batchInstallationOrder.latency.count();
+  }
+
+  @Override
+  public double getBatchInstallationOrderMeanNanos() {
+    return batchInstallationOrder.latency.mean();
+  }
+
+  @Override
+  public long getBatchInstallationOrderP50Nanos() {
+    return batchInstallationOrder.latency.percentile(0.5);
+  }
+
+  @Override
+  public long getBatchInstallationOrderP99Nanos() {
+    return batchInstallationOrder.latency.percentile(0.99);
+  }
+
+  @Override
+  public long getBatchInstallationOrderMaxNanos() {
+    return batchInstallationOrder.latency.max();
+  }
+
+  @Override
+  public double getBatchInstallationOrderMeanVisitedVertices() {
+    return batchInstallationOrder.perCall(batchInstallationOrder.visitedVertices);
+  }
+
+  @Override
+  public double getBatchInstallationOrderMeanVisitedEdges() {
+    return batchInstallationOrder.perCall(batchInstallationOrder.visitedEdges);
+  }
+
+  @Override
+  public long getToInstallCalls() {
+    return toInstall.latency.count();
+  }
+
+  @Override
+  public double getToInstallMeanNanos() {
+    return toInstall.latency.mean();
+  }
+
+  @Override
+  public long getToInstallP50Nanos() {
+    return toInstall.latency.percentile(0.5);
+  }
+
+  @Override
+  public long getToInstallP99Nanos() {
+    return toInstall.latency.percentile(0.99);
+  }
+
+  @Override
+  public long getToInstallMaxNanos() {
+    return toInstall.latency.max();
+  }
+
+  @Override
+  public double getToInstallMeanVisitedVertices() {
+    return toInstall.perCall(toInstall.visitedVertices);
+  }
+
+  @Override
+  public double getToInstallMeanVisitedEdges() {
+    return toInstall.perCall(toInstall.visitedEdges);
+  }
+
+  @Override
+  public long getOrderCacheHits() {
+    CacheStats stats = orderCache.get();
+    return stats == null ? 0 : stats.getHits();
+  }
+
+  @Override
+  public long getOrderCacheMisses() {
+    CacheStats stats = orderCache.get();
+    return stats == null ? 0 : stats.getMisses();
+  }
+
+  @Override
+  public double getOrderCacheHitRate() {
+    CacheStats stats = orderCache.get();
+    return stats == null ? 0 : stats.getHitRate();
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Filename: PackageManagerMetricsMBean.java Project: p4 Authors: Kunlun Wang Email:
+ * kwang358@wisc.edu
+ *
+ * Management interface of the metrics of a PackageManager, registered with JMX by
+ * PackageManager.registerMetricsMBean. Every attribute is read from a fresh MetricsSnapshot, so
+ * jconsole or any other JMX client sees live values. Times are in nanoseconds.
+ */
+public interface PackageManagerMetricsMBean {
+
+  public int getVertexCount();
+
+  public int getEdgeCount();
+
+  public long getManifestsRead();
+
+  public long getParseNanos();
+
+  public long getBuildNanos();
+
+  public long getLastParseNanos();
+
+  public long getLastBuildNanos();
+
+  public long getInstallationOrderCalls();
+
+  public double getInstallationOrderMeanNanos();
+
+  public long getInstallationOrderP50Nanos();
+
+  public long getInstallationOrderP99Nanos();
+
+  public long getInstallationOrderMaxNanos();
+
+  public double getInstallationOrderMeanVisitedVertices();
+
+  public double getInstallationOrderMeanVisitedEdges();
+
+  public long getBatchInstallationOrderCalls();
+
+  public double getBatchInstallationOrderMeanNanos();
+
+  public long getBatchInstallationOrderP50Nanos();
+
+  public long getBatchInstallationOrderP99Nanos();
+
+  public long getBatchInstallationOrderMaxNanos();
+
+  public double getBatchInstallationOrderMeanVisitedVertices();
+
+  public double getBatchInstallationOrderMeanVisitedEdges();
+
+  public long getToInstallCalls();
+
+  public double getToInstallMeanNanos();
+
+  public long getToInstallP50Nanos();
+
+  public long getToInstallP99Nanos();
+
+  public long getToInstallMaxNanos();
+
+  public double getToInstallMeanVisitedVertices();
+
+  public double getToInstallMeanVisitedEdges();
+
+  /**
+   * Returns the hits of the installation order cache, 0 if caching is off.
+   */
+  public long getOrderCacheHits();
+
+  /**
+   * Returns the misses of the installation order cache, 0 if caching is off.
+   */
+  public long getOrderCacheMisses();
+
+  /**
+   * Returns the hit rate of the installation order cache, 0 if caching is off.
+   */
+  public double getOrderCacheHitRate();
+
+  /**
+   * Sets every count and timing back to 0. The graph and the cache are left alone.
+   */
+  public void reset();
+}
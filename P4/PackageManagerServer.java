@@ -0,0 +1,483 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Filename: PackageManagerServer.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Answers queries on a PackageManager over a local socket, so a tool can ask many questions of a
+ * graph that was loaded once instead of starting a JVM and parsing the manifest every time.
+ *
+ * The protocol is one line of text per request and one line per response, in UTF-8. A request is
+ * a command followed by package names, separated by spaces:
+ *
+ * - PING: answers OK;
+ * - ORDER pkg [pkg ..]: the installation order of one package, or of several together;
+ * - TOINSTALL pkg [installed ..]: what installing pkg takes given the installed packages;
+ * - DEPENDENTS pkg: the packages that depend directly on pkg;
+ * - MAX: the package with the most dependencies;
+ * - QUIT: answers OK and closes the connection.
+ *
+ * A response is "OK" followed by the package names, "ERR NOT_FOUND", "ERR CYCLE" followed by the
+ * packages of the cycle, "ERR BAD_REQUEST" followed by what was wrong with it, or "ERR INTERNAL"
+ * followed by what went wrong in the server. A client may send many requests without waiting, the
+ * responses come back in the same order.
+ *
+ * One thread runs a Selector that accepts connections, reads requests and writes responses for
+ * every client without blocking. The queries themselves run on an executor, one request of a
+ * connection at a time so the responses stay in order, while the requests of different clients
+ * run side by side. Unless told otherwise the server has a pool of its own with a thread per
+ * processor, so a slow query such as MAX on a large graph only holds up the client that asked.
+ * Given Runnable::run, the queries run on the selector thread, which is the fastest when every
+ * query takes microseconds but stalls every client while one does not. A client that sends
+ * faster than it reads is not read from until its responses drain.
+ */
+public class PackageManagerServer implements Closeable {
+
+  // size of the read buffer of a connection, which grows up to MAX_LINE for a long request
+  private static final int BUFFER_SIZE = 1 << 12;
+  // longest request accepted
+  private static final int MAX_LINE = 1 << 20;
+  // responses waiting for a connection before it is no longer read from
+  private static final int HIGH_WATER = 1 << 22;
+
+  private final PackageManager manager;
+  private final Executor pool;
+  // the pool the server made for itself, shut down on close, null if it was given one
+  private final ExecutorService ownPool;
+  private final SocketAddress address;
+  private final Selector selector;
+  private final ServerSocketChannel server;
+  private final Thread thread;
+  // connections whose interest has to be updated by the selector thread
+  private final Queue<Connection> changed = new ConcurrentLinkedQueue<Connection>();
+  private volatile boolean running = true;
+
+  /**
+   * Starts serving queries on a pool of the server's own.
+   *
+   * @param manager the manager to query, built before it is served
+   * @param address a loopback InetSocketAddress, port 0 for any free port, or a
+   *                UnixDomainSocketAddress of a file that does not exist yet
+   * @throws IOException if the address cannot be bound
+   */
+  public PackageManagerServer(PackageManager manager, SocketAddress address) throws IOException {
+    this(manager, address, null);
+  }
+
+  /**
+   * Starts serving queries on an executor. The manager must be thread-safe if it is changed while
+   * it is served, see PackageManager(boolean).
+   *
+   * @param manager the manager to query, built before it is served
+   * @param address a loopback InetSocketAddress, port 0 for any free port, or a
+   *                UnixDomainSocketAddress of a file that does not exist yet
+   * @param pool    the executor the queries run on, Runnable::run to run them on the selector
+   *                thread, or null for a pool of the server's own with a thread per processor
+   * @throws IOException if the address cannot be bound
+   */
+  public PackageManagerServer(PackageManager manager, SocketAddress address, Executor pool)
+      throws IOException {
+    this.manager = manager;
+    this.selector = Selector.open();
+    this.server = address instanceof UnixDomainSocketAddress
+        ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+        : ServerSocketChannel.open();
+    try {
+      server.bind(address);
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      server.close();
+      selector.close();
+      throw e;
+    }
+    this.address = server.getLocalAddress();
+    this.ownPool = pool != null ? null
+        : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+          Thread worker = new Thread(task, "package-manager-query");
+          worker.setDaemon(true);
+          return worker;
+        });
+    this.pool = pool != null ? pool : ownPool;
+    this.thread = new Thread(this::run, "package-manager-server");
+    thread.start();
+  }
+
+  /**
+   * Returns the address the server listens on, with the port that was picked for port 0.
+   */
+  public SocketAddress getAddress() {
+    return address;
+  }
+
+  /**
+   * Stops serving: closes every connection and the socket, and removes the file of a Unix domain
+   * socket. Queries still running finish without being answered.
+   *
+   * @throws IOException if the socket file cannot be removed
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    selector.wakeup();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (ownPool != null) {
+      ownPool.shutdown();
+    }
+    if (address instanceof UnixDomainSocketAddress) {
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+    }
+  }
+
+  /**
+   * helper method that runs the selector until close is called
+   */
+  private void run() {
+    try {
+      while (running) {
+        selector.select();
+        Connection connection;
+        while ((connection = changed.poll()) != null) {
+          connection.updateInterest();
+        }
+        for (SelectionKey key : selector.selectedKeys()) {
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          connection = (Connection) key.attachment();
+          if (key.isReadable()) {
+            connection.read();
+          }
+          if (key.isValid() && key.isWritable()) {
+            connection.write();
+          }
+        }
+        selector.selectedKeys().clear();
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      // only the selector itself breaking down gets here, nothing can be served any more
+      e.printStackTrace();
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        closeQuietly(key.channel());
+      }
+      closeQuietly(selector);
+    }
+  }
+
+  /**
+   * helper method that accepts a waiting client, if there still is one. A client that cannot be
+   * taken on is dropped, the other clients are served on
+   */
+  private void accept() {
+    SocketChannel channel;
+    try {
+      channel = server.accept();
+    } catch (IOException e) {
+      // for example out of file descriptors, the client stays queued for a later try
+      return;
+    }
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.configureBlocking(false);
+      Connection connection = new Connection(channel);
+      connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    } catch (IOException e) {
+      closeQuietly(channel);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // nothing left to do with it
+    }
+  }
+
+  /**
+   * helper class that holds the state of one client. The selector thread reads and writes it,
+   * and the task answering its requests runs on the executor, so everything both of them touch is
+   * guarded by the connection.
+   */
+  private final class Connection implements Runnable {
+    final SocketChannel channel;
+    SelectionKey key;
+    // bytes read and not yet split into requests, only used by the selector thread
+    ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    // true once the client stopped sending, true once what it sends is thrown away, and true
+    // once the server stopped sending, only used by the selector thread
+    boolean ended;
+    boolean discarding;
+    boolean shut;
+
+    // requests waiting to be answered
+    final Queue<String> requests = new ArrayDeque<String>();
+    // responses waiting to be written, in write mode
+    ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    // true while a task answers the requests
+    boolean busy;
+    // true once the connection is to be closed after the responses are written
+    boolean closing;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Reads what the client sent and hands the whole lines to the task answering them.
+     */
+    void read() {
+      int n;
+      try {
+        n = channel.read(in);
+      } catch (IOException e) {
+        close();
+        return;
+      }
+      if (n < 0) {
+        ended = true;
+      }
+      boolean start = false;
+      synchronized (this) {
+        if (discarding || closing) {
+          in.clear();
+          updateInterest();
+          return;
+        }
+        in.flip();
+        int lineStart = 0;
+        for (int i = 0; i < in.limit(); i++) {
+          if (in.get(i) == '\n') {
+            int end = i > lineStart && in.get(i - 1) == '\r' ? i - 1 : i;
+            requests.add(new String(in.array(), lineStart, end - lineStart,
+                StandardCharsets.UTF_8));
+            lineStart = i + 1;
+          }
+        }
+        in.position(lineStart);
+        in.compact();
+        if (!in.hasRemaining()) {
+          if (in.capacity() < MAX_LINE) {
+            in = ByteBuffer.wrap(Arrays.copyOf(in.array(), in.capacity() * 2))
+                .position(in.position());
+          } else {
+            // a request that long is not one of ours, answered once the ones before it are, and
+            // everything after it is thrown away
+            requests.add("\n");
+            in.clear();
+            discarding = true;
+          }
+        }
+        if (!requests.isEmpty() && !busy) {
+          busy = true;
+          start = true;
+        }
+      }
+      if (start) {
+        pool.execute(this);
+      }
+      updateInterest();
+    }
+
+    /**
+     * Answers the waiting requests one after the other, then lets the selector thread write the
+     * responses.
+     */
+    @Override
+    public void run() {
+      while (true) {
+        String request;
+        synchronized (this) {
+          request = closing ? null : requests.poll();
+          if (request == null) {
+            requests.clear();
+            busy = false;
+            break;
+          }
+        }
+        String response = answer(request);
+        synchronized (this) {
+          append(response);
+          if (request.trim().equals("QUIT") || request.equals("\n")) {
+            closing = true;
+          }
+          // a long pipeline gets its responses written while the rest are answered
+          if (out.position() >= BUFFER_SIZE && !requests.isEmpty()) {
+            changed.add(this);
+            selector.wakeup();
+          }
+        }
+      }
+      changed.add(this);
+      selector.wakeup();
+    }
+
+    /**
+     * Writes as much of the responses as the socket takes.
+     */
+    void write() {
+      synchronized (this) {
+        out.flip();
+        try {
+          channel.write(out);
+        } catch (IOException e) {
+          close();
+          return;
+        } finally {
+          out.compact();
+        }
+      }
+      updateInterest();
+    }
+
+    /**
+     * Reads while the responses have not piled up, writes while there are any, and closes the
+     * connection once the client is done and every response is written. Called on the selector
+     * thread only.
+     *
+     * When the server is the one closing, after QUIT or a bad request, it stops sending and waits
+     * for the client to hang up, throwing away what it still sends. Closing right away while
+     * requests are still on their way would reset the connection, and the client could lose the
+     * last responses.
+     */
+    void updateInterest() {
+      if (!key.isValid()) {
+        return;
+      }
+      int ops = 0;
+      synchronized (this) {
+        if (out.position() == 0 && !busy && (closing || (ended && requests.isEmpty()))) {
+          if (ended) {
+            close();
+            return;
+          }
+          if (!shut) {
+            try {
+              channel.shutdownOutput();
+            } catch (IOException e) {
+              close();
+              return;
+            }
+            shut = true;
+          }
+        }
+        if (!ended && out.position() < HIGH_WATER) {
+          ops |= SelectionKey.OP_READ;
+        }
+        if (out.position() > 0) {
+          ops |= SelectionKey.OP_WRITE;
+        }
+      }
+      key.interestOps(ops);
+    }
+
+    /**
+     * helper method that adds a response line to the output, growing it if needed
+     */
+    private void append(String response) {
+      byte[] bytes = (response + "\n").getBytes(StandardCharsets.UTF_8);
+      if (out.remaining() < bytes.length) {
+        int capacity = Math.max(out.capacity() * 2, out.position() + bytes.length);
+        out = ByteBuffer.wrap(Arrays.copyOf(out.array(), capacity)).position(out.position());
+      }
+      out.put(bytes);
+    }
+
+    private void close() {
+      key.cancel();
+      closeQuietly(channel);
+    }
+  }
+
+  /**
+   * helper method that answers one request
+   */
+  private String answer(String request) {
+    if (request.equals("\n")) {
+      return "ERR BAD_REQUEST request longer than " + MAX_LINE + " bytes";
+    }
+    String[] words = request.trim().split("\\s+");
+    if (words[0].isEmpty()) {
+      return "ERR BAD_REQUEST empty request";
+    }
+    List<String> args = Arrays.asList(words).subList(1, words.length);
+    try {
+      switch (words[0]) {
+        case "PING":
+        case "QUIT":
+          return "OK";
+        case "ORDER":
+          if (args.isEmpty()) {
+            return "ERR BAD_REQUEST ORDER needs a package";
+          }
+          return line("OK", args.size() == 1 ? manager.getInstallationOrder(args.get(0))
+              : manager.getInstallationOrder(args));
+        case "TOINSTALL":
+          if (args.isEmpty()) {
+            return "ERR BAD_REQUEST TOINSTALL needs a package";
+          }
+          Set<String> installed = new HashSet<String>(args.subList(1, args.size()));
+          return line("OK", manager.toInstall(args.get(0), installed));
+        case "DEPENDENTS":
+          if (args.size() != 1) {
+            return "ERR BAD_REQUEST DEPENDENTS needs one package";
+          }
+          return line("OK", manager.getDependents(args.get(0)));
+        case "MAX":
+          return "OK " + manager.getPackageWithMaxDependencies();
+        default:
+          return "ERR BAD_REQUEST unknown command " + words[0];
+      }
+    } catch (PackageNotFoundException e) {
+      return "ERR NOT_FOUND";
+    } catch (CycleException e) {
+      return line("ERR CYCLE", e.getCycle());
+    } catch (RuntimeException e) {
+      // a failure of the server, not of the request, kept on the one line of the response
+      return "ERR INTERNAL " + e.toString().replaceAll("[\\r\\n]+", " ");
+    }
+  }
+
+  /**
+   * helper method that spells out a list of packages after the status
+   */
+  private static String line(String status, List<String> names) {
+    StringBuilder response = new StringBuilder(status);
+    for (String name : names) {
+      response.append(' ').append(name);
+    }
+    return response.toString();
+  }
+}
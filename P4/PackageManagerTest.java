@@ -2,10 +2,32 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.json.simple.parser.ParseException;
 import org.junit.jupiter.api.Test;
@@ -184,4 +206,1139 @@ class PackageManagerTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * checking that constructGraph handles "dependencies" listed before "name"
+     * and ignores unrelated entries of the manifest
+     */
+    @Test
+    void test8_ConstructGraph_dependenciesBeforeName() {
+        try {
+            Path manifest = Files.createTempFile("manifest", ".json");
+            Files.write(manifest, ("{\"version\": 2, \"packages\": ["
+                + "{\"dependencies\": [\"B\", \"C\"], \"name\": \"A\"},"
+                + "{\"name\": \"B\", \"meta\": {\"name\": \"X\"}, \"dependencies\": [\"C\"]}"
+                + "], \"extra\": [\"Y\"]}").getBytes(StandardCharsets.UTF_8));
+            PackageManager pm = new PackageManager();
+            pm.constructGraph(manifest.toString());
+            Files.delete(manifest);
+
+            List<String> actual_result = new ArrayList<String>();
+            actual_result.add("C");
+            actual_result.add("B");
+            actual_result.add("A");
+
+            assertEquals(new HashSet<String>(actual_result), pm.getAllPackages());
+            actual_result.remove("A");
+            assertEquals(actual_result, pm.getInstallationOrder("B"));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that a graph saved to a snapshot answers the same queries after it is loaded
+     * and that a snapshot is rejected for a different manifest
+     */
+    @Test
+    void test9_saveAndLoadSnapshot() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            Path snapshot = Files.createTempFile("valid", ".snapshot");
+            pm.saveSnapshot(snapshot.toString());
+
+            PackageManager loaded = new PackageManager();
+            loaded.loadSnapshot(snapshot.toString(), "valid.json");
+            assertEquals(pm.getAllPackages(), loaded.getAllPackages());
+            assertEquals(pm.getInstallationOrder("A"), loaded.getInstallationOrder("A"));
+            assertThrows(PackageNotFoundException.class, () -> loaded.getInstallationOrder("F"));
+
+            // a thread-safe manager writes the same snapshot from its copy of the graph
+            PackageManager threadSafe = new PackageManager(true);
+            threadSafe.constructGraph("valid.json");
+            threadSafe.saveSnapshot(snapshot.toString());
+            PackageManager reloaded = new PackageManager();
+            reloaded.loadSnapshot(snapshot.toString(), "valid.json");
+            assertEquals(pm.getAllPackages(), reloaded.getAllPackages());
+            assertEquals(pm.getInstallationOrder("A"), reloaded.getInstallationOrder("A"));
+
+            assertThrows(IOException.class,
+                () -> new PackageManager().loadSnapshot(snapshot.toString(), "shared_dependencies.json"));
+
+            // a graph changed through the API no longer matches its manifest
+            pm.addDependency("X", "Y");
+            pm.saveSnapshot(snapshot.toString());
+            assertThrows(IOException.class,
+                () -> new PackageManager().loadSnapshot(snapshot.toString(), "valid.json"));
+
+            // the snapshot is tied to the manifest as it was read, not as it is on disk later
+            Path manifest = Files.createTempFile("manifest", ".json");
+            writeManifest(manifest, 2, i -> i == 0 ? List.of("A", "B") : List.of("B"));
+            PackageManager edited = new PackageManager();
+            edited.constructGraph(manifest.toString());
+            writeManifest(manifest, 2, i -> i == 0 ? List.of("A") : List.of("B", "A"));
+            edited.saveSnapshot(snapshot.toString());
+            assertThrows(IOException.class,
+                () -> new PackageManager().loadSnapshot(snapshot.toString(), manifest.toString()));
+            Files.delete(manifest);
+            Files.delete(snapshot);
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that getInstallationOrderForAllPackages reports the packages blocked by a cycle
+     */
+    @Test
+    void test10_getInstallationOrderForAllPackages_cycle() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("cyclic.json");
+            CycleException e = assertThrows(CycleException.class,
+                () -> pm.getInstallationOrderForAllPackages());
+            assertEquals(List.of("A", "B"), e.getBlockedPackages());
+            assertEquals(List.of("A", "B"), e.getCycle());
+            assertEquals(List.of(List.of("A", "B")), pm.getDependencyCycles());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that shared dependencies are installed once, that long cycles are found
+     * and that very deep dependency chains do not overflow the stack
+     */
+    @Test
+    void test11_getInstallationOrder_sharedDeepAndCyclic() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("shared_dependencies.json");
+            assertEquals(List.of("D", "B", "C", "A"), pm.getInstallationOrder("A"));
+
+            List<List<String>> cycle =
+                List.of(List.of("x", "y"), List.of("y", "z"), List.of("z", "x"));
+            Path manifest = writeManifest(Files.createTempFile("deep", ".json"), 200003,
+                i -> i < 200000 ? List.of("p" + i, "p" + (i + 1)) : cycle.get(i - 200000));
+            PackageManager deep = new PackageManager();
+            deep.constructGraph(manifest.toString());
+            Files.delete(manifest);
+
+            List<String> order = deep.getInstallationOrder("p0");
+            assertEquals(200001, order.size());
+            assertEquals("p200000", order.get(0));
+            assertEquals("p0", order.get(200000));
+            CycleException e = assertThrows(CycleException.class,
+                () -> deep.getInstallationOrder("x"));
+            assertEquals(List.of("x", "y", "z"), e.getCycle());
+            assertEquals("dependency cycle x -> y -> z -> x", e.getMessage());
+            assertEquals(List.of(List.of("x", "y", "z")), deep.getDependencyCycles());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking dependency counts against installation order sizes, also when
+     * the counter has to work in several bitset batches
+     */
+    @Test
+    void test12_getDependencyCounts() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            Map<String, Integer> counts = pm.getDependencyCounts();
+            assertEquals(3, counts.get("A"));
+            assertEquals(2, counts.get("B"));
+            assertEquals(0, counts.get("C"));
+
+            // a tiny word budget forces one 64 column batch at a time
+            Graph graph = new Graph();
+            for (int i = 0; i < 3000; i++) {
+                graph.addVertex("p" + i);
+                if (i >= 10) {
+                    graph.addEdge("p" + i, "p" + (i / 2));
+                    graph.addEdge("p" + i, "p" + (i - 7));
+                }
+            }
+            DependencyCounter counter =
+                new DependencyCounter(new StronglyConnectedComponents(graph), 1);
+            for (int i = 0; i < 3000; i += 37) {
+                int id = graph.idOf("p" + i);
+                assertEquals(new DependencyResolver(graph).resolve(id).length - 1, counter.countOf(id));
+            }
+            PackageManager big = new PackageManager();
+            Path manifest = writeManifest(Files.createTempFile("layers", ".json"), 3000,
+                i -> i >= 10 ? List.of("p" + i, "p" + (i / 2), "p" + (i - 7)) : List.of("p" + i));
+            big.constructGraph(manifest.toString());
+            Files.delete(manifest);
+            assertEquals("p2999", big.getPackageWithMaxDependencies());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that installation waves only depend on earlier waves
+     */
+    @Test
+    void test13_getInstallationWaves() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            assertEquals(List.of(List.of("C", "D"), List.of("B"), List.of("A")),
+                pm.getInstallationWaves("A"));
+            assertEquals(List.of(List.of("C", "D"), List.of("B"), List.of("A", "E")),
+                pm.getInstallationWavesForAllPackages());
+
+            PackageManager shared = new PackageManager();
+            shared.constructGraph("shared_dependencies.json");
+            assertEquals(List.of(List.of("D"), List.of("B", "C"), List.of("A")),
+                shared.getInstallationWaves("A"));
+
+            PackageManager cyclic = new PackageManager();
+            cyclic.constructGraph("cyclic.json");
+            assertThrows(CycleException.class, () -> cyclic.getInstallationWaves("A"));
+            assertThrows(CycleException.class, () -> cyclic.getInstallationWavesForAllPackages());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that the parallel installer respects dependencies and stops after a failure
+     */
+    @Test
+    void test14_install() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            Set<String> done = ConcurrentHashMap.newKeySet();
+            InstallReport report = pm.installAll(pkg -> {
+                for (String dependency : pm.getInstallationOrder(pkg)) {
+                    if (!dependency.equals(pkg) && !done.contains(dependency)) {
+                        throw new IllegalStateException(pkg + " before " + dependency);
+                    }
+                }
+                done.add(pkg);
+            }, pool);
+            assertTrue(report.isSuccessful(), report.toString());
+            assertEquals(5, report.getInstalled().size());
+
+            InstallReport failed = pm.install("A", pkg -> {
+                if (pkg.equals("B")) {
+                    throw new Exception("B is broken");
+                }
+            }, pool);
+            assertFalse(failed.isSuccessful());
+            assertEquals("B", failed.getFailedPackage());
+            assertEquals(List.of("A"), failed.getSkipped());
+            assertEquals(Set.of("C", "D"), new HashSet<String>(failed.getInstalled()));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * checking toInstall against a set of installed packages
+     */
+    @Test
+    void test15_toInstall_installedSet() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("shared_dependencies.json");
+            assertEquals(List.of("C", "A"), pm.toInstall("A", Set.of("B", "D")));
+            assertEquals(List.of("A"), pm.toInstall("A", Set.of("B", "C")));
+            assertEquals(List.of(), pm.toInstall("A", Set.of("A")));
+            assertEquals(List.of("D", "B", "C", "A"), pm.toInstall("A", Set.of()));
+            assertThrows(PackageNotFoundException.class, () -> pm.toInstall("A", Set.of("X")));
+            assertThrows(PackageNotFoundException.class, () -> pm.toInstall("A", "X"));
+
+            PackageManager cyclic = new PackageManager();
+            cyclic.constructGraph("cyclic.json");
+            assertEquals(List.of(), cyclic.toInstall("A", Set.of("A")));
+            assertThrows(CycleException.class, () -> cyclic.toInstall("A", Set.of()));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that cached installation orders are dropped only when the graph
+     * changes under them
+     */
+    @Test
+    void test16_orderCache() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.enableOrderCache(100);
+            pm.constructGraph("valid.json");
+            assertEquals(List.of("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+            assertEquals(List.of("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+            assertEquals(List.of("C", "D", "B", "E"), pm.getInstallationOrder("E"));
+            CacheStats stats = pm.getOrderCacheStats();
+            assertEquals(1, stats.getHits());
+            assertEquals(2, stats.getMisses());
+            assertEquals(8, stats.getWeight());
+
+            // a new edge out of E only touches the cached order of E
+            Path manifest = Files.createTempFile("update", ".json");
+            Files.write(manifest, "{\"packages\": [{\"name\": \"E\", \"dependencies\": [\"F\"]}]}"
+                .getBytes(StandardCharsets.UTF_8));
+            pm.constructGraph(manifest.toString());
+            Files.delete(manifest);
+            stats = pm.getOrderCacheStats();
+            assertEquals(1, stats.getInvalidations());
+            assertEquals(1, stats.getEntries());
+            assertEquals(List.of("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+            assertEquals(2, pm.getOrderCacheStats().getHits());
+            assertEquals(List.of("C", "D", "B", "F", "E"), pm.getInstallationOrder("E"));
+
+            // an order larger than the whole cache is never stored
+            pm.enableOrderCache(3);
+            pm.getInstallationOrder("A");
+            assertEquals(0, pm.getOrderCacheStats().getEntries());
+            pm.disableOrderCache();
+            assertNull(pm.getOrderCacheStats());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that the incrementally maintained order stays valid while random
+     * dependencies are added and removed, and that cycles are rejected
+     */
+    @Test
+    void test17_incrementalOrder() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            pm.enableIncrementalOrder();
+            CycleException e =
+                assertThrows(CycleException.class, () -> pm.addDependency("C", "A"));
+            assertEquals(List.of("C", "A", "B"), e.getCycle());
+            assertFalse(pm.getInstallationOrder("C").contains("A"));
+
+            // without the incremental order the cycle is the same real path
+            PackageManager plain = new PackageManager();
+            plain.constructGraph("valid.json");
+            e = assertThrows(CycleException.class, () -> plain.addDependency("C", "A"));
+            assertEquals(List.of("C", "A", "B"), e.getCycle());
+            e = assertThrows(CycleException.class, () -> plain.addDependency("B", "B"));
+            assertEquals(List.of("B"), e.getCycle());
+
+            // a self-loop that comes in through a reload leaves no order behind
+            Path manifest = writeManifest(Files.createTempFile("loop", ".json"), 1,
+                i -> List.of("A", "B"));
+            PackageManager reloaded = new PackageManager();
+            reloaded.constructGraph(manifest.toString());
+            reloaded.enableIncrementalOrder();
+            writeManifest(manifest, 2, i -> i == 0 ? List.of("A", "B") : List.of("B", "B"));
+            reloaded.reloadGraph(manifest.toString());
+            Files.delete(manifest);
+            e = assertThrows(CycleException.class,
+                () -> reloaded.getInstallationOrderForAllPackages());
+            assertEquals(List.of("B"), e.getCycle());
+
+            Random random = new Random(400);
+            Map<String, Set<String>> edges = new HashMap<String, Set<String>>();
+            for (int step = 0; step < 3000; step++) {
+                String pkg = "p" + random.nextInt(200);
+                String dependency = "p" + random.nextInt(200);
+                if (random.nextInt(4) == 0) {
+                    pm.removeDependency(pkg, dependency);
+                    edges.getOrDefault(pkg, new HashSet<String>()).remove(dependency);
+                    continue;
+                }
+                try {
+                    pm.addDependency(pkg, dependency);
+                    edges.computeIfAbsent(pkg, k -> new HashSet<String>()).add(dependency);
+                } catch (CycleException cycle) {
+                    // the dependency already reaches pkg, so adding it must not change the graph
+                    assertTrue(pm.getInstallationOrder(dependency).contains(pkg));
+                }
+            }
+            List<String> order = pm.getInstallationOrderForAllPackages();
+            assertEquals(pm.getAllPackages(), new HashSet<String>(order));
+            Map<String, Integer> position = new HashMap<String, Integer>();
+            for (int i = 0; i < order.size(); i++) {
+                position.put(order.get(i), i);
+            }
+            for (Map.Entry<String, Set<String>> entry : edges.entrySet()) {
+                for (String dependency : entry.getValue()) {
+                    assertTrue(position.get(dependency) < position.get(entry.getKey()),
+                        dependency + " should come before " + entry.getKey());
+                }
+            }
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that queries on a thread-safe PM always see the graph either
+     * before or after a change while another thread keeps changing it
+     */
+    @Test
+    void test18_threadSafeQueries() {
+        try {
+            PackageManager pm = new PackageManager(true);
+            pm.constructGraph("valid.json");
+            pm.enableOrderCache(100);
+            assertThrows(UnsupportedOperationException.class, () -> pm.enableIncrementalOrder());
+            List<String> before = List.of("C", "D", "B", "A");
+            List<String> after = List.of("C", "D", "B", "Z", "A");
+            AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        pm.addDependency("A", "Z");
+                        pm.removeDependency("A", "Z");
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            });
+            List<Thread> readers = new ArrayList<Thread>();
+            for (int r = 0; r < 4; r++) {
+                readers.add(new Thread(() -> {
+                    try {
+                        while (writer.isAlive()) {
+                            List<String> order = pm.getInstallationOrder("A");
+                            assertTrue(order.equals(before) || order.equals(after), order.toString());
+                            List<String> all = pm.getInstallationOrderForAllPackages();
+                            assertTrue(all.indexOf("B") < all.indexOf("A"), all.toString());
+                            assertTrue(all.indexOf("B") < all.indexOf("E"), all.toString());
+                        }
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    }
+                }));
+            }
+            writer.start();
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertNull(error.get());
+            assertEquals(before, pm.getInstallationOrder("A"));
+            assertEquals(6, pm.getAllPackages().size());
+
+            // a new package never shows up without the dependency it was added with
+            Thread adder = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        pm.addDependency("N" + i, "M" + i);
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            });
+            adder.start();
+            while (adder.isAlive()) {
+                for (int i = 0; i < 2000; i += 97) {
+                    try {
+                        assertEquals(List.of("M" + i, "N" + i), pm.getInstallationOrder("N" + i));
+                    } catch (PackageNotFoundException e) {
+                        // not added yet
+                    }
+                }
+            }
+            adder.join();
+            assertNull(error.get());
+
+            // an old version keeps its names when a removed id is handed out again
+            ConcurrentGraph graph = new ConcurrentGraph();
+            graph.addEdge("A", "B");
+            IndexedGraph old = graph.snapshot();
+            graph.removeVertex("A");
+            graph.addEdge("C", "A");
+            IndexedGraph current = graph.snapshot();
+            assertEquals(0, old.idOf("A"));
+            assertEquals(List.of("B"), old.getAdjacentVerticesOf("A"));
+            assertEquals(-1, old.idOf("C"));
+            assertEquals(0, current.idOf("C"));
+            assertEquals(2, current.idOf("A"));
+            assertEquals(List.of("A"), current.getAdjacentVerticesOf("C"));
+            assertEquals(0, current.inDegree(1));
+            assertEquals(1, current.inDegree(2));
+            assertEquals(Set.of("A", "B", "C"), current.getAllVertices());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that a frozen graph answers the same queries as the graph it was
+     * frozen from, keeps the cached orders, and rejects changes
+     */
+    @Test
+    void test19_freeze() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            pm.addDependency("E", "F");
+            pm.removeDependency("E", "F");
+            pm.enableOrderCache(100);
+            assertEquals(List.of("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+            pm.freeze();
+            assertEquals(List.of("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+            assertEquals(1, pm.getOrderCacheStats().getHits());
+            assertEquals(List.of("C", "D", "F", "B", "A", "E"), pm.getInstallationOrderForAllPackages());
+            assertEquals(Set.of("A", "B", "C", "D", "E", "F"), pm.getAllPackages());
+            assertEquals(List.of("A"), pm.toInstall("A", "B"));
+            assertEquals("A", pm.getPackageWithMaxDependencies());
+            assertThrows(PackageNotFoundException.class, () -> pm.getInstallationOrder("G"));
+            assertThrows(UnsupportedOperationException.class, () -> pm.addDependency("F", "A"));
+            assertThrows(UnsupportedOperationException.class, () -> pm.constructGraph("valid.json"));
+            assertThrows(UnsupportedOperationException.class, () -> pm.enableIncrementalOrder());
+
+            // a thread-safe manager freezes its latest snapshot
+            PackageManager shared = new PackageManager(true);
+            shared.constructGraph("valid.json");
+            shared.freeze();
+            assertEquals(List.of("C", "D", "B", "A", "E"), shared.getInstallationOrderForAllPackages());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking the direct and transitive dependents of packages, on the live graph,
+     * after a change, and on a frozen graph
+     */
+    @Test
+    void test20_getDependents() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            assertEquals(List.of("A", "E"), pm.getDependents("B"));
+            assertEquals(List.of("B", "A", "E"), pm.getTransitiveDependents("C"));
+            assertEquals(List.of(), pm.getTransitiveDependents("A"));
+            assertThrows(PackageNotFoundException.class, () -> pm.getDependents("F"));
+
+            // a rejected dependency leaves the dependents as they were
+            pm.removeDependency("E", "B");
+            pm.addDependency("B", "E");
+            assertThrows(CycleException.class, () -> pm.addDependency("E", "A"));
+            assertEquals(List.of("B", "A"), pm.getTransitiveDependents("E"));
+            pm.freeze();
+            assertEquals(List.of("B"), pm.getDependents("E"));
+            assertEquals(List.of("B", "A"), pm.getTransitiveDependents("D"));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that dependsOn and the dependency counts answered from the
+     * reachability matrix agree with the searches, also on cycles and after changes
+     */
+    @Test
+    void test21_reachabilityMatrix() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("cyclic.json");
+            Random random = new Random(21);
+            for (int i = 0; i < 400; i++) {
+                String pkg = "p" + random.nextInt(300);
+                String dependency = "p" + random.nextInt(300);
+                try {
+                    pm.addDependency(pkg, dependency);
+                } catch (CycleException e) {
+                    // the search and the matrix must both see the existing path
+                    assertTrue(pkg.equals(dependency) || pm.dependsOn(dependency, pkg));
+                }
+            }
+            List<String> packages = new ArrayList<String>(pm.getAllPackages());
+            Map<String, Integer> counts = pm.getDependencyCounts();
+            Map<String, Boolean> expected = new HashMap<String, Boolean>();
+            for (String a : packages) {
+                for (String b : packages) {
+                    expected.put(a + " " + b, pm.dependsOn(a, b));
+                }
+            }
+            pm.enableReachabilityMatrix();
+            assertEquals(counts, pm.getDependencyCounts());
+            for (String a : packages) {
+                for (String b : packages) {
+                    assertEquals(expected.get(a + " " + b), pm.dependsOn(a, b), a + " " + b);
+                }
+            }
+            assertThrows(PackageNotFoundException.class, () -> pm.dependsOn("p0", "missing"));
+
+            // the matrix is built again after a change
+            pm.addDependency("fresh", "p0");
+            assertTrue(pm.dependsOn("fresh", "p0"));
+            assertFalse(pm.dependsOn("p0", "fresh"));
+            pm.removeDependency("fresh", "p0");
+            assertFalse(pm.dependsOn("fresh", "p0"));
+            pm.disableReachabilityMatrix();
+            assertFalse(pm.dependsOn("fresh", "p0"));
+
+            // a chain too long for the matrix is answered without it
+            PackageManager chain = new PackageManager();
+            for (int i = 0; i < 70000; i++) {
+                chain.addDependency("c" + i, "c" + (i + 1));
+            }
+            chain.enableReachabilityMatrix();
+            assertTrue(chain.dependsOn("c0", "c70000"));
+            assertFalse(chain.dependsOn("c70000", "c0"));
+            assertEquals(70000, chain.getDependencyCounts().get("c0"));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that dependsOn answered from the reachability index agrees with
+     * the plain search on a random graph with cycles, and follows changes
+     */
+    @Test
+    void test22_reachabilityIndex() {
+        try {
+            Random random = new Random(22);
+            Path manifest = writeManifest(Files.createTempFile("random", ".json"), 3000, i -> {
+                List<String> pkg = new ArrayList<>(List.of("p" + i));
+                for (int k = 0; k < 3; k++) {
+                    // mostly downward edges, with a few going up to close cycles
+                    pkg.add("p" + (random.nextInt(50) == 0 ? random.nextInt(3000)
+                        : random.nextInt(i + 1)));
+                }
+                return pkg;
+            });
+            PackageManager plain = new PackageManager();
+            plain.constructGraph(manifest.toString());
+            PackageManager indexed = new PackageManager();
+            indexed.constructGraph(manifest.toString());
+            Files.delete(manifest);
+            indexed.enableReachabilityIndex();
+            for (int i = 0; i < 20000; i++) {
+                String a = "p" + random.nextInt(3000);
+                String b = "p" + random.nextInt(3000);
+                assertEquals(plain.dependsOn(a, b), indexed.dependsOn(a, b), a + " " + b);
+            }
+
+            // the index is built again after a change
+            indexed.addDependency("fresh", "p0");
+            assertTrue(indexed.dependsOn("fresh", "p0"));
+            assertFalse(indexed.dependsOn("p0", "fresh"));
+            indexed.freeze();
+            assertTrue(indexed.dependsOn("fresh", "p0"));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that generated manifests are the same for the same seed, have
+     * the asked depth and exactly the injected cycles
+     */
+    @Test
+    void test23_manifestGenerator() {
+        try {
+            Path first = Files.createTempFile("generated", ".json");
+            Path second = Files.createTempFile("generated", ".json");
+            new ManifestGenerator(5000).depth(12).seed(23)
+                .fanOut(ManifestGenerator.FanOut.POWER_LAW, 40).write(first);
+            new ManifestGenerator(5000).depth(12).seed(23)
+                .fanOut(ManifestGenerator.FanOut.POWER_LAW, 40).write(second);
+            assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+
+            PackageManager pm = new PackageManager();
+            pm.constructGraph(first.toString());
+            assertEquals(5000, pm.getAllPackages().size());
+            assertEquals(5000, pm.getInstallationOrderForAllPackages().size());
+            assertEquals(12, pm.getInstallationWavesForAllPackages().size());
+            assertTrue(pm.getDependencyCycles().isEmpty());
+
+            new ManifestGenerator(5000).depth(12).seed(23).cycles(3, 4).write(second);
+            PackageManager cyclic = new PackageManager();
+            cyclic.constructGraph(second.toString());
+            Files.delete(first);
+            Files.delete(second);
+            List<List<String>> cycles = cyclic.getDependencyCycles();
+            assertEquals(3, cycles.size());
+            for (List<String> cycle : cycles) {
+                assertEquals(4, cycle.size());
+            }
+            try {
+                cyclic.getInstallationOrderForAllPackages();
+                fail("a CycleException should be thrown");
+            } catch (CycleException e) {
+            }
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that metrics count constructGraph and the queries while they
+     * are on, and can be read through JMX
+     */
+    @Test
+    void test24_metrics() {
+        try {
+            PackageManager pm = new PackageManager();
+            assertNull(pm.getMetrics());
+            pm.enableMetrics();
+            pm.constructGraph("valid.json");
+            pm.enableOrderCache(100);
+            assertEquals(Arrays.asList("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+            pm.getInstallationOrder("A");
+            pm.toInstall("A", "B");
+            pm.getInstallationOrder(List.of("A", "E"));
+            pm.getInstallationOrders(List.of("A", "E"));
+
+            MetricsSnapshot metrics = pm.getMetrics();
+            assertEquals(5, metrics.getVertexCount());
+            assertEquals(1, metrics.getManifestsRead());
+            assertTrue(metrics.getParseNanos() > 0);
+            assertTrue(metrics.getBuildNanos() > 0);
+            OperationStats order = metrics.getInstallationOrder();
+            assertEquals(2, order.getCalls());
+            // the second call is answered from the cache and searches nothing
+            assertEquals(4, order.getVisitedVertices());
+            assertTrue(order.getP50Nanos() <= order.getP99Nanos());
+            assertTrue(order.getP99Nanos() <= order.getMaxNanos());
+            assertEquals(1, metrics.getToInstall().getCalls());
+            assertEquals(4, metrics.getToInstall().getVisitedVertices());
+            // batches are kept apart from single orders
+            assertEquals(2, metrics.getBatchInstallationOrder().getCalls());
+            assertEquals(1, metrics.getOrderCache().getHits());
+
+            ObjectName name = pm.registerMetricsMBean("p4:type=PackageManager,name=test24");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(2L, server.getAttribute(name, "InstallationOrderCalls"));
+            assertEquals(2L, server.getAttribute(name, "BatchInstallationOrderCalls"));
+            assertEquals(5, server.getAttribute(name, "VertexCount"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, pm.getMetrics().getInstallationOrder().getCalls());
+            pm.unregisterMetricsMBean();
+            assertFalse(server.isRegistered(name));
+
+            pm.disableMetrics();
+            pm.getInstallationOrder("A");
+            assertNull(pm.getMetrics());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that many manifests parsed in parallel give the same graph as
+     * reading them one after the other, and that a bad one changes nothing
+     */
+    @Test
+    void test25_shardedManifests() {
+        try {
+            Random random = new Random(25);
+            Path dir = Files.createTempDirectory("shards");
+            List<String> shards = new ArrayList<>();
+            for (int f = 0; f < 12; f++) {
+                Path file = dir.resolve(String.format("team%02d.json", f));
+                Path shard = writeManifest(file, 500, i -> {
+                    // the same package shows up in several shards
+                    int pkg = 1 + random.nextInt(3000);
+                    return List.of("p" + pkg, "p" + random.nextInt(pkg), "p" + random.nextInt(pkg),
+                        "p" + random.nextInt(pkg));
+                });
+                shards.add(shard.toString());
+            }
+
+            PackageManager sequential = new PackageManager();
+            for (String shard : shards) {
+                sequential.constructGraph(shard);
+            }
+            PackageManager parallel = new PackageManager();
+            parallel.constructGraph(shards, ForkJoinPool.commonPool());
+            assertEquals(sequential.getAllPackages(), parallel.getAllPackages());
+            assertEquals(sequential.getInstallationOrderForAllPackages(),
+                parallel.getInstallationOrderForAllPackages());
+            PackageManager fromDirectory = new PackageManager(true);
+            fromDirectory.constructGraphFromDirectory(dir.toString(), ForkJoinPool.commonPool());
+            assertEquals(sequential.getInstallationOrderForAllPackages(),
+                fromDirectory.getInstallationOrderForAllPackages());
+
+            // a shard that cannot be parsed leaves the graph alone
+            Path broken = dir.resolve("broken.json");
+            Files.write(broken, "{\"packages\": [".getBytes(StandardCharsets.UTF_8));
+            List<String> withBroken = new ArrayList<>(shards);
+            withBroken.add(broken.toString());
+            PackageManager failed = new PackageManager();
+            try {
+                failed.constructGraph(withBroken);
+                fail("a ParseException should be thrown");
+            } catch (ParseException e) {
+            }
+            assertTrue(failed.getAllPackages().isEmpty());
+            for (String shard : shards) {
+                Files.delete(Paths.get(shard));
+            }
+            Files.delete(broken);
+            Files.delete(dir);
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * checking that reloading a changed manifest only applies the difference,
+     * keeps the derived state right, and follows the file when it is watched
+     */
+    @Test
+    void test26_reloadGraph() {
+        try {
+            Path manifest = Files.createTempFile("reload", ".json");
+            Files.write(manifest, Files.readAllBytes(Paths.get("valid.json")));
+            PackageManager pm = new PackageManager();
+            pm.constructGraph(manifest.toString());
+            pm.enableOrderCache(100);
+            pm.enableIncrementalOrder();
+            assertEquals(Arrays.asList("C", "D", "B", "A"), pm.getInstallationOrder("A"));
+
+            // E is gone, F is new and A now depends on C instead of B
+            Files.write(manifest, ("{\"packages\": [{\"name\": \"A\", \"dependencies\": [\"C\"]},"
+                + "{\"name\": \"B\", \"dependencies\": [\"C\", \"D\"]},"
+                + "{\"name\": \"F\", \"dependencies\": [\"A\", \"D\"]}]}")
+                .getBytes(StandardCharsets.UTF_8));
+            ManifestDiff diff = pm.reloadGraph(manifest.toString());
+            assertEquals(1, diff.getAddedPackages());
+            assertEquals(1, diff.getRemovedPackages());
+            assertEquals(3, diff.getAddedDependencies());
+            assertEquals(2, diff.getRemovedDependencies());
+            assertEquals(new HashSet<>(Arrays.asList("A", "B", "C", "D", "F")),
+                pm.getAllPackages());
+            assertEquals(Arrays.asList("C", "A"), pm.getInstallationOrder("A"));
+            List<String> all = pm.getInstallationOrderForAllPackages();
+            assertTrue(all.indexOf("A") < all.indexOf("F"));
+            assertTrue(all.indexOf("D") < all.indexOf("F"));
+            assertTrue(pm.reloadGraph(manifest.toString()).isEmpty());
+
+            // a watched manifest is reloaded when it is written
+            PackageManager watched = new PackageManager(true);
+            watched.constructGraph(manifest.toString());
+            LinkedBlockingQueue<Object> reloads = new LinkedBlockingQueue<>();
+            watched.watchManifest(manifest.toString(), new ReloadListener() {
+                @Override
+                public void reloaded(ManifestDiff diff) {
+                    reloads.add(diff);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    reloads.add(e);
+                }
+            });
+            Files.write(manifest, Files.readAllBytes(Paths.get("valid.json")));
+            Object result;
+            do {
+                // a reload can catch the file half written, the next event fixes it
+                result = reloads.poll(30, TimeUnit.SECONDS);
+            } while (result instanceof Exception);
+            assertTrue(result instanceof ManifestDiff, String.valueOf(result));
+            assertEquals(Arrays.asList("C", "D", "B", "A"), watched.getInstallationOrder("A"));
+            watched.stopWatching();
+            Files.delete(manifest);
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * resolveVersions picks the newest versions that fit together, going back to an older
+     * version where the newest ones conflict
+     */
+    @Test
+    void test27_resolveVersions() {
+        try {
+            Path manifest = Files.createTempFile("versions", ".json");
+            Files.write(manifest, ("{\"packages\": ["
+                + "{\"name\": \"A\", \"version\": \"2.0.0\", \"dependencies\": [\"B@^2\", \"C\"]},"
+                + "{\"name\": \"A\", \"version\": \"1.0.0\", \"dependencies\": [\"B@^1\", \"C\"]},"
+                + "{\"name\": \"B\", \"version\": \"2.1.0\", \"dependencies\": []},"
+                + "{\"name\": \"B\", \"version\": \"1.4.0\", \"dependencies\": []},"
+                + "{\"name\": \"B\", \"version\": \"1.2.0\", \"dependencies\": []},"
+                + "{\"name\": \"C\", \"version\": \"1.0.0\", \"dependencies\": [\"B@<2\", \"D\"]},"
+                + "{\"name\": \"D\", \"dependencies\": []}]}")
+                .getBytes(StandardCharsets.UTF_8));
+            PackageManager pm = new PackageManager();
+            pm.constructGraph(manifest.toString());
+            // the graph only has the names
+            assertEquals(new HashSet<>(Arrays.asList("A", "B", "C", "D")), pm.getAllPackages());
+            assertEquals(Arrays.asList("B", "D", "C", "A"), pm.getInstallationOrder("A"));
+
+            // A 2.0.0 needs B 2 but C needs B 1, so A goes back to 1.0.0
+            Map<String, String> requirements = new HashMap<>();
+            requirements.put("A", "");
+            Map<String, Version> picked = pm.resolveVersions(requirements);
+            assertEquals(4, picked.size());
+            assertEquals(Version.parse("1.0.0"), picked.get("A"));
+            assertEquals(Version.parse("1.4.0"), picked.get("B"));
+            assertEquals(Version.parse("1.0.0"), picked.get("C"));
+            assertEquals(Version.ZERO, picked.get("D"));
+            requirements.put("B", "~1.2");
+            assertEquals(Version.parse("1.2.0"), pm.resolveVersions(requirements).get("B"));
+
+            // nothing fits
+            requirements.clear();
+            requirements.put("B", ">=2");
+            requirements.put("C", "");
+            try {
+                pm.resolveVersions(requirements);
+                fail("B cannot be both 2 and less than 2");
+            } catch (VersionConflictException e) {
+                assertEquals("B", e.getPackage());
+                assertEquals(2, e.getRequirements().size());
+            }
+            requirements.clear();
+            requirements.put("A", "^3");
+            assertThrows(VersionConflictException.class, () -> pm.resolveVersions(requirements));
+            requirements.clear();
+            requirements.put("Z", "");
+            assertThrows(PackageNotFoundException.class, () -> pm.resolveVersions(requirements));
+            Files.delete(manifest);
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * the batch orders hold the same packages as one getInstallationOrder call per package, each
+     * after all of its dependencies
+     */
+    @Test
+    void test28_batchInstallationOrders() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            assertEquals(Arrays.asList("C", "D", "B", "A", "E"),
+                pm.getInstallationOrder(Arrays.asList("A", "E", "A")));
+            Map<String, List<String>> orders = pm.getInstallationOrders(Arrays.asList("E", "B"));
+            assertEquals(Arrays.asList("E", "B"), new ArrayList<>(orders.keySet()));
+            assertEquals(Arrays.asList("C", "D", "B", "E"), orders.get("E"));
+            assertEquals(Arrays.asList("C", "D", "B"), orders.get("B"));
+            assertThrows(PackageNotFoundException.class,
+                () -> pm.getInstallationOrders(Arrays.asList("A", "Z")));
+
+            // more targets than one block of bit sets, on a graph with shared dependencies
+            Path manifest = Files.createTempFile("batch", ".json");
+            new ManifestGenerator(3000).depth(10).seed(5).write(manifest);
+            PackageManager big = new PackageManager();
+            big.constructGraph(manifest.toString());
+            List<String> targets = new ArrayList<>();
+            for (int i = 2999; i >= 2400; i--) {
+                targets.add("p" + i);
+            }
+            orders = big.getInstallationOrders(targets);
+            assertEquals(targets.size(), orders.size());
+            for (String target : targets) {
+                List<String> order = orders.get(target);
+                assertEquals(new HashSet<>(big.getInstallationOrder(target)),
+                    new HashSet<>(order));
+                assertEquals(target, order.get(order.size() - 1));
+                Map<String, Integer> position = new HashMap<>();
+                for (int i = 0; i < order.size(); i++) {
+                    position.put(order.get(i), i);
+                }
+                for (int i = 0; i < order.size(); i++) {
+                    for (String dependent : big.getDependents(order.get(i))) {
+                        assertTrue(position.getOrDefault(dependent, i + 1) > i);
+                    }
+                }
+            }
+            Files.delete(manifest);
+
+            PackageManager cyclic = new PackageManager();
+            cyclic.constructGraph("cyclic.json");
+            assertThrows(CycleException.class,
+                () -> cyclic.getInstallationOrders(cyclic.getAllPackages()));
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+    /**
+     * helper method that writes a manifest of count packages, where packageAt(i) is the name of
+     * the i-th package followed by its dependencies
+     */
+    private static Path writeManifest(Path file, int count, IntFunction<List<String>> packageAt)
+        throws IOException {
+        StringBuilder json = new StringBuilder("{\"packages\": [");
+        for (int i = 0; i < count; i++) {
+            List<String> pkg = packageAt.apply(i);
+            json.append(i == 0 ? "" : ",").append("{\"name\": \"").append(pkg.get(0))
+                .append("\", \"dependencies\": [");
+            for (int k = 1; k < pkg.size(); k++) {
+                json.append(k == 1 ? "" : ", ").append("\"").append(pkg.get(k)).append("\"");
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * helper method that sends requests to a server in one write and reads a response line for
+     * each of them
+     */
+    private static List<String> ask(SocketChannel channel, String... requests) throws IOException {
+        channel.write(ByteBuffer.wrap((String.join("\n", requests) + "\n")
+            .getBytes(StandardCharsets.UTF_8)));
+        List<String> responses = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        while (responses.size() < requests.length && channel.read(buffer) > 0) {
+            char c = (char) buffer.get(0);
+            buffer.clear();
+            if (c == '\n') {
+                responses.add(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * the server answers pipelined requests in order, from several clients at once, over TCP
+     * and over a Unix domain socket
+     */
+    @Test
+    void test29_server() {
+        try {
+            PackageManager pm = new PackageManager();
+            pm.constructGraph("valid.json");
+            try (PackageManagerServer server = new PackageManagerServer(pm,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                SocketChannel first = SocketChannel.open(server.getAddress());
+                SocketChannel second = SocketChannel.open(server.getAddress())) {
+                assertEquals(Arrays.asList("OK C D B A", "OK B A", "OK A E", "OK A", "ERR NOT_FOUND",
+                    "ERR BAD_REQUEST unknown command FOO", "OK C D B A E"),
+                    ask(first, "ORDER A", "TOINSTALL A C D", "DEPENDENTS B", "MAX", "ORDER Z",
+                        "FOO", "ORDER A E"));
+                assertEquals(Arrays.asList("OK"), ask(second, "PING"));
+                assertEquals(Arrays.asList("OK"), ask(first, "QUIT"));
+                assertEquals(-1, first.read(ByteBuffer.allocate(1)));
+                assertEquals(Arrays.asList("OK C D B E"), ask(second, "ORDER E"));
+            }
+
+            // MAX is kept until the graph changes, and queries can run on the selector thread
+            PackageManager shared = new PackageManager(true);
+            shared.constructGraph("valid.json");
+            try (PackageManagerServer server = new PackageManagerServer(shared,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Runnable::run);
+                SocketChannel channel = SocketChannel.open(server.getAddress())) {
+                assertEquals(Arrays.asList("OK A", "OK A"), ask(channel, "MAX", "MAX"));
+                shared.addDependency("E", "F");
+                assertEquals(Arrays.asList("OK E"), ask(channel, "MAX"));
+            }
+
+            // a failure of the server is not blamed on the request and stays on one line
+            PackageManager broken = new PackageManager() {
+                @Override
+                public String getPackageWithMaxDependencies() {
+                    throw new IllegalStateException("broken\r\ngraph");
+                }
+            };
+            try (PackageManagerServer server = new PackageManagerServer(broken,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                SocketChannel channel = SocketChannel.open(server.getAddress())) {
+                assertEquals(Arrays.asList(
+                    "ERR INTERNAL java.lang.IllegalStateException: broken graph", "OK"),
+                    ask(channel, "MAX", "PING"));
+            }
+
+            PackageManager cyclic = new PackageManager();
+            cyclic.constructGraph("cyclic.json");
+            Path socket = Files.createTempDirectory("server").resolve("pm.sock");
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try (PackageManagerServer server = new PackageManagerServer(cyclic,
+                    UnixDomainSocketAddress.of(socket), pool)) {
+                List<Thread> clients = new ArrayList<>();
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                for (int c = 0; c < 4; c++) {
+                    Thread client = new Thread(() -> {
+                        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+                            String[] requests = new String[500];
+                            Arrays.fill(requests, "PING");
+                            requests[499] = "ORDER A";
+                            List<String> responses = ask(channel, requests);
+                            assertEquals(500, responses.size());
+                            assertEquals("OK", responses.get(0));
+                            assertTrue(responses.get(499).startsWith("ERR CYCLE"));
+                        } catch (Throwable e) {
+                            failure.set(e);
+                        }
+                    });
+                    client.start();
+                    clients.add(client);
+                }
+                for (Thread client : clients) {
+                    client.join();
+                }
+                assertNull(failure.get());
+            }
+            pool.shutdown();
+            assertFalse(Files.exists(socket));
+            Files.delete(socket.getParent());
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            fail("this expection shouldn't happen");
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+
+/**
+ * Filename: ReachabilityIndex.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Answers "does A depend on B, directly or not" for graphs too large for a ReachabilityMatrix,
+ * using labels that take a few ints per component, in the style of GRAIL.
+ *
+ * The labels are built over the condensation, which is acyclic. For every component c:
+ *
+ * - its number: components only reach components with a smaller number;
+ * - for a few depth first traversals, an interval [low, post] where post is the post-order rank
+ * of c and low the smallest rank below it. If c reaches d, the interval of d lies inside the
+ * interval of c in every traversal, so one traversal where it does not proves there is no path;
+ * - for the same traversals, the pre-order range of the subtree of c in the spanning forest. If d
+ * is inside it in any traversal, c reaches d through tree edges.
+ *
+ * Most queries are settled by these checks alone. The rest fall back to a depth first search over
+ * the condensation that skips every component whose labels already rule it out.
+ */
+class ReachabilityIndex {
+
+  // number of traversals giving interval labels
+  private static final int TRAVERSALS = 3;
+
+  // the graph the labels were computed for
+  private final IndexedGraph graph;
+  private final StronglyConnectedComponents components;
+  // low[t][c] and post[t][c] of component c in traversal t
+  private final int[][] low;
+  private final int[][] post;
+  // pre[t][c] is the pre-order number of component c in traversal t, subtreeEnd[t][c] the end of
+  // its subtree
+  private final int[][] pre;
+  private final int[][] subtreeEnd;
+  // search state of the fallback, one per thread
+  private final ThreadLocal<Search> search;
+
+  /**
+   * helper class that holds the scratch arrays of a fallback search
+   */
+  private static class Search {
+    // a component is visited in the current search when mark[c] == stamp
+    final int[] mark;
+    int stamp;
+    final int[] stack;
+
+    Search(int componentNum) {
+      mark = new int[componentNum];
+      stack = new int[componentNum];
+    }
+  }
+
+  /**
+   * Computes the labels of a graph. The graph must not change while this object is used.
+   *
+   * @param graph the graph
+   */
+  ReachabilityIndex(IndexedGraph graph) {
+    this.graph = graph;
+    this.components = new StronglyConnectedComponents(graph);
+    int componentNum = components.count();
+    this.low = new int[TRAVERSALS][componentNum];
+    this.post = new int[TRAVERSALS][componentNum];
+    this.pre = new int[TRAVERSALS][componentNum];
+    this.subtreeEnd = new int[TRAVERSALS][componentNum];
+    for (int t = 0; t < TRAVERSALS; t++) {
+      label(t);
+    }
+    this.search = ThreadLocal.withInitial(() -> new Search(componentNum));
+  }
+
+  /**
+   * Returns the graph the labels were computed for.
+   */
+  IndexedGraph graph() {
+    return graph;
+  }
+
+  /**
+   * Returns true if vertex from depends on vertex to, directly or not. A vertex depends on itself
+   * only if it is on a cycle. Safe to call from several threads at once.
+   *
+   * @param from the id of the dependent
+   * @param to   the id of the dependency
+   */
+  boolean reaches(int from, int to) {
+    int source = components.componentOf(from);
+    int target = components.componentOf(to);
+    if (source == target) {
+      return components.isCyclic(source);
+    }
+    if (!mayReach(source, target)) {
+      return false;
+    }
+    if (treeReaches(source, target)) {
+      return true;
+    }
+    // the labels cannot tell, search the condensation and prune with them on the way
+    Search state = search.get();
+    if (++state.stamp == Integer.MAX_VALUE) {
+      Arrays.fill(state.mark, 0);
+      state.stamp = 1;
+    }
+    int[] stack = state.stack;
+    int depth = 0;
+    stack[depth++] = source;
+    state.mark[source] = state.stamp;
+    while (depth > 0) {
+      int c = stack[--depth];
+      for (int k = 0; k < components.condensedDegree(c); k++) {
+        int next = components.condensedAt(c, k);
+        if (next == target || (state.mark[next] != state.stamp && treeReaches(next, target))) {
+          return true;
+        }
+        if (state.mark[next] != state.stamp && mayReach(next, target)) {
+          state.mark[next] = state.stamp;
+          stack[depth++] = next;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * helper method that returns false if the labels prove component c cannot reach component d
+   */
+  private boolean mayReach(int c, int d) {
+    // edges only go to components with a smaller number
+    if (d > c) {
+      return false;
+    }
+    for (int t = 0; t < TRAVERSALS; t++) {
+      if (low[t][d] < low[t][c] || post[t][d] > post[t][c]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * helper method that returns true if component d is in the spanning tree subtree of component c
+   */
+  private boolean treeReaches(int c, int d) {
+    for (int t = 0; t < TRAVERSALS; t++) {
+      if (pre[t][c] <= pre[t][d] && pre[t][d] < subtreeEnd[t][c]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * helper method that runs traversal t over the condensation and records its labels. Traversals
+   * start from the components in different orders and follow the edges in different orders, so
+   * their intervals rule out different pairs.
+   */
+  private void label(int t) {
+    int componentNum = components.count();
+    int[] state = new int[componentNum];
+    int[] pathComponent = new int[Math.max(1, componentNum)];
+    int[] pathEdge = new int[Math.max(1, componentNum)];
+    int rank = 0;
+    int preorder = 0;
+    for (int i = 0; i < componentNum; i++) {
+      // dependents have larger numbers, so going down from the top finds the roots first
+      int root = t == 1 ? i : componentNum - 1 - i;
+      if (state[root] != 0) {
+        continue;
+      }
+      int depth = 0;
+      pathComponent[depth] = root;
+      pathEdge[depth++] = 0;
+      state[root] = 1;
+      pre[t][root] = preorder++;
+      while (depth > 0) {
+        int c = pathComponent[depth - 1];
+        int degree = components.condensedDegree(c);
+        if (pathEdge[depth - 1] < degree) {
+          int k = pathEdge[depth - 1]++;
+          // every traversal walks the edges of a component in its own order
+          int next = components.condensedAt(c, t == 2 ? degree - 1 - k : k);
+          if (state[next] == 0) {
+            state[next] = 1;
+            pre[t][next] = preorder++;
+            pathComponent[depth] = next;
+            pathEdge[depth++] = 0;
+          }
+          continue;
+        }
+        // every component below c is finished, the condensation has no back edges
+        int lowest = rank;
+        for (int k = 0; k < degree; k++) {
+          lowest = Math.min(lowest, low[t][components.condensedAt(c, k)]);
+        }
+        low[t][c] = lowest;
+        post[t][c] = rank++;
+        subtreeEnd[t][c] = preorder;
+        depth--;
+      }
+    }
+  }
+}
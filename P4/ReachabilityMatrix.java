@@ -0,0 +1,136 @@
+/**
+ * Filename: ReachabilityMatrix.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Full transitive closure of a graph as a bit matrix, for O(1) answers to "does A depend on B,
+ * directly or not".
+ *
+ * Like DependencyCounter, every vertex gets a bit column with the members of a component in
+ * consecutive columns, and the rows are built over the condensation in installation order with
+ * word-parallel ORs. Here all the rows are kept: one row per component, holding every vertex the
+ * members of the component depend on. A component only reaches components with a smaller number,
+ * so each row is only as long as the columns up to its own members, which halves the matrix.
+ * The matrix takes about V * V / 16 bytes, fine for tens of thousands of packages.
+ */
+class ReachabilityMatrix {
+
+  // largest number of longs a matrix may take (256MB)
+  static final long MAX_WORDS = 1L << 25;
+
+  // the graph the closure was computed for
+  private final IndexedGraph graph;
+  // component of every vertex id the matrix knows about, -1 for ids not in use
+  private final int[] component;
+  // bit column of every vertex id
+  private final int[] column;
+  // rows[c] holds the columns of every vertex component c depends on
+  private final long[][] rows;
+
+  /**
+   * Returns true if the matrix of a graph with the given components takes at most MAX_WORDS longs.
+   *
+   * @param components the strongly connected components of the graph
+   */
+  static boolean fits(StronglyConnectedComponents components) {
+    long words = 0;
+    int columns = 0;
+    for (int c = 0; c < components.count() && words <= MAX_WORDS; c++) {
+      columns += components.size(c);
+      words += (columns + 63) >>> 6;
+    }
+    return words <= MAX_WORDS;
+  }
+
+  /**
+   * Computes the closure of a graph. The graph must not change while this object is used.
+   *
+   * @param graph      the graph
+   * @param components the strongly connected components of the graph
+   * @throws IllegalStateException if the matrix would take more than MAX_WORDS longs, which fits
+   *                               tells beforehand
+   */
+  ReachabilityMatrix(IndexedGraph graph, StronglyConnectedComponents components) {
+    if (!fits(components)) {
+      throw new IllegalStateException("graph too large for a reachability matrix");
+    }
+    this.graph = graph;
+    int componentNum = components.count();
+    // column of the first member of every component
+    int[] firstColumn = new int[componentNum + 1];
+    for (int c = 0; c < componentNum; c++) {
+      firstColumn[c + 1] = firstColumn[c] + components.size(c);
+    }
+    int bound = graph.idBound();
+    this.component = new int[bound];
+    this.column = new int[bound];
+    for (int id = 0; id < bound; id++) {
+      component[id] = graph.nameOf(id) == null ? -1 : components.componentOf(id);
+    }
+    for (int c = 0; c < componentNum; c++) {
+      for (int i = 0; i < components.size(c); i++) {
+        column[components.memberAt(c, i)] = firstColumn[c] + i;
+      }
+    }
+
+    this.rows = new long[componentNum][];
+    for (int c = 0; c < componentNum; c++) {
+      long[] row = new long[(firstColumn[c + 1] + 63) >>> 6];
+      // members of a cycle depend on each other and on themselves
+      if (components.isCyclic(c)) {
+        setRange(row, firstColumn[c], firstColumn[c + 1]);
+      }
+      for (int k = 0; k < components.condensedDegree(c); k++) {
+        int dep = components.condensedAt(c, k);
+        long[] depRow = rows[dep];
+        for (int w = 0; w < depRow.length; w++) {
+          row[w] |= depRow[w];
+        }
+        setRange(row, firstColumn[dep], firstColumn[dep + 1]);
+      }
+      rows[c] = row;
+    }
+  }
+
+  /**
+   * Returns the graph the closure was computed for.
+   */
+  IndexedGraph graph() {
+    return graph;
+  }
+
+  /**
+   * Returns true if vertex from depends on vertex to, directly or not. A vertex depends on itself
+   * only if it is on a cycle.
+   *
+   * @param from the id of the dependent
+   * @param to   the id of the dependency
+   */
+  boolean reaches(int from, int to) {
+    long[] row = rows[component[from]];
+    int bit = column[to];
+    return (bit >>> 6) < row.length && (row[bit >>> 6] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Returns the number of distinct vertices a vertex depends on, directly or not, not counting
+   * the vertex itself.
+   *
+   * @param id the id of the vertex
+   */
+  int countOf(int id) {
+    long[] row = rows[component[id]];
+    int bits = 0;
+    for (long word : row) {
+      bits += Long.bitCount(word);
+    }
+    return reaches(id, id) ? bits - 1 : bits;
+  }
+
+  /**
+   * helper method that sets the bits [from, to) of a row
+   */
+  private static void setRange(long[] row, int from, int to) {
+    for (int bit = from; bit < to; bit++) {
+      row[bit >>> 6] |= 1L << bit;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+/**
+ * Filename: ReloadListener.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Told about every reload PackageManager.watchManifest makes after the manifest changed on disk.
+ * Called on the thread that watches the file.
+ */
+public interface ReloadListener {
+
+  /**
+   * Called after the graph was changed to match the manifest.
+   *
+   * @param diff what changed
+   */
+  public void reloaded(ManifestDiff diff);
+
+  /**
+   * Called when the manifest could not be read or parsed, for example because it was caught half
+   * written. The graph is left as it was, and the next change to the file is tried again.
+   *
+   * @param e what went wrong
+   */
+  public void failed(Exception e);
+}
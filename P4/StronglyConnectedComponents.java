@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filename: StronglyConnectedComponents.java Project: p4 Authors: Kunlun Wang Email:
+ * kwang358@wisc.edu
+ *
+ * Splits a graph into strongly connected components with an iterative version of Tarjan's
+ * algorithm and builds the condensation of the graph, where every component becomes one vertex.
+ *
+ * A component with more than one package, or a package that depends on itself, is a dependency
+ * cycle. The condensation is always acyclic, so algorithms that need a DAG can run on it. Tarjan's
+ * algorithm finishes a component only after every component it can reach, so component 0 has no
+ * dependencies outside itself and the components are numbered in installation order.
+ *
+ * Everything is computed once in the constructor in O(V + E).
+ */
+class StronglyConnectedComponents {
+
+  // the graph the components belong to
+  private final IndexedGraph graph;
+  // component of every vertex, -1 for ids not in use
+  private final int[] component;
+  private final int componentNum;
+  // members of component c are members[memberStart[c] .. memberStart[c + 1])
+  private final int[] memberStart;
+  private final int[] members;
+  // components that component c has an edge to are
+  // condensed[condensedStart[c] .. condensedStart[c + 1]), without duplicates
+  private final int[] condensedStart;
+  private final int[] condensed;
+  // true for components that contain a cycle
+  private final boolean[] cyclic;
+
+  /**
+   * Computes the components of a graph. The graph must not change while this object is used.
+   *
+   * @param graph the graph to split
+   */
+  StronglyConnectedComponents(IndexedGraph graph) {
+    this.graph = graph;
+    int bound = graph.idBound();
+    this.component = new int[bound];
+    Arrays.fill(component, -1);
+    // index[v] is the dfs number of v plus one, 0 while v has not been visited
+    int[] index = new int[bound];
+    int[] low = new int[bound];
+    // vertices visited but not yet assigned to a component
+    int[] open = new int[Math.max(1, bound)];
+    int openSize = 0;
+    // the dfs path, with the index of the next edge to follow at every level
+    int[] pathVertex = new int[64];
+    int[] pathEdge = new int[64];
+    int counter = 0;
+    int components = 0;
+
+    for (int root = 0; root < bound; root++) {
+      if (index[root] != 0 || graph.nameOf(root) == null) {
+        continue;
+      }
+      int depth = 0;
+      index[root] = low[root] = ++counter;
+      open[openSize++] = root;
+      pathVertex[depth] = root;
+      pathEdge[depth++] = 0;
+      while (depth > 0) {
+        int v = pathVertex[depth - 1];
+        int k = pathEdge[depth - 1];
+        if (k < graph.outDegree(v)) {
+          pathEdge[depth - 1] = k + 1;
+          int w = graph.adjacentAt(v, k);
+          if (index[w] == 0) {
+            // first visit of w, go deeper
+            if (depth == pathVertex.length) {
+              pathVertex = Arrays.copyOf(pathVertex, depth * 2);
+              pathEdge = Arrays.copyOf(pathEdge, depth * 2);
+            }
+            index[w] = low[w] = ++counter;
+            open[openSize++] = w;
+            pathVertex[depth] = w;
+            pathEdge[depth++] = 0;
+          } else if (component[w] < 0) {
+            // w is still open, so it is on the same component as v
+            low[v] = Math.min(low[v], index[w]);
+          }
+        } else {
+          depth--;
+          if (low[v] == index[v]) {
+            // v is the root of a component, everything opened after it belongs to it
+            int member;
+            do {
+              member = open[--openSize];
+              component[member] = components;
+            } while (member != v);
+            components++;
+          }
+          if (depth > 0) {
+            int parent = pathVertex[depth - 1];
+            low[parent] = Math.min(low[parent], low[v]);
+          }
+        }
+      }
+    }
+    this.componentNum = components;
+
+    // group the members of every component, in id order
+    this.memberStart = new int[components + 1];
+    for (int v = 0; v < bound; v++) {
+      if (component[v] >= 0) {
+        memberStart[component[v] + 1]++;
+      }
+    }
+    for (int c = 0; c < components; c++) {
+      memberStart[c + 1] += memberStart[c];
+    }
+    this.members = new int[memberStart[components]];
+    int[] fill = new int[components];
+    for (int v = 0; v < bound; v++) {
+      if (component[v] >= 0) {
+        members[memberStart[component[v]] + fill[component[v]]++] = v;
+      }
+    }
+
+    // build the condensation, mark[c2] == c + 1 means c -> c2 is already recorded
+    this.cyclic = new boolean[components];
+    this.condensedStart = new int[components + 1];
+    int[] edges = new int[Math.max(16, components)];
+    int edgeNum = 0;
+    int[] mark = new int[components];
+    for (int c = 0; c < components; c++) {
+      cyclic[c] = memberStart[c + 1] - memberStart[c] > 1;
+      for (int i = memberStart[c]; i < memberStart[c + 1]; i++) {
+        int v = members[i];
+        for (int k = 0; k < graph.outDegree(v); k++) {
+          int target = component[graph.adjacentAt(v, k)];
+          if (target == c) {
+            // an edge inside a single vertex component is a self loop
+            cyclic[c] = true;
+          } else if (mark[target] != c + 1) {
+            mark[target] = c + 1;
+            if (edgeNum == edges.length) {
+              edges = Arrays.copyOf(edges, edgeNum * 2);
+            }
+            edges[edgeNum++] = target;
+          }
+        }
+      }
+      condensedStart[c + 1] = edgeNum;
+    }
+    this.condensed = Arrays.copyOf(edges, edgeNum);
+  }
+
+  /**
+   * Returns the number of components. Components are numbered 0 .. count() - 1 and every component
+   * only has edges to components with a smaller number.
+   */
+  int count() {
+    return componentNum;
+  }
+
+  /**
+   * Returns the component of a vertex.
+   *
+   * @param id the id of the vertex
+   * @return the component, or -1 if the id is not in use
+   */
+  int componentOf(int id) {
+    return component[id];
+  }
+
+  /**
+   * Returns the number of vertices in a component.
+   *
+   * @param c the component
+   */
+  int size(int c) {
+    return memberStart[c + 1] - memberStart[c];
+  }
+
+  /**
+   * Returns the id of the i-th vertex of a component, in id order.
+   *
+   * @param c the component
+   * @param i index of the member, 0 <= i < size(c)
+   */
+  int memberAt(int c, int i) {
+    return members[memberStart[c] + i];
+  }
+
+  /**
+   * Returns true if the component contains a dependency cycle.
+   *
+   * @param c the component
+   */
+  boolean isCyclic(int c) {
+    return cyclic[c];
+  }
+
+  /**
+   * Returns the number of components a component has an edge to in the condensation.
+   *
+   * @param c the component
+   */
+  int condensedDegree(int c) {
+    return condensedStart[c + 1] - condensedStart[c];
+  }
+
+  /**
+   * Returns the k-th component a component has an edge to in the condensation.
+   *
+   * @param c the component
+   * @param k index of the edge, 0 <= k < condensedDegree(c)
+   */
+  int condensedAt(int c, int k) {
+    return condensed[condensedStart[c] + k];
+  }
+
+  /**
+   * Returns one shortest cycle through the first member of a cyclic component, found with a
+   * breadth first search that stays inside the component.
+   *
+   * @param c a cyclic component
+   * @return the ids of the cycle, each vertex has an edge to the next and the last one has an edge
+   *         to the first
+   */
+  int[] findCycle(int c) {
+    int start = memberAt(c, 0);
+    // parent[v] is the vertex v was reached from plus one, 0 while v is not reached
+    int[] parent = new int[graph.idBound()];
+    int[] queue = new int[size(c)];
+    int tail = 0;
+    queue[tail++] = start;
+    for (int head = 0; head < tail; head++) {
+      int v = queue[head];
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        int w = graph.adjacentAt(v, k);
+        if (w == start) {
+          // walk back from v to the start
+          int length = 1;
+          for (int u = v; u != start; u = parent[u] - 1) {
+            length++;
+          }
+          int[] cycle = new int[length];
+          for (int u = v, i = length - 1; i >= 0; u = parent[u] - 1, i--) {
+            cycle[i] = u;
+          }
+          return cycle;
+        }
+        if (component[w] == c && parent[w] == 0) {
+          parent[w] = v + 1;
+          queue[tail++] = w;
+        }
+      }
+    }
+    throw new IllegalArgumentException("component " + c + " has no cycle");
+  }
+
+  /**
+   * Returns the package names of a cycle found by findCycle.
+   *
+   * @param c a cyclic component
+   */
+  List<String> cycleNames(int c) {
+    List<String> names = new ArrayList<String>();
+    for (int id : findCycle(c)) {
+      names.add(graph.nameOf(id));
+    }
+    return names;
+  }
+}
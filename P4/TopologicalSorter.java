@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filename: TopologicalSorter.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Computes installation orders of a whole graph with Kahn's algorithm.
+ *
+ * An edge A -> B means A depends on B, so B has to come first. Each package starts with a counter
+ * of its unmet dependencies (its out degree) and a package is ready once the counter drops to
+ * zero. To find whose counters drop when a package is installed, the dependents of every package
+ * are collected once into a reverse compressed sparse row index. Everything together runs in
+ * O(V + E) with a handful of int arrays.
+ */
+class TopologicalSorter {
+
+  // the graph being sorted
+  private final IndexedGraph graph;
+  // dependents of vertex v are dependents[dependentStart[v] .. dependentStart[v + 1]),
+  // in increasing id order
+  private final int[] dependentStart;
+  private final int[] dependents;
+  // number of vertices in use
+  private final int vertexNum;
+
+  /**
+   * Builds the reverse index of a graph. The graph must not change while the sorter is used.
+   *
+   * @param graph the graph to sort
+   */
+  TopologicalSorter(IndexedGraph graph) {
+    this.graph = graph;
+    int bound = graph.idBound();
+    // count the dependents of every vertex, shifted by one for the prefix sum below
+    int[] start = new int[bound + 1];
+    int live = 0;
+    for (int v = 0; v < bound; v++) {
+      if (graph.nameOf(v) == null) {
+        continue;
+      }
+      live++;
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        start[graph.adjacentAt(v, k) + 1]++;
+      }
+    }
+    for (int v = 0; v < bound; v++) {
+      start[v + 1] += start[v];
+    }
+    // fill the rows, visiting sources in id order keeps every row sorted
+    int[] fill = new int[bound];
+    int[] rows = new int[start[bound]];
+    for (int v = 0; v < bound; v++) {
+      if (graph.nameOf(v) == null) {
+        continue;
+      }
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        int dep = graph.adjacentAt(v, k);
+        rows[start[dep] + fill[dep]++] = v;
+      }
+    }
+    this.dependentStart = start;
+    this.dependents = rows;
+    this.vertexNum = live;
+  }
+
+  /**
+   * Returns an installation order of every vertex in the graph: each vertex comes after all the
+   * vertices it has an edge to. Among vertices that become ready at the same time the one with
+   * the smaller id comes first.
+   *
+   * @return the ids of all the vertices in installation order
+   * @throws CycleException if a cycle keeps some vertices from ever becoming ready, the exception
+   *         names one cycle and lists every vertex that could not be ordered
+   */
+  int[] order() throws CycleException {
+    int bound = graph.idBound();
+    int[] remaining = new int[bound];
+    int[] queue = new int[vertexNum];
+    int tail = 0;
+    for (int v = 0; v < bound; v++) {
+      if (graph.nameOf(v) != null) {
+        remaining[v] = graph.outDegree(v);
+        if (remaining[v] == 0) {
+          queue[tail++] = v;
+        }
+      }
+    }
+    // the queue doubles as the output, every vertex enters it exactly once
+    for (int head = 0; head < tail; head++) {
+      int v = queue[head];
+      for (int i = dependentStart[v]; i < dependentStart[v + 1]; i++) {
+        int dependent = dependents[i];
+        if (--remaining[dependent] == 0) {
+          queue[tail++] = dependent;
+        }
+      }
+    }
+    if (tail < vertexNum) {
+      List<String> blocked = new ArrayList<String>();
+      for (int v = 0; v < bound; v++) {
+        if (remaining[v] > 0) {
+          blocked.add(graph.nameOf(v));
+        }
+      }
+      // name one actual cycle among the blocked vertices
+      StronglyConnectedComponents components = new StronglyConnectedComponents(graph);
+      for (int c = 0; c < components.count(); c++) {
+        if (components.isCyclic(c)) {
+          throw new CycleException(components.cycleNames(c), blocked);
+        }
+      }
+      throw new IllegalStateException("no cycle among blocked packages " + blocked);
+    }
+    return queue;
+  }
+
+  /**
+   * Splits an installation order into waves. Wave 0 holds the vertices without dependencies and
+   * every later wave holds the vertices whose dependencies are all in earlier waves, so all the
+   * vertices of one wave can be installed at the same time. The wave of a vertex is the length of
+   * its longest dependency chain.
+   *
+   * @param graph the graph the order belongs to
+   * @param order ids in installation order, the dependencies of every id must be in the order too
+   * @return the ids of every wave, each wave in the same relative order as in order
+   */
+  static int[][] waves(IndexedGraph graph, int[] order) {
+    int[] level = new int[graph.idBound()];
+    int[] waveSize = new int[order.length + 1];
+    int waveNum = 0;
+    for (int v : order) {
+      // every dependency comes earlier in the order, so its level is already known
+      int wave = 0;
+      for (int k = 0; k < graph.outDegree(v); k++) {
+        wave = Math.max(wave, level[graph.adjacentAt(v, k)] + 1);
+      }
+      level[v] = wave;
+      waveSize[wave]++;
+      waveNum = Math.max(waveNum, wave + 1);
+    }
+    int[][] waves = new int[waveNum][];
+    for (int wave = 0; wave < waveNum; wave++) {
+      waves[wave] = new int[waveSize[wave]];
+      waveSize[wave] = 0;
+    }
+    for (int v : order) {
+      waves[level[v]][waveSize[level[v]]++] = v;
+    }
+    return waves;
+  }
+}
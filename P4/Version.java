@@ -0,0 +1,89 @@
+/**
+ * Filename: Version.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Version of a package as major.minor.patch, compared part by part. Missing parts are 0, so "2"
+ * and "2.0" are both 2.0.0.
+ */
+public class Version implements Comparable<Version> {
+
+  /** the version of a package that does not give one */
+  public static final Version ZERO = new Version(0, 0, 0);
+
+  private final int major;
+  private final int minor;
+  private final int patch;
+
+  /**
+   * Creates a version from its parts.
+   *
+   * @throws IllegalArgumentException if a part is negative
+   */
+  public Version(int major, int minor, int patch) {
+    if (major < 0 || minor < 0 || patch < 0) {
+      throw new IllegalArgumentException("version parts cannot be negative");
+    }
+    this.major = major;
+    this.minor = minor;
+    this.patch = patch;
+  }
+
+  /**
+   * Reads a version such as "1.2.3", "1.2" or "1".
+   *
+   * @param text the version
+   * @return the version
+   * @throws IllegalArgumentException if text is not a version
+   */
+  public static Version parse(String text) {
+    String[] parts = text.trim().split("\\.", -1);
+    if (parts.length > 3) {
+      throw new IllegalArgumentException("not a version: " + text);
+    }
+    int[] numbers = new int[3];
+    for (int i = 0; i < parts.length; i++) {
+      if (parts[i].isEmpty() || !parts[i].chars().allMatch(Character::isDigit)) {
+        throw new IllegalArgumentException("not a version: " + text);
+      }
+      numbers[i] = Integer.parseInt(parts[i]);
+    }
+    return new Version(numbers[0], numbers[1], numbers[2]);
+  }
+
+  public int getMajor() {
+    return major;
+  }
+
+  public int getMinor() {
+    return minor;
+  }
+
+  public int getPatch() {
+    return patch;
+  }
+
+  @Override
+  public int compareTo(Version other) {
+    if (major != other.major) {
+      return Integer.compare(major, other.major);
+    }
+    if (minor != other.minor) {
+      return Integer.compare(minor, other.minor);
+    }
+    return Integer.compare(patch, other.patch);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Version && compareTo((Version) other) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return (major * 31 + minor) * 31 + patch;
+  }
+
+  @Override
+  public String toString() {
+    return major + "." + minor + "." + patch;
+  }
+}
@@ -0,0 +1,33 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@SuppressWarnings("serial")
+public class VersionConflictException extends Exception {
+	
+	// the package no version of which could be picked
+	private final String pkg;
+	// the ranges that could not all be met, each with who asked for it
+	private final List<String> requirements;
+
+	public VersionConflictException(String pkg, List<String> requirements) {
+		super("no version of " + pkg + " satisfies " + String.join(", ", requirements));
+		this.pkg = pkg;
+		this.requirements = Collections.unmodifiableList(new ArrayList<String>(requirements));
+	}
+
+	/**
+	 * Returns the package no version of which could be picked.
+	 */
+	public String getPackage() {
+		return pkg;
+	}
+
+	/**
+	 * Returns the requirements on the package that could not all be met, as
+	 * "range (required by A 1.2.0)" or "range (root)".
+	 */
+	public List<String> getRequirements() {
+		return requirements;
+	}
+}
@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filename: VersionRange.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Set of versions a dependency accepts, written the way npm writes them:
+ *
+ * - "" or "*": any version;
+ * - "1.2.3" or "=1.2.3": exactly that version;
+ * - "&gt;=1.2", "&gt;1.2", "&lt;2", "&lt;=2": comparisons, several separated by spaces must all
+ * hold, "&gt;=1.2 &lt;2";
+ * - "^1.2.3": the same major version, at least 1.2.3 (for 0.x the same minor version);
+ * - "~1.2.3": the same minor version, at least 1.2.3;
+ * - alternatives separated by "||", "^1.0 || ^2.0".
+ *
+ * A range is kept as a list of intervals of versions.
+ */
+public class VersionRange {
+
+  /** the range that accepts every version */
+  public static final VersionRange ANY = parse("*");
+
+  // the text the range was read from
+  private final String text;
+  // bounds of every interval, a null bound is open
+  private final List<Version> lows = new ArrayList<Version>();
+  private final List<Boolean> lowInclusive = new ArrayList<Boolean>();
+  private final List<Version> highs = new ArrayList<Version>();
+  private final List<Boolean> highInclusive = new ArrayList<Boolean>();
+
+  /**
+   * helper constructor, ranges are only made by parse
+   */
+  private VersionRange(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Reads a range.
+   *
+   * @param text the range, see the class comment
+   * @return the range
+   * @throws IllegalArgumentException if text is not a range
+   */
+  public static VersionRange parse(String text) {
+    VersionRange range = new VersionRange(text.trim());
+    for (String alternative : range.text.split("\\|\\|", -1)) {
+      Version low = null;
+      boolean lowIn = true;
+      Version high = null;
+      boolean highIn = true;
+      for (String comparator : alternative.trim().split("\\s+")) {
+        if (comparator.isEmpty() || comparator.equals("*")) {
+          continue;
+        }
+        // every comparator narrows the interval of the alternative
+        Version[] bounds = boundsOf(comparator);
+        boolean[] inclusive = inclusiveOf(comparator);
+        if (bounds[0] != null && (low == null || bounds[0].compareTo(low) > 0
+            || (bounds[0].equals(low) && !inclusive[0]))) {
+          low = bounds[0];
+          lowIn = inclusive[0];
+        }
+        if (bounds[1] != null && (high == null || bounds[1].compareTo(high) < 0
+            || (bounds[1].equals(high) && !inclusive[1]))) {
+          high = bounds[1];
+          highIn = inclusive[1];
+        }
+      }
+      range.lows.add(low);
+      range.lowInclusive.add(lowIn);
+      range.highs.add(high);
+      range.highInclusive.add(highIn);
+    }
+    return range;
+  }
+
+  /**
+   * Returns true if the range accepts a version.
+   *
+   * @param version the version
+   */
+  public boolean contains(Version version) {
+    for (int i = 0; i < lows.size(); i++) {
+      Version low = lows.get(i);
+      Version high = highs.get(i);
+      int fromLow = low == null ? 1 : version.compareTo(low);
+      int toHigh = high == null ? -1 : version.compareTo(high);
+      if ((fromLow > 0 || (fromLow == 0 && lowInclusive.get(i)))
+          && (toHigh < 0 || (toHigh == 0 && highInclusive.get(i)))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return text.isEmpty() ? "*" : text;
+  }
+
+  /**
+   * helper method that returns the low and high bound of one comparator, null where it has none
+   */
+  private static Version[] boundsOf(String comparator) {
+    if (comparator.startsWith(">=")) {
+      return new Version[] {Version.parse(comparator.substring(2)), null};
+    } else if (comparator.startsWith("<=")) {
+      return new Version[] {null, Version.parse(comparator.substring(2))};
+    } else if (comparator.startsWith(">")) {
+      return new Version[] {Version.parse(comparator.substring(1)), null};
+    } else if (comparator.startsWith("<")) {
+      return new Version[] {null, Version.parse(comparator.substring(1))};
+    } else if (comparator.startsWith("^")) {
+      Version v = Version.parse(comparator.substring(1));
+      Version next = v.getMajor() > 0 ? new Version(v.getMajor() + 1, 0, 0)
+          : new Version(0, v.getMinor() + 1, 0);
+      return new Version[] {v, next};
+    } else if (comparator.startsWith("~")) {
+      Version v = Version.parse(comparator.substring(1));
+      return new Version[] {v, new Version(v.getMajor(), v.getMinor() + 1, 0)};
+    }
+    Version v = Version.parse(comparator.startsWith("=") ? comparator.substring(1) : comparator);
+    return new Version[] {v, v};
+  }
+
+  /**
+   * helper method that returns whether the low and high bound of one comparator are inclusive
+   */
+  private static boolean[] inclusiveOf(String comparator) {
+    if (comparator.startsWith(">=") || comparator.startsWith("<=")) {
+      return new boolean[] {true, true};
+    } else if (comparator.startsWith(">")) {
+      return new boolean[] {false, true};
+    } else if (comparator.startsWith("<") || comparator.startsWith("^")
+        || comparator.startsWith("~")) {
+      return new boolean[] {true, false};
+    }
+    return new boolean[] {true, true};
+  }
+}
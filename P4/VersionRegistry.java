@@ -0,0 +1,196 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filename: VersionRegistry.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Every version of every package that a manifest gave a version, with the versions each of them
+ * accepts for its dependencies.
+ *
+ * Packages are added one version at a time while manifests are read. The first time a package is
+ * asked for, its versions are sorted newest first into an Entry, which stays until another
+ * version of the package is added. An Entry remembers, for every range it was asked about, which
+ * of its versions the range accepts, so filtering the candidates of a package by a range is done
+ * once per registry and not once per resolution. Ranges are interned by their text, so the same
+ * range read many times is one object.
+ */
+class VersionRegistry {
+
+  /**
+   * The versions of one package, newest first, and what each of them depends on.
+   */
+  static class Entry {
+    final String name;
+    final Version[] versions;
+    // dependencyNames[i][k] is the k-th dependency of versions[i], accepting dependencyRanges[i][k]
+    final String[][] dependencyNames;
+    final VersionRange[][] dependencyRanges;
+    // bit i of matching.get(range) is set if range accepts versions[i]
+    private final Map<VersionRange, long[]> matching =
+        new ConcurrentHashMap<VersionRange, long[]>();
+
+    Entry(String name, Version[] versions, String[][] dependencyNames,
+        VersionRange[][] dependencyRanges) {
+      this.name = name;
+      this.versions = versions;
+      this.dependencyNames = dependencyNames;
+      this.dependencyRanges = dependencyRanges;
+    }
+
+    /**
+     * Returns the versions a range accepts as a bit set over the version indices, computed the
+     * first time the range is asked about. The array must not be changed.
+     */
+    long[] matching(VersionRange range) {
+      long[] bits = matching.get(range);
+      if (bits == null) {
+        bits = new long[(versions.length + 63) >>> 6];
+        for (int i = 0; i < versions.length; i++) {
+          if (range.contains(versions[i])) {
+            bits[i >>> 6] |= 1L << i;
+          }
+        }
+        matching.put(range, bits);
+      }
+      return bits;
+    }
+  }
+
+  /**
+   * helper class that holds the versions of a package as they are added
+   */
+  private static class Builder {
+    final Map<Version, Integer> index = new HashMap<Version, Integer>();
+    final List<Version> versions = new ArrayList<Version>();
+    final List<String[]> names = new ArrayList<String[]>();
+    final List<VersionRange[]> ranges = new ArrayList<VersionRange[]>();
+    // null until asked for, and again after every add
+    Entry entry;
+  }
+
+  private final Map<String, Builder> packages = new HashMap<String, Builder>();
+  private final Map<String, VersionRange> ranges = new HashMap<String, VersionRange>();
+  private int versionNum;
+
+  /**
+   * Adds a version of a package. A version added again replaces the one added before.
+   *
+   * @param pkg the package, a null version is Version.ZERO
+   * @throws IllegalArgumentException if the version or a range cannot be read
+   */
+  synchronized void add(Package pkg) {
+    Version version = pkg.getVersion() == null ? Version.ZERO : Version.parse(pkg.getVersion());
+    String[] dependencies = pkg.getDependencies() == null ? new String[0] : pkg.getDependencies();
+    String[] names = new String[dependencies.length];
+    VersionRange[] accepted = new VersionRange[dependencies.length];
+    for (int k = 0; k < dependencies.length; k++) {
+      names[k] = Package.dependencyName(dependencies[k]);
+      accepted[k] = rangeOf(Package.dependencyRange(dependencies[k]));
+    }
+    put(pkg.getName(), version, names, accepted);
+  }
+
+  /**
+   * helper method that adds or replaces one version of a package
+   */
+  private void put(String name, Version version, String[] names, VersionRange[] accepted) {
+    Builder builder = packages.get(name);
+    if (builder == null) {
+      builder = new Builder();
+      packages.put(name, builder);
+    }
+    Integer existing = builder.index.get(version);
+    if (existing == null) {
+      builder.index.put(version, builder.versions.size());
+      builder.versions.add(version);
+      builder.names.add(names);
+      builder.ranges.add(accepted);
+      versionNum++;
+    } else {
+      builder.names.set(existing, names);
+      builder.ranges.set(existing, accepted);
+    }
+    builder.entry = null;
+  }
+
+  /**
+   * Adds every version of another registry, as if they were added one by one after the versions
+   * of this one.
+   *
+   * @param other the registry to copy from
+   */
+  synchronized void addAll(VersionRegistry other) {
+    synchronized (other) {
+      for (Map.Entry<String, Builder> pkg : other.packages.entrySet()) {
+        Builder builder = pkg.getValue();
+        for (int i = 0; i < builder.versions.size(); i++) {
+          // ranges are interned again, so equal ranges stay one object in this registry
+          VersionRange[] accepted = builder.ranges.get(i).clone();
+          for (int k = 0; k < accepted.length; k++) {
+            accepted[k] = rangeOf(accepted[k].toString());
+          }
+          put(pkg.getKey(), builder.versions.get(i), builder.names.get(i), accepted);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the versions of a package, or null if no version of it was added.
+   *
+   * @param name the name of the package
+   */
+  synchronized Entry entryOf(String name) {
+    Builder builder = packages.get(name);
+    if (builder == null) {
+      return null;
+    }
+    if (builder.entry == null) {
+      // newest first, so the resolver tries the newest version of every package first
+      Integer[] order = new Integer[builder.versions.size()];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> builder.versions.get(b).compareTo(builder.versions.get(a)));
+      Version[] versions = new Version[order.length];
+      String[][] names = new String[order.length][];
+      VersionRange[][] accepted = new VersionRange[order.length][];
+      for (int i = 0; i < order.length; i++) {
+        versions[i] = builder.versions.get(order[i]);
+        names[i] = builder.names.get(order[i]);
+        accepted[i] = builder.ranges.get(order[i]);
+      }
+      builder.entry = new Entry(name, versions, names, accepted);
+    }
+    return builder.entry;
+  }
+
+  /**
+   * Returns the interned range of a text, "" for any version.
+   *
+   * @throws IllegalArgumentException if the text is not a range
+   */
+  synchronized VersionRange rangeOf(String text) {
+    String key = text.trim();
+    if (key.isEmpty() || key.equals("*")) {
+      return VersionRange.ANY;
+    }
+    VersionRange range = ranges.get(key);
+    if (range == null) {
+      range = VersionRange.parse(key);
+      ranges.put(key, range);
+    }
+    return range;
+  }
+
+  /**
+   * Returns the number of versions over all packages.
+   */
+  synchronized int size() {
+    return versionNum;
+  }
+}
@@ -0,0 +1,581 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Filename: VersionResolver.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Picks one version of every package needed by a set of root requirements, such that every
+ * picked version is accepted by every range asking for its package, preferring newer versions.
+ *
+ * The search decides the packages in the order they become required, trying the newest version
+ * that the current ranges accept and whose own dependencies do not contradict a version already
+ * picked. When a package has no such version left, the resolver works out which earlier picks are
+ * to blame: the package that requires it, and for every version, the pick whose range or
+ * dependency rules it out. That set of picks cannot all hold, so it is learned as a nogood, and
+ * the search jumps straight back to the latest of them instead of undoing one pick at a time. A
+ * learned nogood rules out its last pick whenever the others are in place again, so the same
+ * conflict is never explored twice, in the style of conflict-driven clause learning.
+ *
+ * Which versions a range accepts is looked up in the bit sets memoized by the registry entries.
+ * A package the registry has no version of but the graph has counts as a single version 0.0.0
+ * depending on any version of each of its dependencies in the graph.
+ */
+class VersionResolver {
+
+  private final VersionRegistry registry;
+  private final IndexedGraph graph;
+
+  // local id of every package the resolution has touched
+  private final Map<String, Integer> localIds = new HashMap<String, Integer>();
+  private int packageNum;
+  private VersionRegistry.Entry[] entries = new VersionRegistry.Entry[64];
+  // dependencyIds[p][i] holds the local ids of the dependencies of version i of p, null until used,
+  // and dependencyBits[p][i] the versions their ranges accept
+  private int[][][] dependencyIds = new int[64][][];
+  private long[][][][] dependencyBits = new long[64][][][];
+  // version index picked for every package, -1 if none
+  private int[] assigned = new int[64];
+  // position on the trail of the pick of every package, and its position in the agenda
+  private int[] level = new int[64];
+  private int[] agendaIndex = new int[64];
+  // number of requirements on every package and the latest of them
+  private int[] requireCount = new int[64];
+  private int[] head = new int[64];
+  // conflict set marks
+  private int[] mark = new int[64];
+  private int stamp;
+
+  // every requirement: the package, the accepted range, the package asking (-1 for a root) and
+  // the previous requirement on the same package
+  private int[] reqPkg = new int[64];
+  private VersionRange[] reqRange = new VersionRange[64];
+  private long[][] reqBits = new long[64][];
+  // allowed[p] is the intersection of the bits of the requirements on p, null while it accepts
+  // every version, and reqSaved[r] the intersection before requirement r
+  private long[][] allowed = new long[64][];
+  private long[][] reqSaved = new long[64][];
+  private int[] reqFrom = new int[64];
+  private int[] reqNext = new int[64];
+  private int reqNum;
+
+  // the picks in order, with the number of requirements and agenda entries before each of them
+  private int[] trailPkg = new int[64];
+  private int[] trailReqMark = new int[64];
+  private int[] trailAgendaMark = new int[64];
+  private int trailNum;
+
+  // packages in the order they became required
+  private int[] agenda = new int[64];
+  private int agendaNum;
+
+  // learned nogoods, nogoods[p][i] holds those containing version i of p, null until one does
+  private List<Nogood>[][] nogoods = nogoodTable(64);
+  private int conflicts;
+  // requirements on every package of the conflict set being explained, for the error message
+  private final Map<Integer, Set<Reason>> because = new HashMap<Integer, Set<Reason>>();
+
+  /**
+   * helper class that holds a set of picks that cannot all hold, as flat (package, version index)
+   * pairs, with the requirements on each of those packages that made them conflict
+   */
+  private static class Nogood {
+    final int[] pairs;
+    final List<Set<Reason>> reasons;
+
+    Nogood(int[] pairs, List<Set<Reason>> reasons) {
+      this.pairs = pairs;
+      this.reasons = reasons;
+    }
+  }
+
+  /**
+   * helper class that holds a range asked for by version i of package from, only turned into
+   * text if it ends up in an exception
+   */
+  private static class Reason {
+    final VersionRange range;
+    final int from;
+    final int i;
+
+    Reason(VersionRange range, int from, int i) {
+      this.range = range;
+      this.from = from;
+      this.i = i;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Reason)) {
+        return false;
+      }
+      Reason that = (Reason) other;
+      return range == that.range && from == that.from && i == that.i;
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(range) * 31 + from) * 31 + i;
+    }
+  }
+
+  /**
+   * Creates a resolver for one resolution.
+   *
+   * @param registry the versions to pick from
+   * @param graph    the graph unversioned packages are taken from, must not change meanwhile
+   */
+  VersionResolver(VersionRegistry registry, IndexedGraph graph) {
+    this.registry = registry;
+    this.graph = graph;
+  }
+
+  /**
+   * Picks the versions.
+   *
+   * @param roots the range every root package must be in, "" for any version
+   * @return the picked version of every package needed, by name
+   * @throws VersionConflictException if no set of versions meets all the requirements
+   * @throws PackageNotFoundException if a root package is neither in the registry nor the graph
+   */
+  Map<String, Version> resolve(Map<String, String> roots)
+      throws VersionConflictException, PackageNotFoundException {
+    for (Map.Entry<String, String> root : roots.entrySet()) {
+      int p = intern(root.getKey());
+      if (entries[p].versions.length == 0 && graph.idOf(root.getKey()) < 0) {
+        throw new PackageNotFoundException();
+      }
+      VersionRange range = registry.rangeOf(root.getValue() == null ? "" : root.getValue());
+      require(p, range, entries[p].matching(range), -1);
+    }
+    int cursor = 0;
+    while (true) {
+      // every package before the cursor has a version
+      while (cursor < agendaNum && assigned[agenda[cursor]] >= 0) {
+        cursor++;
+      }
+      if (cursor == agendaNum) {
+        break;
+      }
+      int p = agenda[cursor];
+      int version = pick(p);
+      if (version >= 0) {
+        assign(p, version, cursor);
+        continue;
+      }
+      conflicts++;
+      int[] blamed = explain(p);
+      if (blamed.length == 0) {
+        // only the roots are to blame, nothing can be undone
+        throw conflictOn(p);
+      }
+      learn(blamed);
+      int latest = blamed[0];
+      for (int q : blamed) {
+        if (level[q] > level[latest]) {
+          latest = q;
+        }
+      }
+      // the latest pick is made again, the nogood now rules out its old version
+      cursor = agendaIndex[latest];
+      undoTo(level[latest]);
+    }
+
+    Map<String, Version> picked = new TreeMap<String, Version>();
+    for (int t = 0; t < trailNum; t++) {
+      int p = trailPkg[t];
+      picked.put(entries[p].name, entries[p].versions[assigned[p]]);
+    }
+    return picked;
+  }
+
+  /**
+   * Returns the number of conflicts met, each of which taught the resolver a nogood.
+   */
+  int conflicts() {
+    return conflicts;
+  }
+
+  /**
+   * helper method that returns the newest version of p the current picks allow, or -1
+   */
+  private int pick(int p) {
+    VersionRegistry.Entry entry = entries[p];
+    long[] accepted = allowed[p];
+    for (int i = 0; i < entry.versions.length; i++) {
+      if ((accepted == null || accepts(accepted, i)) && blockingNogood(p, i) == null
+          && conflictingDependency(p, i) == -1) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * helper method that returns the packages whose picks leave p without a version: one package
+   * that requires p, and for every version of p the pick that rules it out
+   */
+  private int[] explain(int p) {
+    stamp++;
+    because.clear();
+    List<Integer> blamed = new ArrayList<Integer>();
+    for (int r = head[p]; r >= 0; r = reqNext[r]) {
+      if (reqFrom[r] >= 0) {
+        blame(reqFrom[r], blamed);
+        break;
+      }
+    }
+    VersionRegistry.Entry entry = entries[p];
+    for (int i = 0; i < entry.versions.length; i++) {
+      boolean explained = false;
+      for (int r = head[p]; r >= 0 && !explained; r = reqNext[r]) {
+        if (!accepts(reqBits[r], i)) {
+          if (reqFrom[r] >= 0) {
+            blame(reqFrom[r], blamed);
+          }
+          explained = true;
+        }
+      }
+      if (explained) {
+        continue;
+      }
+      Nogood nogood = blockingNogood(p, i);
+      if (nogood != null) {
+        for (int k = 0; k < nogood.pairs.length; k += 2) {
+          int q = nogood.pairs[k];
+          if (q != p) {
+            blame(q, blamed);
+            reasonsOf(q).addAll(nogood.reasons.get(k / 2));
+          }
+        }
+        continue;
+      }
+      int q = conflictingDependency(p, i);
+      if (q >= 0) {
+        blame(q, blamed);
+        int k = indexOf(dependenciesOf(p, i), q);
+        reasonsOf(q).add(new Reason(entry.dependencyRanges[i][k], p, i));
+      }
+    }
+    int[] result = new int[blamed.size()];
+    for (int k = 0; k < result.length; k++) {
+      result[k] = blamed.get(k);
+    }
+    return result;
+  }
+
+  /**
+   * helper method that returns the requirements blamed on a package of the conflict set
+   */
+  private Set<Reason> reasonsOf(int q) {
+    return because.computeIfAbsent(q, x -> new LinkedHashSet<Reason>());
+  }
+
+  private static int indexOf(int[] values, int value) {
+    int k = 0;
+    while (values[k] != value) {
+      k++;
+    }
+    return k;
+  }
+
+  /**
+   * helper method that adds a package to a conflict set once
+   */
+  private void blame(int q, List<Integer> blamed) {
+    if (mark[q] != stamp) {
+      mark[q] = stamp;
+      blamed.add(q);
+    }
+  }
+
+  /**
+   * helper method that remembers that the current picks of some packages cannot all hold
+   */
+  private void learn(int[] blamed) {
+    int[] pairs = new int[blamed.length * 2];
+    List<Set<Reason>> reasons = new ArrayList<Set<Reason>>(blamed.length);
+    for (int k = 0; k < blamed.length; k++) {
+      pairs[2 * k] = blamed[k];
+      pairs[2 * k + 1] = assigned[blamed[k]];
+      Set<Reason> reason = because.get(blamed[k]);
+      reasons.add(reason == null ? Collections.<Reason>emptySet() : reason);
+    }
+    Nogood nogood = new Nogood(pairs, reasons);
+    for (int k = 0; k < pairs.length; k += 2) {
+      int q = pairs[k];
+      if (nogoods[q] == null) {
+        nogoods[q] = nogoodRow(entries[q].versions.length);
+      }
+      if (nogoods[q][pairs[k + 1]] == null) {
+        nogoods[q][pairs[k + 1]] = new ArrayList<Nogood>(2);
+      }
+      nogoods[q][pairs[k + 1]].add(nogood);
+    }
+  }
+
+  /**
+   * helper method that returns a learned nogood ruling out version i of p under the current picks,
+   * or null
+   */
+  private Nogood blockingNogood(int p, int i) {
+    List<Nogood> candidates = nogoods[p] == null ? null : nogoods[p][i];
+    if (candidates == null) {
+      return null;
+    }
+    for (Nogood nogood : candidates) {
+      int[] pairs = nogood.pairs;
+      boolean holds = true;
+      for (int k = 0; k < pairs.length && holds; k += 2) {
+        holds = pairs[k] == p || assigned[pairs[k]] == pairs[k + 1];
+      }
+      if (holds) {
+        return nogood;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * helper method that returns a picked package that version i of p depends on in a version its
+   * range does not accept, -2 if version i of p does not accept itself, or -1
+   */
+  private int conflictingDependency(int p, int i) {
+    int[] dependencies = dependenciesOf(p, i);
+    long[][] bits = dependencyBits[p][i];
+    for (int k = 0; k < dependencies.length; k++) {
+      int q = dependencies[k];
+      if (q == p) {
+        if (!accepts(bits[k], i)) {
+          return -2;
+        }
+      } else if (assigned[q] >= 0 && !accepts(bits[k], assigned[q])) {
+        return q;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * helper method that picks version i of p and requires its dependencies
+   */
+  private void assign(int p, int i, int cursor) {
+    if (trailNum == trailPkg.length) {
+      trailPkg = Arrays.copyOf(trailPkg, trailNum * 2);
+      trailReqMark = Arrays.copyOf(trailReqMark, trailNum * 2);
+      trailAgendaMark = Arrays.copyOf(trailAgendaMark, trailNum * 2);
+    }
+    trailPkg[trailNum] = p;
+    trailReqMark[trailNum] = reqNum;
+    trailAgendaMark[trailNum] = agendaNum;
+    assigned[p] = i;
+    level[p] = trailNum++;
+    agendaIndex[p] = cursor;
+    int[] dependencies = dependenciesOf(p, i);
+    VersionRange[] ranges = entries[p].dependencyRanges[i];
+    long[][] bits = dependencyBits[p][i];
+    for (int k = 0; k < dependencies.length; k++) {
+      require(dependencies[k], ranges[k], bits[k], p);
+    }
+  }
+
+  /**
+   * helper method that takes back every pick from trail position t on, with the requirements
+   * and agenda entries they brought
+   */
+  private void undoTo(int t) {
+    while (trailNum > t) {
+      trailNum--;
+      assigned[trailPkg[trailNum]] = -1;
+      while (reqNum > trailReqMark[trailNum]) {
+        int r = --reqNum;
+        head[reqPkg[r]] = reqNext[r];
+        allowed[reqPkg[r]] = reqSaved[r];
+        requireCount[reqPkg[r]]--;
+      }
+      agendaNum = trailAgendaMark[trailNum];
+    }
+  }
+
+  /**
+   * helper method that adds a requirement on p, putting p on the agenda if it was not required
+   */
+  private void require(int p, VersionRange range, long[] bits, int from) {
+    if (reqNum == reqPkg.length) {
+      reqPkg = Arrays.copyOf(reqPkg, reqNum * 2);
+      reqRange = Arrays.copyOf(reqRange, reqNum * 2);
+      reqBits = Arrays.copyOf(reqBits, reqNum * 2);
+      reqSaved = Arrays.copyOf(reqSaved, reqNum * 2);
+      reqFrom = Arrays.copyOf(reqFrom, reqNum * 2);
+      reqNext = Arrays.copyOf(reqNext, reqNum * 2);
+    }
+    reqPkg[reqNum] = p;
+    reqRange[reqNum] = range;
+    reqBits[reqNum] = bits;
+    reqSaved[reqNum] = allowed[p];
+    if (range != VersionRange.ANY) {
+      allowed[p] = intersect(allowed[p], bits);
+    }
+    reqFrom[reqNum] = from;
+    reqNext[reqNum] = head[p];
+    head[p] = reqNum++;
+    if (requireCount[p]++ == 0 && assigned[p] < 0) {
+      if (agendaNum == agenda.length) {
+        agenda = Arrays.copyOf(agenda, agendaNum * 2);
+      }
+      agenda[agendaNum++] = p;
+    }
+  }
+
+  /**
+   * helper method that returns the versions both bit sets accept, without copying when one of
+   * them is already the answer. A null bit set accepts every version.
+   */
+  private static long[] intersect(long[] a, long[] b) {
+    if (a == null || a == b) {
+      return b;
+    }
+    long[] both = null;
+    for (int w = 0; w < a.length; w++) {
+      if ((a[w] & b[w]) != a[w]) {
+        if (both == null) {
+          both = a.clone();
+        }
+        both[w] &= b[w];
+      }
+    }
+    return both == null ? a : both;
+  }
+
+  private static boolean accepts(long[] bits, int i) {
+    return (bits[i >>> 6] & (1L << i)) != 0;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static List<Nogood>[][] nogoodTable(int length) {
+    return new List[length][];
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static List<Nogood>[] nogoodRow(int length) {
+    return new List[length];
+  }
+
+  /**
+   * helper method that returns the local ids of the dependencies of version i of p
+   */
+  private int[] dependenciesOf(int p, int i) {
+    if (dependencyIds[p] == null) {
+      dependencyIds[p] = new int[entries[p].versions.length][];
+      dependencyBits[p] = new long[entries[p].versions.length][][];
+    }
+    if (dependencyIds[p][i] == null) {
+      String[] names = entries[p].dependencyNames[i];
+      VersionRange[] ranges = entries[p].dependencyRanges[i];
+      int[] ids = new int[names.length];
+      long[][] bits = new long[names.length][];
+      for (int k = 0; k < names.length; k++) {
+        ids[k] = intern(names[k]);
+        bits[k] = entries[ids[k]].matching(ranges[k]);
+      }
+      // intern may have grown the arrays
+      dependencyIds[p][i] = ids;
+      dependencyBits[p][i] = bits;
+    }
+    return dependencyIds[p][i];
+  }
+
+  /**
+   * helper method that returns the local id of a package, finding its versions the first time
+   */
+  private int intern(String name) {
+    Integer existing = localIds.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    int p = packageNum++;
+    if (p == entries.length) {
+      int capacity = p * 2;
+      entries = Arrays.copyOf(entries, capacity);
+      dependencyIds = Arrays.copyOf(dependencyIds, capacity);
+      dependencyBits = Arrays.copyOf(dependencyBits, capacity);
+      nogoods = Arrays.copyOf(nogoods, capacity);
+      assigned = Arrays.copyOf(assigned, capacity);
+      level = Arrays.copyOf(level, capacity);
+      agendaIndex = Arrays.copyOf(agendaIndex, capacity);
+      requireCount = Arrays.copyOf(requireCount, capacity);
+      head = Arrays.copyOf(head, capacity);
+      mark = Arrays.copyOf(mark, capacity);
+      allowed = Arrays.copyOf(allowed, capacity);
+    }
+    VersionRegistry.Entry entry = registry.entryOf(name);
+    if (entry == null) {
+      entry = unversioned(name);
+    }
+    entries[p] = entry;
+    assigned[p] = -1;
+    head[p] = -1;
+    localIds.put(name, p);
+    return p;
+  }
+
+  /**
+   * helper method that makes the single version 0.0.0 of a package the registry does not know,
+   * with the dependencies the graph has for it, or no version at all if the graph does not have
+   * it either
+   */
+  private VersionRegistry.Entry unversioned(String name) {
+    int id = graph.idOf(name);
+    if (id < 0) {
+      return new VersionRegistry.Entry(name, new Version[0], new String[0][],
+          new VersionRange[0][]);
+    }
+    String[] names = new String[graph.outDegree(id)];
+    VersionRange[] ranges = new VersionRange[names.length];
+    for (int k = 0; k < names.length; k++) {
+      names[k] = graph.nameOf(graph.adjacentAt(id, k));
+      ranges[k] = VersionRange.ANY;
+    }
+    return new VersionRegistry.Entry(name, new Version[] {Version.ZERO}, new String[][] {names},
+        new VersionRange[][] {ranges});
+  }
+
+  /**
+   * helper method that builds the exception for a package whose requirements no version meets:
+   * the requirements on it now, and those that ruled out its other versions earlier
+   */
+  private VersionConflictException conflictOn(int p) {
+    Set<String> requirements = new LinkedHashSet<String>();
+    for (int r = head[p]; r >= 0; r = reqNext[r]) {
+      int from = reqFrom[r];
+      requirements.add(requirement(new Reason(reqRange[r], from, from < 0 ? -1 : assigned[from])));
+    }
+    for (int i = 0; i < entries[p].versions.length; i++) {
+      Nogood nogood = blockingNogood(p, i);
+      if (nogood != null) {
+        for (int k = 0; k < nogood.pairs.length; k += 2) {
+          if (nogood.pairs[k] == p) {
+            for (Reason reason : nogood.reasons.get(k / 2)) {
+              requirements.add(requirement(reason));
+            }
+          }
+        }
+      }
+    }
+    return new VersionConflictException(entries[p].name, new ArrayList<String>(requirements));
+  }
+
+  /**
+   * helper method that describes a requirement, from is -1 for a root
+   */
+  private String requirement(Reason reason) {
+    return reason.range + (reason.from < 0 ? " (root)" : " (required by "
+        + entries[reason.from].name + " " + entries[reason.from].versions[reason.i] + ")");
+  }
+}
@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filename: VersionedGraph.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Immutable version of a changing graph that shares everything the change did not touch with the
+ * version before it.
+ *
+ * The names and the adjacency rows are kept in chunks of CHUNK ids. The next version copies the
+ * short arrays of chunk pointers, and copies a chunk and the rows in it only when one of its ids
+ * changed, so a version after a single edit costs a few thousand array slots however large the
+ * graph is. Names are found through a table shared by every version that maps a name to each id
+ * it was ever given; a version picks the one whose slot still holds the name, which stays right
+ * when removed ids are handed out again. Every field is final and no array is written once a
+ * version is published, so a version can be handed to other threads without any locking.
+ */
+class VersionedGraph implements IndexedGraph {
+
+  // number of ids per chunk, a power of two
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK = 1 << CHUNK_BITS;
+  private static final int MASK = CHUNK - 1;
+  private static final int[] NO_IDS = new int[0];
+
+  // names[c][i] is the name of id c * CHUNK + i, null for ids that are not in use
+  private final String[][] names;
+  // out[c][i] and in[c][i] are the exact rows of edges out of and into that id, null when empty
+  private final int[][][] out;
+  private final int[][][] in;
+  // every id each name was ever given, latest last, shared by all versions
+  private final ConcurrentHashMap<String, int[]> idTable;
+  private final int bound;
+  private final int vertexNum;
+  private final int edgeNum;
+
+  /**
+   * helper constructor that takes over the finished arrays
+   */
+  private VersionedGraph(String[][] names, int[][][] out, int[][][] in,
+      ConcurrentHashMap<String, int[]> idTable, int bound, int vertexNum, int edgeNum) {
+    this.names = names;
+    this.out = out;
+    this.in = in;
+    this.idTable = idTable;
+    this.bound = bound;
+    this.vertexNum = vertexNum;
+    this.edgeNum = edgeNum;
+  }
+
+  /**
+   * Returns the version of an empty graph, the first of a line of versions.
+   */
+  static VersionedGraph empty() {
+    return new VersionedGraph(new String[0][], new int[0][][], new int[0][][],
+        new ConcurrentHashMap<String, int[]>(), 0, 0, 0);
+  }
+
+  /**
+   * Returns the next version, in which the given ids are read again from the graph and every
+   * other id is taken over from this version. Versions of one line must be made one after the
+   * other, since they share the name table.
+   *
+   * @param graph   the graph this version was made from, after the changes, it must not change
+   *                during the call
+   * @param changed every id whose name or rows changed since this version, set bits past the id
+   *                bound of the graph are ignored
+   * @return the next version
+   */
+  VersionedGraph next(IndexedGraph graph, BitSet changed) {
+    int nextBound = graph.idBound();
+    int chunkNum = (nextBound + MASK) >>> CHUNK_BITS;
+    String[][] nextNames = Arrays.copyOf(names, chunkNum);
+    int[][][] nextOut = Arrays.copyOf(out, chunkNum);
+    int[][][] nextIn = Arrays.copyOf(in, chunkNum);
+    // chunks already copied for the next version, those can be written in place
+    boolean[] copied = new boolean[chunkNum];
+    for (int id = changed.nextSetBit(0); id >= 0 && id < nextBound;
+        id = changed.nextSetBit(id + 1)) {
+      int c = id >>> CHUNK_BITS;
+      if (!copied[c]) {
+        nextNames[c] = nextNames[c] == null ? new String[CHUNK] : nextNames[c].clone();
+        nextOut[c] = nextOut[c] == null ? new int[CHUNK][] : nextOut[c].clone();
+        nextIn[c] = nextIn[c] == null ? new int[CHUNK][] : nextIn[c].clone();
+        copied[c] = true;
+      }
+      String name = graph.nameOf(id);
+      nextNames[c][id & MASK] = name;
+      nextOut[c][id & MASK] = name == null ? null : outRow(graph, id);
+      nextIn[c][id & MASK] = name == null ? null : inRow(graph, id);
+      if (name != null) {
+        recordId(name, id);
+      }
+    }
+    return new VersionedGraph(nextNames, nextOut, nextIn, idTable, nextBound, graph.order(),
+        graph.size());
+  }
+
+  /**
+   * A versioned graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addVertex(String vertex) {
+    throw new UnsupportedOperationException("versioned graph is read-only");
+  }
+
+  /**
+   * A versioned graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeVertex(String vertex) {
+    throw new UnsupportedOperationException("versioned graph is read-only");
+  }
+
+  /**
+   * A versioned graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("versioned graph is read-only");
+  }
+
+  /**
+   * A versioned graph is read-only.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("versioned graph is read-only");
+  }
+
+  /**
+   * Returns a Set that contains all the vertices
+   */
+  public Set<String> getAllVertices() {
+    Set<String> vertexSet = new HashSet<String>(vertexNum * 2);
+    for (int id = 0; id < bound; id++) {
+      String name = nameOf(id);
+      if (name != null) {
+        vertexSet.add(name);
+      }
+    }
+    return vertexSet;
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * @param vertex the vertex where we try to find its neighbors
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    List<String> neighborList = new ArrayList<String>();
+    int id = idOf(vertex);
+    for (int k = 0; id >= 0 && k < outDegree(id); k++) {
+      neighborList.add(nameOf(adjacentAt(id, k)));
+    }
+    return neighborList;
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   */
+  public int size() {
+    return edgeNum;
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   */
+  public int order() {
+    return vertexNum;
+  }
+
+  public int idOf(String vertex) {
+    int[] ids = vertex == null ? null : idTable.get(vertex);
+    if (ids == null) {
+      return -1;
+    }
+    // a name held only one id at a time, and the latest ids are the likely ones
+    for (int k = ids.length - 1; k >= 0; k--) {
+      if (ids[k] < bound && vertex.equals(nameOf(ids[k]))) {
+        return ids[k];
+      }
+    }
+    return -1;
+  }
+
+  public String nameOf(int id) {
+    return names[id >>> CHUNK_BITS][id & MASK];
+  }
+
+  public int idBound() {
+    return bound;
+  }
+
+  public int outDegree(int id) {
+    int[] row = out[id >>> CHUNK_BITS][id & MASK];
+    return row == null ? 0 : row.length;
+  }
+
+  public int adjacentAt(int id, int k) {
+    return out[id >>> CHUNK_BITS][id & MASK][k];
+  }
+
+  public int inDegree(int id) {
+    int[] row = in[id >>> CHUNK_BITS][id & MASK];
+    return row == null ? 0 : row.length;
+  }
+
+  public int incomingAt(int id, int k) {
+    return in[id >>> CHUNK_BITS][id & MASK][k];
+  }
+
+  /**
+   * helper method that adds an id to the ids a name was given, unless it is already there
+   */
+  private void recordId(String name, int id) {
+    int[] ids = idTable.getOrDefault(name, NO_IDS);
+    for (int given : ids) {
+      if (given == id) {
+        return;
+      }
+    }
+    // the array is replaced rather than written, versions may be reading the old one
+    int[] more = Arrays.copyOf(ids, ids.length + 1);
+    more[ids.length] = id;
+    idTable.put(name, more);
+  }
+
+  /**
+   * helper method that copies the edges going out of a vertex, null if there are none
+   */
+  private static int[] outRow(IndexedGraph graph, int id) {
+    int degree = graph.outDegree(id);
+    if (degree == 0) {
+      return null;
+    }
+    int[] row = new int[degree];
+    for (int k = 0; k < degree; k++) {
+      row[k] = graph.adjacentAt(id, k);
+    }
+    return row;
+  }
+
+  /**
+   * helper method that copies the edges coming into a vertex, null if there are none
+   */
+  private static int[] inRow(IndexedGraph graph, int id) {
+    int degree = graph.inDegree(id);
+    if (degree == 0) {
+      return null;
+    }
+    int[] row = new int[degree];
+    for (int k = 0; k < degree; k++) {
+      row[k] = graph.incomingAt(id, k);
+    }
+    return row;
+  }
+}
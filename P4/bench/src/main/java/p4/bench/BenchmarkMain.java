@@ -0,0 +1,23 @@
+package p4.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Filename: BenchmarkMain.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Entry point of benchmarks.jar. Takes the usual JMH command line and always adds the gc
+ * profiler, so every result comes with the bytes allocated per operation.
+ */
+public class BenchmarkMain {
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    Options options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,117 @@
+package p4.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Filename: GraphShape.java Project: p4 Authors: Kunlun Wang Email: kwang358@wisc.edu
+ *
+ * Shapes of the synthetic dependency graphs the benchmarks run on. Every shape names its packages
+ * p0 .. p(size - 1), has no cycle and is the same for the same size.
+ */
+public enum GraphShape {
+
+  /** p(i) depends on p(i - 1), one long path. */
+  CHAIN,
+  /** p0 depends on every other package, which have no dependencies. */
+  FAN_OUT,
+  /** layers of 32 packages, each depending on two packages of the layer below. */
+  DIAMOND,
+  /** every package depends on a few earlier packages, popular ones far more often. */
+  POWER_LAW;
+
+  // width of a DIAMOND layer
+  private static final int LAYER = 32;
+
+  /**
+   * Writes a manifest of this shape, streaming it so large graphs are cheap to write.
+   *
+   * @param size number of packages
+   * @param file the manifest to create or overwrite
+   * @throws IOException if the file cannot be written
+   */
+  public void write(int size, Path file) throws IOException {
+    Random random = new Random(size);
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      out.write("{\"packages\": [");
+      for (int i = 0; i < size; i++) {
+        out.write(i == 0 ? "\n" : ",\n");
+        out.write("{\"name\": \"p" + i + "\", \"dependencies\": [");
+        int[] dependencies = dependenciesOf(i, size, random);
+        for (int k = 0; k < dependencies.length; k++) {
+          out.write((k == 0 ? "\"p" : ", \"p") + dependencies[k] + "\"");
+        }
+        out.write("]}");
+      }
+      out.write("\n]}\n");
+    }
+  }
+
+  /**
+   * Returns the package with the largest dependency tree, the natural target of a query.
+   *
+   * @param size number of packages
+   */
+  public String top(int size) {
+    switch (this) {
+      case FAN_OUT:
+        return "p0";
+      case DIAMOND:
+        // the first package of the last layer
+        return "p" + ((size - 1) / LAYER * LAYER);
+      default:
+        return "p" + (size - 1);
+    }
+  }
+
+  /**
+   * Returns a package about half way down the dependency tree of top.
+   *
+   * @param size number of packages
+   */
+  public String middle(int size) {
+    return this == FAN_OUT ? "p" + (size / 2) : "p" + (size / 2 / LAYER * LAYER);
+  }
+
+  /**
+   * helper method that picks the dependencies of package i
+   */
+  private int[] dependenciesOf(int i, int size, Random random) {
+    switch (this) {
+      case CHAIN:
+        return i == 0 ? new int[0] : new int[] {i - 1};
+      case FAN_OUT:
+        if (i > 0) {
+          return new int[0];
+        }
+        int[] all = new int[size - 1];
+        for (int k = 0; k < all.length; k++) {
+          all[k] = k + 1;
+        }
+        return all;
+      case DIAMOND:
+        if (i < LAYER) {
+          return new int[0];
+        }
+        int below = i - LAYER;
+        int first = below / LAYER * LAYER;
+        return new int[] {below, first + (below + 1) % LAYER};
+      default:
+        if (i == 0) {
+          return new int[0];
+        }
+        // a cube of a uniform number leans hard towards the first, most popular packages
+        int count = Math.min(i, 1 + random.nextInt(4));
+        int[] picked = new int[count];
+        for (int k = 0; k < count; k++) {
+          double u = random.nextDouble();
+          picked[k] = (int) (i * u * u * u);
+        }
+        return picked;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package p4.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filename: PackageManagerBenchmark.java Project: p4 Authors: Kunlun Wang Email:
+ * kwang358@wisc.edu
+ *
+ * Benchmarks of building the graph and of the resolution queries of PackageManager, for every
+ * graph shape and size. The manifest is written once per trial; the queries run against a
+ * manager built from it once per trial too, so only constructGraph pays for parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackageManagerBenchmark {
+
+  @Param({"CHAIN", "FAN_OUT", "DIAMOND", "POWER_LAW"})
+  public GraphShape shape;
+
+  @Param({"1000", "100000"})
+  public int size;
+
+  // the manifest of the trial and a manager built from it
+  private Path manifest;
+  private PackageManagerHandle manager;
+  private String top;
+  private String middle;
+
+  @Setup
+  public void setUp() throws Throwable {
+    manifest = Files.createTempFile("bench-" + shape + "-" + size, ".json");
+    shape.write(size, manifest);
+    manager = new PackageManagerHandle();
+    manager.constructGraph(manifest.toString());
+    top = shape.top(size);
+    middle = shape.middle(size);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(manifest);
+  }
+
+  @Benchmark
+  public PackageManagerHandle constructGraph() throws Throwable {
+    PackageManagerHandle fresh = new PackageManagerHandle();
+    fresh.constructGraph(manifest.toString());
+    return fresh;
+  }
+
+  @Benchmark
+  public List<String> getInstallationOrder() throws Throwable {
+    return manager.getInstallationOrder(top);
+  }
+
+  @Benchmark
+  public List<String> toInstall() throws Throwable {
+    return manager.toInstall(top, middle);
+  }
+
+  @Benchmark
+  public List<String> getInstallationOrderForAllPackages() throws Throwable {
+    return manager.getInstallationOrderForAllPackages();
+  }
+
+  @Benchmark
+  public String getPackageWithMaxDependencies() throws Throwable {
+    return manager.getPackageWithMaxDependencies();
+  }
+}